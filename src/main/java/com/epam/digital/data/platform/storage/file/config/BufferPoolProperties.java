@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents limits of the buffer pool of content copies, each
+ * service built by a factory gets its own pool. Buffers in use and pooled are limited by
+ * {@code maxMemoryBytes}, copies wait up to {@code maxWait} for released buffers when the limit
+ * is reached, zero wait fails fast. The shared pool with built-in limits is used if not enabled.
+ */
+@Data
+public class BufferPoolProperties {
+
+  private boolean enabled = false;
+  private long maxMemoryBytes = 256L * 1024 * 1024;
+  private long maxPooledBytes = 32L * 1024 * 1024;
+  private Duration maxWait = Duration.ofSeconds(10);
+}
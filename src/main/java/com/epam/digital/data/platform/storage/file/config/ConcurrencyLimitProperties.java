@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of adaptive limits of concurrent storage
+ * reads, writes and listings. Each operation kind has its own limit that grows while latency stays
+ * within {@code latencyTolerance} of the lowest observed latency and shrinks by
+ * {@code backoffRatio} otherwise. Calls over the limit wait up to {@code maxQueueTime}.
+ */
+@Data
+public class ConcurrencyLimitProperties {
+
+  private boolean enabled = false;
+  private int initialLimit = 20;
+  private int minLimit = 1;
+  private int maxLimit = 200;
+  private double backoffRatio = 0.9;
+  private double latencyTolerance = 2.0;
+  private Duration maxQueueTime = Duration.ofMillis(50);
+}
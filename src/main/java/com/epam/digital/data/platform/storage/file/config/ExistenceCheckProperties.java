@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of file existence checks. Up to
+ * {@code parallelism} checks run concurrently. Misses are cached for {@code negativeCacheTtl}, a
+ * zero TTL disables the cache.
+ */
+@Data
+public class ExistenceCheckProperties {
+
+  private int parallelism = 8;
+  private Duration negativeCacheTtl = Duration.ZERO;
+  private int maxCachedMisses = 10_000;
+}
@@ -17,6 +17,8 @@
 
 package com.epam.digital.data.platform.storage.file.config;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Data;
 
 /**
@@ -27,7 +29,37 @@ import lombok.Data;
 public class FileDataCephStorageConfiguration {
 
     private String httpEndpoint;
+    /**
+     * Endpoints of several gateways of the same storage, preferred write endpoint first
+     */
+    private List<String> httpEndpoints = new ArrayList<>();
     private String accessKey;
     private String secretKey;
     private String bucket;
+    private int batchParallelism = 8;
+    private PackedStorageProperties packing = new PackedStorageProperties();
+    private DeferredCleanupProperties cleanup = new DeferredCleanupProperties();
+    private ReadCoalescingProperties coalescing = new ReadCoalescingProperties();
+    private ParallelDownloadProperties download = new ParallelDownloadProperties();
+    private ResumableUploadProperties upload = new ResumableUploadProperties();
+    private WarmUpProperties warmUp = new WarmUpProperties();
+    private ExistenceCheckProperties existenceCheck = new ExistenceCheckProperties();
+    private KeyFilterProperties keyFilter = new KeyFilterProperties();
+    private ConcurrencyLimitProperties concurrencyLimit = new ConcurrencyLimitProperties();
+    private ThrottlingProperties throttling = new ThrottlingProperties();
+    private SpoolingProperties spooling = new SpoolingProperties();
+    private RoutingProperties routing = new RoutingProperties();
+    private VerificationProperties verification = new VerificationProperties();
+    private OperationLogProperties operationLog = new OperationLogProperties();
+    private UsageTrackingProperties usage = new UsageTrackingProperties();
+    private PrefetchProperties prefetch = new PrefetchProperties();
+    private BufferPoolProperties bufferPool = new BufferPoolProperties();
+
+    /**
+     * @return configured endpoints or the single {@code httpEndpoint} if no endpoints are listed
+     */
+    public List<String> resolveHttpEndpoints() {
+        return httpEndpoints == null || httpEndpoints.isEmpty() ? List.of(httpEndpoint)
+                : httpEndpoints;
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of per process instance Bloom filters of
+ * stored keys. Filters are kept for at most {@code maxProcessInstances} process instances and
+ * rebuilt after {@code ttl}.
+ * <p>
+ * A filter miss is answered without a storage request, so filters are used only if files stored
+ * by other nodes are added to them: the service must be created with a change transport that
+ * reaches other nodes, or {@code singleNode} must confirm that files are stored by this node only.
+ */
+@Data
+public class KeyFilterProperties {
+
+  private boolean enabled = false;
+  private int maxProcessInstances = 1000;
+  private int expectedKeysPerProcessInstance = 64;
+  private int maxKeysPerProcessInstance = 10_000;
+  private double falsePositiveProbability = 0.01;
+  private Duration ttl = Duration.ofMinutes(5);
+  private boolean singleNode = false;
+}
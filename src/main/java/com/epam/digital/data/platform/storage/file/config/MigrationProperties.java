@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of file migration between storages.
+ * Progress is saved to the target storage under {@code checkpointPrefix} every
+ * {@code checkpointInterval} files. Non-positive rates disable the corresponding limit.
+ */
+@Data
+public class MigrationProperties {
+
+  private int parallelism = 16;
+  private double maxFilesPerSecond = 0;
+  private long maxBytesPerSecond = 0;
+  private boolean verify = true;
+  private String digestAlgorithm = "SHA-256";
+  private String checkpointPrefix = "migration-checkpoints/";
+  private int checkpointInterval = 1000;
+}
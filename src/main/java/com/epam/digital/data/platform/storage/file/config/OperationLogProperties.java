@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of sampled operation logging. Failed
+ * operations and operations slower than {@code slowThreshold} are always logged, other
+ * operations are logged with {@code sampleRate} probability from a background thread, sampled
+ * events are dropped if the queue of {@code queueCapacity} events is full.
+ */
+@Data
+public class OperationLogProperties {
+
+  private boolean enabled = false;
+  private double sampleRate = 0.01;
+  private Duration slowThreshold = Duration.ofSeconds(1);
+  private int maxLoggedKeys = 10;
+  private int queueCapacity = 10000;
+  private int batchSize = 256;
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of packed storage for small files. When
+ * enabled, files not larger than {@code maxFileSize} are appended to shared segment objects of
+ * their process instance instead of being stored as separate objects. Every packed write
+ * rewrites the segment that is being filled, so {@code maxSegmentSize} is limited to 256 KiB.
+ * <p>
+ * Segment heads are replaced without conditional writes, so packing requires {@code singleWriter}
+ * to confirm that process instance files are written by a single node only.
+ */
+@Data
+public class PackedStorageProperties {
+
+  private boolean enabled = false;
+  private int maxFileSize = 16 * 1024;
+  private int maxSegmentSize = 64 * 1024;
+  private int maxCachedHeads = 64;
+  private boolean singleWriter = false;
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of file prefetching after a process
+ * instance metadata listing. Up to {@code maxFilesPerListing} files not larger than
+ * {@code maxFileSize} are loaded in listing order or smallest first into a cache of
+ * {@code maxCacheBytes}, prefetching of a listing is cancelled when the cache or the
+ * {@code maxBytesPerSecond} bandwidth is used up. Non-positive bandwidth means no limit,
+ * otherwise {@code maxFileSize} is capped by it.
+ */
+@Data
+public class PrefetchProperties {
+
+  private boolean enabled = false;
+  private boolean smallestFirst = false;
+  private int maxFilesPerListing = 10;
+  private long maxFileSize = 1024 * 1024;
+  private long maxCacheBytes = 64L * 1024 * 1024;
+  private long maxBytesPerSecond = 0;
+  private Duration ttl = Duration.ofMinutes(1);
+  private int parallelism = 4;
+  private int queueCapacity = 1000;
+}
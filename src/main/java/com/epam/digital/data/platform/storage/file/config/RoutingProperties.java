@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of routing between several storage
+ * endpoints. An endpoint is ejected after {@code maxFailures} consecutive failures and probed
+ * every {@code probeInterval} until it responds again. Read latency of an endpoint is averaged
+ * with {@code latencyDecay} weight of the latest call, an endpoint not read for
+ * {@code probeInterval} gets the next read to refresh its latency. Uploads up to
+ * {@code maxRetryBufferSize} bytes are buffered to be retried on another endpoint.
+ */
+@Data
+public class RoutingProperties {
+
+  private int maxFailures = 3;
+  private Duration probeInterval = Duration.ofSeconds(10);
+  private double latencyDecay = 0.2;
+  private String probePrefix = "warm-up-probe/";
+  private int maxRetryBufferSize = 1024 * 1024;
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of per tenant or process instance
+ * throttling of storage requests and transferred bytes. Non-positive rates disable the
+ * corresponding limit. Buckets are kept for at most {@code maxTrackedKeys} tenants or process
+ * instances.
+ */
+@Data
+public class ThrottlingProperties {
+
+  private boolean enabled = false;
+  private double requestsPerSecond = 50;
+  private int requestBurst = 100;
+  private long bytesPerSecond = 10 * 1024 * 1024;
+  private long byteBurst = 20 * 1024 * 1024;
+  private int maxTrackedKeys = 10_000;
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of per process instance usage counters.
+ * Counters are stored as metadata of empty objects under {@code recordPrefix}, changed counters
+ * are stored every {@code flushInterval} and recounted by listing the process instance files
+ * every {@code reconcileInterval}. Non-positive quotas are not enforced.
+ * <p>
+ * Each node counts its own changes, so counters are used only if they are kept in sync: the
+ * service must be created with a change transport that reaches other nodes, or
+ * {@code singleNode} must confirm that files are stored by this node only.
+ */
+@Data
+public class UsageTrackingProperties {
+
+  private boolean enabled = false;
+  private String recordPrefix = "file-usage/";
+  private Duration flushInterval = Duration.ofSeconds(10);
+  private Duration reconcileInterval = Duration.ofHours(1);
+  private int maxTrackedProcessInstances = 10000;
+  private long maxBytesPerProcessInstance = 0;
+  private long maxFilesPerProcessInstance = 0;
+  private boolean singleNode = false;
+}
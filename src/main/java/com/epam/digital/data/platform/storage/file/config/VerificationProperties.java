@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of checksum verification of loaded files.
+ * Only files with a stored checksum and content length between {@code minContentLength} and
+ * {@code maxContentLength} are verified, non-positive max length means no upper bound.
+ */
+@Data
+public class VerificationProperties {
+
+  private boolean enabled = false;
+  private String digestAlgorithm = "SHA-256";
+  private long minContentLength = 0;
+  private long maxContentLength = 0;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * The configuration class that represents properties of storage client warm-up. When enabled, the
+ * factories open {@code connections} pooled connections with concurrent bucket probes in the
+ * background and report readiness once they succeed. Failed warm-ups are repeated every
+ * {@code retryInterval}.
+ */
+@Data
+public class WarmUpProperties {
+
+  private boolean enabled = false;
+  private int connections = 4;
+  private Duration timeout = Duration.ofSeconds(30);
+  private Duration retryInterval = Duration.ofSeconds(30);
+}
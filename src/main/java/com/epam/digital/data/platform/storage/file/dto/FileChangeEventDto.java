@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.dto;
+
+import java.time.Instant;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The event about stored, deleted or updated files
+ */
+@Data
+@Builder
+public class FileChangeEventDto {
+
+  private Type type;
+  private Set<String> keys;
+  /**
+   * Key prefix of deleted process instance files, null if only listed keys changed
+   */
+  private String prefix;
+  /**
+   * Change of the file count of the prefix of the single changed key, null if not tracked
+   */
+  private Long fileCountDelta;
+  /**
+   * Change of the total size of the prefix of the single changed key, null if not tracked
+   */
+  private Long totalBytesDelta;
+  private String origin;
+  private Instant timestamp;
+
+  public enum Type {
+    STORED,
+    DELETED,
+    METADATA_UPDATED
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.dto;
+
+import java.time.Duration;
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Result of a file migration run
+ */
+@Data
+@Builder
+public class FileMigrationResultDto {
+
+  private long totalCount;
+  /**
+   * Number of files skipped because they were migrated by a previous run
+   */
+  private long resumedCount;
+  private long copiedCount;
+  private long copiedBytes;
+  /**
+   * Number of files deleted from the source after listing
+   */
+  private long missingCount;
+  private long failedCount;
+  /**
+   * Keys of failed files, limited to the first hundred
+   */
+  private List<String> failedKeys;
+  private Duration duration;
+
+  public boolean isCompleted() {
+    return failedCount == 0;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.dto;
+
+import java.time.Duration;
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The completed storage operation. Only the first keys of the operation are kept.
+ */
+@Data
+@Builder
+public class OperationEventDto {
+
+  private String operation;
+  private List<String> keys;
+  private int keyCount;
+  private Duration duration;
+  private boolean slow;
+  private String error;
+}
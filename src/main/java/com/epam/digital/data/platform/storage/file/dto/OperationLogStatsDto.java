@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Counters of logged storage operations
+ */
+@Data
+@Builder
+public class OperationLogStatsDto {
+
+  private long operationCount;
+  private long loggedCount;
+  private long errorCount;
+  private long slowCount;
+  private long droppedCount;
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.exception;
+
+import java.io.IOException;
+import lombok.Getter;
+
+@Getter
+public class ChecksumMismatchException extends IOException {
+
+    private final String key;
+    private final String expectedChecksum;
+    private final String actualChecksum;
+
+    public ChecksumMismatchException(String key, String expectedChecksum, String actualChecksum) {
+        super(String.format("Checksum of file with key %s is %s, expected %s", key, actualChecksum,
+                expectedChecksum));
+        this.key = key;
+        this.expectedChecksum = expectedChecksum;
+        this.actualChecksum = actualChecksum;
+    }
+}
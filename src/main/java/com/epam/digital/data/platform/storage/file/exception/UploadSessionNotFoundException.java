@@ -0,0 +1,32 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.exception;
+
+import lombok.Getter;
+
+@Getter
+public class UploadSessionNotFoundException extends RuntimeException {
+
+    private final String sessionId;
+
+    public UploadSessionNotFoundException(String sessionId) {
+        super(String.format("Upload session %s was not found", sessionId));
+        this.sessionId = sessionId;
+    }
+}
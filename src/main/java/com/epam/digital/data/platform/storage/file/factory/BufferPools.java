@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.epam.digital.data.platform.storage.file.factory;
+
+import com.epam.digital.data.platform.storage.file.config.BufferPoolProperties;
+import com.epam.digital.data.platform.storage.file.utils.BufferPool;
+
+/**
+ * Builds buffer pools of the configured services
+ */
+final class BufferPools {
+
+  private BufferPools() {
+  }
+
+  /**
+   * Build a pool with the configured limits, the shared pool is used if not enabled
+   */
+  static BufferPool newBufferPool(BufferPoolProperties properties) {
+    if (properties == null || !properties.isEnabled()) {
+      return BufferPool.getDefault();
+    }
+    return BufferPool.withLimits(properties.getMaxMemoryBytes(),
+        properties.getMaxPooledBytes(), properties.getMaxWait());
+  }
+}
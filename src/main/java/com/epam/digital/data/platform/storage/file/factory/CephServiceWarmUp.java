@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.factory;
+
+import com.epam.digital.data.platform.integration.ceph.service.CephService;
+import com.epam.digital.data.platform.storage.file.config.WarmUpProperties;
+import com.epam.digital.data.platform.storage.file.dto.WarmUpResultDto;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Warms up a ceph client by running concurrent listings of an empty prefix, so DNS resolution,
+ * connection and TLS setup and class loading happen before the first real request.
+ */
+@Slf4j
+final class CephServiceWarmUp {
+
+  static final String PROBE_PREFIX = "warm-up-probe/";
+
+  private CephServiceWarmUp() {
+  }
+
+  static WarmUpResultDto warmUp(CephService cephService, String bucket,
+      WarmUpProperties properties) {
+    var connections = Math.max(1, properties.getConnections());
+    var startedAt = System.nanoTime();
+    var deadline = startedAt + properties.getTimeout().toNanos();
+    var executor = Executors.newFixedThreadPool(connections, runnable -> {
+      var thread = new Thread(runnable, "storage-warm-up");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      var start = new CountDownLatch(1);
+      var probes = new ArrayList<Future<?>>(connections);
+      for (var i = 0; i < connections; i++) {
+        probes.add(executor.submit(() -> {
+          start.await();
+          return cephService.getKeys(bucket, PROBE_PREFIX);
+        }));
+      }
+      start.countDown();
+      var opened = 0;
+      String error = null;
+      for (var probe : probes) {
+        try {
+          probe.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+          opened++;
+        } catch (ExecutionException e) {
+          error = String.valueOf(e.getCause());
+        } catch (TimeoutException e) {
+          error = "Warm-up timed out";
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          error = "Warm-up was interrupted";
+          break;
+        }
+      }
+      var result = WarmUpResultDto.builder()
+          .ready(opened == connections)
+          .openedConnections(opened)
+          .duration(Duration.ofNanos(System.nanoTime() - startedAt))
+          .error(error)
+          .build();
+      if (result.isReady()) {
+        log.info("Storage client for bucket {} was warmed up with {} connections in {}", bucket,
+            opened, result.getDuration());
+      } else {
+        log.warn("Storage client for bucket {} warm-up failed, {} of {} connections opened: {}",
+            bucket, opened, connections, error);
+      }
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.factory;
+
+import com.epam.digital.data.platform.integration.ceph.service.CephService;
+import com.epam.digital.data.platform.storage.file.config.WarmUpProperties;
+import com.epam.digital.data.platform.storage.file.dto.WarmUpResultDto;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms up ceph clients in the background and keeps the latest result of every client. Clients
+ * that failed are warmed up again every {@code retryInterval} until they succeed, so readiness
+ * recovers after transient failures.
+ */
+final class CephServiceWarmUpTracker {
+
+  private static final int THREADS = 2;
+
+  private final List<Client> clients = new CopyOnWriteArrayList<>();
+  private final ScheduledExecutorService scheduler;
+
+  CephServiceWarmUpTracker() {
+    var threadNumber = new AtomicInteger();
+    scheduler = Executors.newScheduledThreadPool(THREADS, runnable -> {
+      var thread = new Thread(runnable, "storage-warm-up-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Start the warm-up of the client without waiting for it
+   */
+  void warmUp(CephService cephService, String bucket, WarmUpProperties properties) {
+    var client = new Client(cephService, bucket, properties);
+    clients.add(client);
+    scheduler.execute(() -> run(client));
+  }
+
+  /**
+   * @return false if the warm-up of any client is not complete or failed
+   */
+  boolean isReady() {
+    return clients.stream().allMatch(client -> client.result != null && client.result.isReady());
+  }
+
+  /**
+   * @return result of a failed client if any, the latest result otherwise, empty if no client
+   * was warmed up yet
+   */
+  Optional<WarmUpResultDto> getResult() {
+    WarmUpResultDto latest = null;
+    for (var client : clients) {
+      var result = client.result;
+      if (result != null && !result.isReady()) {
+        return Optional.of(result);
+      }
+      latest = result != null ? result : latest;
+    }
+    return Optional.ofNullable(latest);
+  }
+
+  private void run(Client client) {
+    var result = CephServiceWarmUp.warmUp(client.cephService, client.bucket, client.properties);
+    client.result = result;
+    if (!result.isReady()) {
+      scheduler.schedule(() -> run(client), client.properties.getRetryInterval().toMillis(),
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static class Client {
+
+    private final CephService cephService;
+    private final String bucket;
+    private final WarmUpProperties properties;
+    private volatile WarmUpResultDto result;
+
+    private Client(CephService cephService, String bucket, WarmUpProperties properties) {
+      this.cephService = cephService;
+      this.bucket = bucket;
+      this.properties = properties;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.factory;
+
+import com.epam.digital.data.platform.storage.file.config.ConcurrencyLimitProperties;
+import com.epam.digital.data.platform.storage.file.utils.AdaptiveConcurrencyLimiter;
+
+/**
+ * Creates adaptive concurrency limiters from configuration
+ */
+final class ConcurrencyLimiters {
+
+  private ConcurrencyLimiters() {
+  }
+
+  static boolean isEnabled(ConcurrencyLimitProperties properties) {
+    return properties != null && properties.isEnabled();
+  }
+
+  static AdaptiveConcurrencyLimiter newLimiter(String operation,
+      ConcurrencyLimitProperties properties) {
+    return AdaptiveConcurrencyLimiter.builder()
+        .name(operation)
+        .initialLimit(properties.getInitialLimit())
+        .minLimit(properties.getMinLimit())
+        .maxLimit(properties.getMaxLimit())
+        .backoffRatio(properties.getBackoffRatio())
+        .latencyTolerance(properties.getLatencyTolerance())
+        .maxQueueTime(properties.getMaxQueueTime())
+        .build();
+  }
+}
@@ -20,10 +20,21 @@ package com.epam.digital.data.platform.storage.file.factory;
 import com.epam.digital.data.platform.integration.ceph.factory.CephS3Factory;
 import com.epam.digital.data.platform.integration.ceph.service.CephService;
 import com.epam.digital.data.platform.storage.file.config.FileDataCephStorageConfiguration;
+import com.epam.digital.data.platform.storage.file.dto.WarmUpResultDto;
+import com.epam.digital.data.platform.storage.file.repository.ConcurrencyLimitingFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.EndpointRouter;
+import com.epam.digital.data.platform.storage.file.repository.FileRepository;
 import com.epam.digital.data.platform.storage.file.repository.FileRepositoryImpl;
+import com.epam.digital.data.platform.storage.file.repository.RoutingFileRepository;
+import com.epam.digital.data.platform.storage.file.service.FileChangePublisher;
+import com.epam.digital.data.platform.storage.file.service.FileChangeTransport;
 import com.epam.digital.data.platform.storage.file.service.FileStorageService;
 import com.epam.digital.data.platform.storage.file.service.FormDataFileKeyProvider;
 import com.epam.digital.data.platform.storage.file.service.FormDataFileKeyProviderImpl;
+import com.epam.digital.data.platform.storage.file.service.ResumableUploadService;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 
 /**
@@ -33,18 +44,89 @@ import lombok.RequiredArgsConstructor;
 public class FileStorageServiceFactory {
 
   private final CephS3Factory cephFactory;
+  private final CephServiceWarmUpTracker warmUps = new CephServiceWarmUpTracker();
 
   public FileStorageService fileStorageService(FileDataCephStorageConfiguration config) {
+    return fileStorageService(config, null);
+  }
+
+  /**
+   * Create storage service that publishes its changes through the specified transport
+   */
+  public FileStorageService fileStorageService(FileDataCephStorageConfiguration config,
+      FileChangeTransport changeTransport) {
+    var changePublisher = changeTransport == null ? null
+        : FileChangePublisher.builder().transport(changeTransport).build();
+    var spooling = config.getSpooling();
     return FileStorageService.builder()
-        .repository(newFileRepository(config))
+        .repository(newLimitedFileRepository(config))
         .keyProvider(newFormDataFileKeyProvider())
+        .batchParallelism(config.getBatchParallelism())
+        .changePublisher(changePublisher)
+        .spoolMemoryThreshold(spooling.getMemoryThreshold())
+        .digestAlgorithm(spooling.getDigestAlgorithm())
+        .spoolDirectory(spooling.getDirectory() == null ? null : Path.of(spooling.getDirectory()))
+        .operationLog(OperationLogs.newOperationLog(config.getOperationLog()))
+        .bufferPool(BufferPools.newBufferPool(config.getBufferPool()))
+        .build();
+  }
+
+  public ResumableUploadService newResumableUploadService(FileDataCephStorageConfiguration config) {
+    var upload = config.getUpload();
+    var service = ResumableUploadService.builder()
+        .repository(newLimitedFileRepository(config))
+        .sessionsPrefix(upload.getSessionsPrefix())
+        .sessionTtl(upload.getSessionTtl())
+        .cleanupInterval(upload.getCleanupInterval())
         .build();
+    service.start();
+    return service;
   }
 
   public FileRepositoryImpl newFileRepository(FileDataCephStorageConfiguration config) {
+    return newFileRepository(config, config.resolveHttpEndpoints().get(0));
+  }
+
+  private FileRepositoryImpl newFileRepository(FileDataCephStorageConfiguration config,
+      String endpoint) {
     return FileRepositoryImpl.builder()
         .cephBucketName(config.getBucket())
-        .cephService(newCephServiceS3(config))
+        .cephService(newCephServiceS3(config, endpoint))
+        .build();
+  }
+
+  private FileRepository newStorageRepository(FileDataCephStorageConfiguration config) {
+    var endpoints = config.resolveHttpEndpoints();
+    if (endpoints.size() == 1) {
+      return newFileRepository(config, endpoints.get(0));
+    }
+    var repositories = new LinkedHashMap<String, FileRepository>();
+    for (var endpoint : endpoints) {
+      repositories.put(endpoint, newFileRepository(config, endpoint));
+    }
+    var routing = config.getRouting();
+    var router = EndpointRouter.<FileRepository>builder()
+        .endpoints(repositories)
+        .maxFailures(routing.getMaxFailures())
+        .probeInterval(routing.getProbeInterval())
+        .latencyDecay(routing.getLatencyDecay())
+        .probe(repository -> repository.getKeys(routing.getProbePrefix()))
+        .build();
+    router.start();
+    return new RoutingFileRepository(router, routing.getMaxRetryBufferSize());
+  }
+
+  private FileRepository newLimitedFileRepository(FileDataCephStorageConfiguration config) {
+    var repository = newStorageRepository(config);
+    var concurrencyLimit = config.getConcurrencyLimit();
+    if (!ConcurrencyLimiters.isEnabled(concurrencyLimit)) {
+      return repository;
+    }
+    return ConcurrencyLimitingFileRepository.builder()
+        .delegate(repository)
+        .readLimiter(ConcurrencyLimiters.newLimiter("read", concurrencyLimit))
+        .writeLimiter(ConcurrencyLimiters.newLimiter("write", concurrencyLimit))
+        .listLimiter(ConcurrencyLimiters.newLimiter("list", concurrencyLimit))
         .build();
   }
 
@@ -52,8 +134,26 @@ public class FileStorageServiceFactory {
     return new FormDataFileKeyProviderImpl();
   }
 
-  private CephService newCephServiceS3(FileDataCephStorageConfiguration config) {
-    return cephFactory.createCephService(config.getHttpEndpoint(),
+  /**
+   * Readiness of the storage clients created by this factory
+   *
+   * @return false if the warm-up of any client is not complete or failed
+   */
+  public boolean isReady() {
+    return warmUps.isReady();
+  }
+
+  public Optional<WarmUpResultDto> getWarmUpResult() {
+    return warmUps.getResult();
+  }
+
+  private CephService newCephServiceS3(FileDataCephStorageConfiguration config, String endpoint) {
+    var cephService = cephFactory.createCephService(endpoint,
         config.getAccessKey(), config.getSecretKey());
+    var warmUp = config.getWarmUp();
+    if (warmUp != null && warmUp.isEnabled()) {
+      warmUps.warmUp(cephService, config.getBucket(), warmUp);
+    }
+    return cephService;
   }
 }
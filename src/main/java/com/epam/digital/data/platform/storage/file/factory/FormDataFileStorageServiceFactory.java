@@ -20,41 +20,305 @@ package com.epam.digital.data.platform.storage.file.factory;
 import com.epam.digital.data.platform.integration.ceph.factory.CephS3Factory;
 import com.epam.digital.data.platform.integration.ceph.service.CephService;
 import com.epam.digital.data.platform.storage.file.config.FileDataCephStorageConfiguration;
+import com.epam.digital.data.platform.storage.file.config.MigrationProperties;
+import com.epam.digital.data.platform.storage.file.dto.WarmUpResultDto;
 import com.epam.digital.data.platform.storage.file.repository.CephFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.CoalescingFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.EndpointRouter;
+import com.epam.digital.data.platform.storage.file.repository.ConcurrencyLimitingFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.FileRangeReader;
 import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.PackedFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.RoutingFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.service.DeferredFileCleanupService;
+import com.epam.digital.data.platform.storage.file.service.FileChangePublisher;
+import com.epam.digital.data.platform.storage.file.service.FileChangeTransport;
+import com.epam.digital.data.platform.storage.file.service.FileContentVerifier;
+import com.epam.digital.data.platform.storage.file.service.FileExistenceChecker;
+import com.epam.digital.data.platform.storage.file.service.FileMigrationService;
+import com.epam.digital.data.platform.storage.file.service.FilePrefetcher;
+import com.epam.digital.data.platform.storage.file.service.FileThrottler;
 import com.epam.digital.data.platform.storage.file.service.FormDataFileKeyProvider;
 import com.epam.digital.data.platform.storage.file.service.FormDataFileKeyProviderImpl;
 import com.epam.digital.data.platform.storage.file.service.FormDataFileStorageService;
+import com.epam.digital.data.platform.storage.file.service.ParallelFileDownloader;
+import com.epam.digital.data.platform.storage.file.service.ProcessInstanceKeyFilter;
+import com.epam.digital.data.platform.storage.file.service.ProcessInstanceUsageTracker;
+import java.util.LinkedHashMap;
+import java.util.Optional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * The class for creation storage services based on supported configuration
  */
+@Slf4j
 @RequiredArgsConstructor
 public class FormDataFileStorageServiceFactory {
 
     private final CephS3Factory cephFactory;
+    private final CephServiceWarmUpTracker warmUps = new CephServiceWarmUpTracker();
 
     public FormDataFileStorageService fromDataFileStorageService(FileDataCephStorageConfiguration config) {
-        return FormDataFileStorageService.builder()
-                .repository(newCephFormDataFileRepository(config))
-                .keyProvider(newFormDataFileKeyProvider())
+        return fromDataFileStorageService(config, null);
+    }
+
+    /**
+     * Create storage service that publishes its changes and updates local caches with changes of
+     * other nodes through the specified transport
+     */
+    public FormDataFileStorageService fromDataFileStorageService(FileDataCephStorageConfiguration config,
+            FileChangeTransport changeTransport) {
+        var bufferPool = BufferPools.newBufferPool(config.getBufferPool());
+        var storageRepository = newStorageRepository(config);
+        var repository = newCephFormDataFileRepository(config, storageRepository);
+        var keyProvider = newFormDataFileKeyProvider();
+        var cleanup = config.getCleanup();
+        DeferredFileCleanupService cleanupService = null;
+        if (cleanup != null && cleanup.isEnabled()) {
+            cleanupService = DeferredFileCleanupService.builder()
+                    .repository(repository)
+                    .queueRepository(storageRepository)
+                    .keyProvider(keyProvider)
+                    .queuePrefix(cleanup.getQueuePrefix())
+                    .interval(cleanup.getInterval())
+                    .batchSize(cleanup.getBatchSize())
+                    .maxDeletesPerSecond(cleanup.getMaxDeletesPerSecond())
+                    .build();
+            cleanupService.start();
+        }
+        var existenceCheck = config.getExistenceCheck();
+        var existenceChecker = FileExistenceChecker.builder()
+                .repository(repository)
+                .parallelism(existenceCheck.getParallelism())
+                .negativeCacheTtl(existenceCheck.getNegativeCacheTtl())
+                .maxCachedMisses(existenceCheck.getMaxCachedMisses())
                 .build();
+        var keyFilterProperties = config.getKeyFilter();
+        ProcessInstanceKeyFilter keyFilter = null;
+        if (keyFilterProperties != null && keyFilterProperties.isEnabled()
+                && !keyFilterProperties.isSingleNode()
+                && (changeTransport == null || !changeTransport.reachesOtherNodes())) {
+            log.warn("Key filter is disabled since files stored by other nodes would not be "
+                    + "added to it, configure a change transport that reaches other nodes");
+        } else if (keyFilterProperties != null && keyFilterProperties.isEnabled()) {
+            keyFilter = ProcessInstanceKeyFilter.builder()
+                    .repository(repository)
+                    .maxProcessInstances(keyFilterProperties.getMaxProcessInstances())
+                    .expectedKeysPerProcessInstance(
+                            keyFilterProperties.getExpectedKeysPerProcessInstance())
+                    .maxKeysPerProcessInstance(keyFilterProperties.getMaxKeysPerProcessInstance())
+                    .falsePositiveProbability(keyFilterProperties.getFalsePositiveProbability())
+                    .ttl(keyFilterProperties.getTtl())
+                    .build();
+        }
+        var throttling = config.getThrottling();
+        FileThrottler throttler = null;
+        if (throttling != null && throttling.isEnabled()) {
+            throttler = FileThrottler.builder()
+                    .requestsPerSecond(throttling.getRequestsPerSecond())
+                    .requestBurst(throttling.getRequestBurst())
+                    .bytesPerSecond(throttling.getBytesPerSecond())
+                    .byteBurst(throttling.getByteBurst())
+                    .maxTrackedKeys(throttling.getMaxTrackedKeys())
+                    .build();
+        }
+        var verification = config.getVerification();
+        FileContentVerifier contentVerifier = null;
+        if (verification != null && verification.isEnabled()) {
+            contentVerifier = FileContentVerifier.builder()
+                    .digestAlgorithm(verification.getDigestAlgorithm())
+                    .minContentLength(verification.getMinContentLength())
+                    .maxContentLength(verification.getMaxContentLength())
+                    .bufferPool(bufferPool)
+                    .build();
+        }
+        var usage = config.getUsage();
+        ProcessInstanceUsageTracker usageTracker = null;
+        if (usage != null && usage.isEnabled() && !usage.isSingleNode()
+                && (changeTransport == null || !changeTransport.reachesOtherNodes())) {
+            log.warn("Usage tracking is disabled since files stored by other nodes would not be "
+                    + "counted, configure a change transport that reaches other nodes");
+        } else if (usage != null && usage.isEnabled()) {
+            usageTracker = ProcessInstanceUsageTracker.builder()
+                    .repository(repository)
+                    .recordRepository(storageRepository)
+                    .recordPrefix(usage.getRecordPrefix())
+                    .flushInterval(usage.getFlushInterval())
+                    .reconcileInterval(usage.getReconcileInterval())
+                    .maxTrackedProcessInstances(usage.getMaxTrackedProcessInstances())
+                    .maxBytesPerProcessInstance(usage.getMaxBytesPerProcessInstance())
+                    .maxFilesPerProcessInstance(usage.getMaxFilesPerProcessInstance())
+                    .build();
+            usageTracker.start();
+        }
+        var prefetch = config.getPrefetch();
+        FilePrefetcher prefetcher = null;
+        if (prefetch != null && prefetch.isEnabled()) {
+            prefetcher = FilePrefetcher.builder()
+                    .repository(repository)
+                    .smallestFirst(prefetch.isSmallestFirst())
+                    .maxFilesPerListing(prefetch.getMaxFilesPerListing())
+                    .maxFileSize(prefetch.getMaxFileSize())
+                    .maxCacheBytes(prefetch.getMaxCacheBytes())
+                    .maxBytesPerSecond(prefetch.getMaxBytesPerSecond())
+                    .ttl(prefetch.getTtl())
+                    .parallelism(prefetch.getParallelism())
+                    .queueCapacity(prefetch.getQueueCapacity())
+                    .build();
+        }
+        var changePublisher = newFileChangePublisher(changeTransport);
+        var service = FormDataFileStorageService.builder()
+                .repository(repository)
+                .keyProvider(keyProvider)
+                .cleanupService(cleanupService)
+                .existenceChecker(existenceChecker)
+                .keyFilter(keyFilter)
+                .changePublisher(changePublisher)
+                .throttler(throttler)
+                .contentVerifier(contentVerifier)
+                .operationLog(OperationLogs.newOperationLog(config.getOperationLog()))
+                .usageTracker(usageTracker)
+                .prefetcher(prefetcher)
+                .bufferPool(bufferPool)
+                .build();
+        if (changePublisher != null) {
+            changePublisher.subscribe(service);
+        }
+        return service;
     }
 
     public FormDataFileRepository newCephFormDataFileRepository(FileDataCephStorageConfiguration config) {
+        return newCephFormDataFileRepository(config, newStorageRepository(config));
+    }
+
+    public ParallelFileDownloader newParallelFileDownloader(FileDataCephStorageConfiguration config,
+            FileRangeReader rangeReader) {
+        var download = config.getDownload();
+        return ParallelFileDownloader.builder()
+                .repository(newCephFormDataFileRepository(config))
+                .rangeReader(rangeReader)
+                .threshold(download.getThreshold())
+                .partSize(download.getPartSize())
+                .concurrency(download.getConcurrency())
+                .bufferPool(BufferPools.newBufferPool(config.getBufferPool()))
+                .build();
+    }
+
+    /**
+     * Create migration engine that copies stored objects as is from the source to the target
+     * storage
+     */
+    public FileMigrationService newFileMigrationService(FileDataCephStorageConfiguration source,
+            FileDataCephStorageConfiguration target, MigrationProperties migration) {
+        return FileMigrationService.builder()
+                .source(newStorageRepository(source))
+                .target(newStorageRepository(target))
+                .parallelism(migration.getParallelism())
+                .maxFilesPerSecond(migration.getMaxFilesPerSecond())
+                .maxBytesPerSecond(migration.getMaxBytesPerSecond())
+                .verify(migration.isVerify())
+                .digestAlgorithm(migration.getDigestAlgorithm())
+                .checkpointPrefix(migration.getCheckpointPrefix())
+                .checkpointInterval(migration.getCheckpointInterval())
+                .build();
+    }
+
+    private FormDataFileRepository newCephFormDataFileRepository(
+            FileDataCephStorageConfiguration config, FormDataFileRepository storageRepository) {
+        var repository = storageRepository;
+        var concurrencyLimit = config.getConcurrencyLimit();
+        if (ConcurrencyLimiters.isEnabled(concurrencyLimit)) {
+            repository = ConcurrencyLimitingFormDataFileRepository.builder()
+                    .delegate(repository)
+                    .readLimiter(ConcurrencyLimiters.newLimiter("read", concurrencyLimit))
+                    .writeLimiter(ConcurrencyLimiters.newLimiter("write", concurrencyLimit))
+                    .listLimiter(ConcurrencyLimiters.newLimiter("list", concurrencyLimit))
+                    .build();
+        }
+        var packing = config.getPacking();
+        if (packing != null && packing.isEnabled()) {
+            if (!packing.isSingleWriter()) {
+                throw new IllegalStateException(
+                        "Packed storage is supported for single writer deployments only");
+            }
+            repository = PackedFormDataFileRepository.builder()
+                    .delegate(repository)
+                    .maxFileSize(packing.getMaxFileSize())
+                    .maxSegmentSize(packing.getMaxSegmentSize())
+                    .maxCachedHeads(packing.getMaxCachedHeads())
+                    .build();
+        }
+        var coalescing = config.getCoalescing();
+        if (coalescing != null && coalescing.isEnabled()) {
+            repository = CoalescingFormDataFileRepository.builder()
+                    .delegate(repository)
+                    .maxBufferSize(coalescing.getMaxBufferSize())
+                    .build();
+        }
+        return repository;
+    }
+
+    private FormDataFileRepository newStorageRepository(FileDataCephStorageConfiguration config) {
+        var endpoints = config.resolveHttpEndpoints();
+        if (endpoints.size() == 1) {
+            return newCephRepository(config, newCephServiceS3(config, endpoints.get(0)));
+        }
+        var repositories = new LinkedHashMap<String, FormDataFileRepository>();
+        for (var endpoint : endpoints) {
+            repositories.put(endpoint, newCephRepository(config, newCephServiceS3(config, endpoint)));
+        }
+        var routing = config.getRouting();
+        var router = EndpointRouter.<FormDataFileRepository>builder()
+                .endpoints(repositories)
+                .maxFailures(routing.getMaxFailures())
+                .probeInterval(routing.getProbeInterval())
+                .latencyDecay(routing.getLatencyDecay())
+                .probe(repository -> repository.getKeys(routing.getProbePrefix()))
+                .build();
+        router.start();
+        return new RoutingFormDataFileRepository(router, routing.getMaxRetryBufferSize());
+    }
+
+    private FormDataFileRepository newCephRepository(FileDataCephStorageConfiguration config,
+            CephService cephService) {
         return CephFormDataFileRepository.builder()
                 .cephBucketName(config.getBucket())
-                .cephService(newCephServiceS3(config))
+                .cephService(cephService)
                 .build();
     }
 
+    private FileChangePublisher newFileChangePublisher(FileChangeTransport changeTransport) {
+        if (changeTransport == null) {
+            return null;
+        }
+        return FileChangePublisher.builder().transport(changeTransport).build();
+    }
+
     private FormDataFileKeyProvider newFormDataFileKeyProvider() {
         return new FormDataFileKeyProviderImpl();
     }
 
-    private CephService newCephServiceS3(FileDataCephStorageConfiguration config) {
-        return cephFactory.createCephService(config.getHttpEndpoint(),
+    /**
+     * Readiness of the storage clients created by this factory
+     *
+     * @return false if the warm-up of any client is not complete or failed
+     */
+    public boolean isReady() {
+        return warmUps.isReady();
+    }
+
+    public Optional<WarmUpResultDto> getWarmUpResult() {
+        return warmUps.getResult();
+    }
+
+    private CephService newCephServiceS3(FileDataCephStorageConfiguration config, String endpoint) {
+        var cephService = cephFactory.createCephService(endpoint,
                 config.getAccessKey(), config.getSecretKey());
+        var warmUp = config.getWarmUp();
+        if (warmUp != null && warmUp.isEnabled()) {
+            warmUps.warmUp(cephService, config.getBucket(), warmUp);
+        }
+        return cephService;
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.factory;
+
+import com.epam.digital.data.platform.storage.file.config.OperationLogProperties;
+import com.epam.digital.data.platform.storage.file.service.OperationLog;
+
+/**
+ * Creates sampled operation logs from configuration
+ */
+final class OperationLogs {
+
+  private OperationLogs() {
+  }
+
+  /**
+   * @return sampled operation log or null if sampled logging is disabled, every operation is
+   * logged then
+   */
+  static OperationLog newOperationLog(OperationLogProperties properties) {
+    if (properties == null || !properties.isEnabled()) {
+      return null;
+    }
+    return OperationLog.builder()
+        .sampleRate(properties.getSampleRate())
+        .slowThreshold(properties.getSlowThreshold())
+        .maxLoggedKeys(properties.getMaxLoggedKeys())
+        .queueCapacity(properties.getQueueCapacity())
+        .batchSize(properties.getBatchSize())
+        .build();
+  }
+}
@@ -26,7 +26,10 @@ import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -74,6 +77,45 @@ public class CephFormDataFileRepository implements FormDataFileRepository {
         cephService.delete(cephBucketName, keys);
     }
 
+    @Override
+    public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+            Map<String, String> userMetadata) {
+        return cephService.get(cephBucketName, sourceKey)
+                .map(source -> toFileMetadataDto(copy(source, targetKey, userMetadata)));
+    }
+
+    @Override
+    public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+            Map<String, String> userMetadata) {
+        var result = copy(sourceKey, targetKey, userMetadata);
+        if (result.isPresent()) {
+            cephService.delete(cephBucketName, Set.of(sourceKey));
+        }
+        return result;
+    }
+
+    /**
+     * Streams the object to the target key. The ceph client has no server-side copy operation, so
+     * the content is passed through without buffering.
+     */
+    private CephObjectMetadata copy(CephObject source, String targetKey,
+            Map<String, String> userMetadata) {
+        var metadata = source.getMetadata();
+        var targetMetadata = userMetadata != null ? userMetadata : metadata.getUserMetadata();
+        Long contentLength = metadata.getContentLength();
+        try (var content = source.getContent()) {
+            if (contentLength == null) {
+                return cephService.put(cephBucketName, targetKey, metadata.getContentType(),
+                        targetMetadata, content);
+            }
+            return cephService.put(cephBucketName, targetKey, metadata.getContentType(),
+                    contentLength, targetMetadata, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    String.format("Failed to copy file to key %s", targetKey), e);
+        }
+    }
+
     private FileDataDto toFileDataDto(CephObject cephObject) {
         return FileDataDto.builder()
                 .metadata(toFileMetadataDto(cephObject.getMetadata()))
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The repository decorator that coalesces concurrent identical reads into a single call of the
+ * wrapped repository. Callers that ask for the same file while it is being loaded receive a copy
+ * of the result of the call in flight.
+ * <p>
+ * File content is buffered and shared only if it is not larger than {@code maxBufferSize}. Larger
+ * files are streamed to the caller that started the load, other callers load them on their own.
+ * <p>
+ * Writes through this repository detach reads of the written keys that are in flight when the
+ * write returns, so a read issued after the write never joins a call that may have seen the old
+ * content. Writes made by other nodes or other repository instances are not detected.
+ */
+public class CoalescingFormDataFileRepository extends ForwardingFormDataFileRepository {
+
+  private final int maxBufferSize;
+  private final ConcurrentMap<String, CompletableFuture<Optional<SharedFile>>> filesInFlight =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<Object, CompletableFuture<List<FileMetadataDto>>> metadataInFlight =
+      new ConcurrentHashMap<>();
+
+  @Builder
+  public CoalescingFormDataFileRepository(FormDataFileRepository delegate, int maxBufferSize) {
+    super(delegate);
+    this.maxBufferSize = maxBufferSize;
+  }
+
+  @Override
+  public Optional<FileDataDto> get(String key) {
+    var call = new CompletableFuture<Optional<SharedFile>>();
+    var inFlight = filesInFlight.putIfAbsent(key, call);
+    if (inFlight != null) {
+      var shared = await(inFlight);
+      if (shared.isPresent() && shared.get().getContent() == null) {
+        return delegate.get(key);
+      }
+      return shared.map(SharedFile::toFileDataDto);
+    }
+    try {
+      var loaded = delegate.get(key);
+      if (loaded.isEmpty()) {
+        call.complete(Optional.empty());
+        return loaded;
+      }
+      var file = loaded.get();
+      var declaredLength = file.getMetadata().getContentLength();
+      if (declaredLength != null && declaredLength > maxBufferSize) {
+        call.complete(Optional.of(new SharedFile(file.getMetadata(), null)));
+        return loaded;
+      }
+      var content = file.getContent();
+      byte[] bytes;
+      try {
+        bytes = content.readNBytes(maxBufferSize + 1);
+      } catch (IOException e) {
+        try {
+          content.close();
+        } catch (IOException closeException) {
+          e.addSuppressed(closeException);
+        }
+        throw e;
+      }
+      if (bytes.length > maxBufferSize) {
+        call.complete(Optional.of(new SharedFile(file.getMetadata(), null)));
+        file.setContent(new SequenceInputStream(new ByteArrayInputStream(bytes), content));
+        return loaded;
+      }
+      content.close();
+      var shared = new SharedFile(file.getMetadata(), bytes);
+      call.complete(Optional.of(shared));
+      return Optional.of(shared.toFileDataDto());
+    } catch (IOException e) {
+      var exception = new UncheckedIOException(
+          String.format("Failed to read file with key %s", key), e);
+      call.completeExceptionally(exception);
+      throw exception;
+    } catch (RuntimeException e) {
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      filesInFlight.remove(key, call);
+    }
+  }
+
+  @Override
+  public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+    try {
+      return delegate.put(key, fileDataDto);
+    } finally {
+      detachReads(Set.of(key));
+    }
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    try {
+      delegate.delete(keys);
+    } finally {
+      detachReads(keys);
+    }
+  }
+
+  @Override
+  public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    try {
+      return delegate.copy(sourceKey, targetKey, userMetadata);
+    } finally {
+      detachReads(Set.of(targetKey));
+    }
+  }
+
+  @Override
+  public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    try {
+      return delegate.move(sourceKey, targetKey, userMetadata);
+    } finally {
+      detachReads(Set.of(sourceKey, targetKey));
+    }
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(Set<String> keys) {
+    return coalesceMetadata(Set.copyOf(keys), () -> delegate.getMetadata(keys));
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(String prefix) {
+    return coalesceMetadata(prefix, () -> delegate.getMetadata(prefix));
+  }
+
+  private List<FileMetadataDto> coalesceMetadata(Object request,
+      Supplier<List<FileMetadataDto>> loader) {
+    var call = new CompletableFuture<List<FileMetadataDto>>();
+    var inFlight = metadataInFlight.putIfAbsent(request, call);
+    if (inFlight != null) {
+      return copyOf(await(inFlight));
+    }
+    try {
+      var result = loader.get();
+      call.complete(result);
+      return result;
+    } catch (RuntimeException e) {
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      metadataInFlight.remove(request, call);
+    }
+  }
+
+  private void detachReads(Set<String> keys) {
+    keys.forEach(filesInFlight::remove);
+    metadataInFlight.keySet().removeIf(request -> isAffected(request, keys));
+  }
+
+  private static boolean isAffected(Object request, Set<String> keys) {
+    if (request instanceof String) {
+      var prefix = (String) request;
+      return keys.stream().anyMatch(key -> key.startsWith(prefix));
+    }
+    return keys.stream().anyMatch(((Set<?>) request)::contains);
+  }
+
+  private static <T> T await(CompletableFuture<T> inFlight) {
+    try {
+      return inFlight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static List<FileMetadataDto> copyOf(List<FileMetadataDto> metadata) {
+    return metadata.stream()
+        .map(CoalescingFormDataFileRepository::copyOf)
+        .collect(Collectors.toList());
+  }
+
+  private static FileMetadataDto copyOf(FileMetadataDto metadata) {
+    var userMetadata = metadata.getUserMetadata() == null ? null
+        : new LinkedHashMap<>(metadata.getUserMetadata());
+    return new FileMetadataDto(metadata.getContentLength(), metadata.getContentType(),
+        userMetadata);
+  }
+
+  @RequiredArgsConstructor
+  private static class SharedFile {
+
+    private final FileMetadataDto metadata;
+    private final byte[] content;
+
+    byte[] getContent() {
+      return content;
+    }
+
+    FileDataDto toFileDataDto() {
+      return FileDataDto.builder()
+          .content(new ByteArrayInputStream(content))
+          .metadata(copyOf(metadata))
+          .build();
+    }
+  }
+}
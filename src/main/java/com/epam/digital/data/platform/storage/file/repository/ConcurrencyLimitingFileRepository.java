@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.ConcurrencyLimitStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import com.epam.digital.data.platform.storage.file.utils.AdaptiveConcurrencyLimiter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The {@link FileRepository} decorator that limits concurrent reads, writes and listings of the
+ * wrapped repository with separate adaptive limits. Calls over the limit fail with
+ * {@link com.epam.digital.data.platform.storage.file.exception.StorageOverloadedException}.
+ * <p>
+ * Reads are limited until the content stream is returned, reading the stream is not limited.
+ * Latency of writes and copies depends on the file size and latency of multi-key deletes
+ * depends on the key count, so it does not shrink the limits.
+ */
+@Builder
+@RequiredArgsConstructor
+public class ConcurrencyLimitingFileRepository implements FileRepository {
+
+  private final FileRepository delegate;
+  private final AdaptiveConcurrencyLimiter readLimiter;
+  private final AdaptiveConcurrencyLimiter writeLimiter;
+  private final AdaptiveConcurrencyLimiter listLimiter;
+
+  @Override
+  public Optional<FileObjectDto> get(String key) {
+    return readLimiter.call(() -> delegate.get(key));
+  }
+
+  @Override
+  public BaseFileMetadataDto put(String key, FileObjectDto fileDataDto) {
+    return writeLimiter.callUnmeasured(() -> delegate.put(key, fileDataDto));
+  }
+
+  @Override
+  public Optional<BaseFileMetadataDto> getMetadata(String key) {
+    return readLimiter.call(() -> delegate.getMetadata(key));
+  }
+
+  @Override
+  public List<BaseFileMetadataDto> getMetadataByPrefix(String prefix) {
+    return listLimiter.call(() -> delegate.getMetadataByPrefix(prefix));
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    return listLimiter.call(() -> delegate.getKeys(prefix));
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    if (keys.size() > 1) {
+      writeLimiter.runUnmeasured(() -> delegate.delete(keys));
+    } else {
+      writeLimiter.run(() -> delegate.delete(keys));
+    }
+  }
+
+  @Override
+  public BaseFileMetadataDto setUserMetadata(String key, Map<String, String> userMetadata) {
+    return writeLimiter.callUnmeasured(() -> delegate.setUserMetadata(key, userMetadata));
+  }
+
+  @Override
+  public Optional<BaseFileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return writeLimiter.callUnmeasured(() -> delegate.copy(sourceKey, targetKey, userMetadata));
+  }
+
+  @Override
+  public Optional<BaseFileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return writeLimiter.callUnmeasured(() -> delegate.move(sourceKey, targetKey, userMetadata));
+  }
+
+  /**
+   * @return limiter counters by operation kind
+   */
+  public Map<String, ConcurrencyLimitStatsDto> getStats() {
+    var stats = new LinkedHashMap<String, ConcurrencyLimitStatsDto>();
+    stats.put("read", readLimiter.getStats());
+    stats.put("write", writeLimiter.getStats());
+    stats.put("list", listLimiter.getStats());
+    return stats;
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
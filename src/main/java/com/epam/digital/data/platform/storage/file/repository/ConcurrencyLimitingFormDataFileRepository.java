@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.ConcurrencyLimitStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.utils.AdaptiveConcurrencyLimiter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.Builder;
+
+/**
+ * The {@link FormDataFileRepository} decorator that limits concurrent reads, writes and listings
+ * of the wrapped repository with separate adaptive limits. Calls over the limit fail with
+ * {@link com.epam.digital.data.platform.storage.file.exception.StorageOverloadedException}.
+ * <p>
+ * Reads are limited until the content stream is returned, reading the stream is not limited.
+ * Latency of writes and copies depends on the file size and latency of multi-key reads and
+ * deletes depends on the key count, so it does not shrink the limits.
+ */
+public class ConcurrencyLimitingFormDataFileRepository extends ForwardingFormDataFileRepository {
+
+  private final AdaptiveConcurrencyLimiter readLimiter;
+  private final AdaptiveConcurrencyLimiter writeLimiter;
+  private final AdaptiveConcurrencyLimiter listLimiter;
+
+  @Builder
+  public ConcurrencyLimitingFormDataFileRepository(FormDataFileRepository delegate,
+      AdaptiveConcurrencyLimiter readLimiter, AdaptiveConcurrencyLimiter writeLimiter,
+      AdaptiveConcurrencyLimiter listLimiter) {
+    super(delegate);
+    this.readLimiter = readLimiter;
+    this.writeLimiter = writeLimiter;
+    this.listLimiter = listLimiter;
+  }
+
+  @Override
+  public Optional<FileDataDto> get(String key) {
+    return readLimiter.call(() -> delegate.get(key));
+  }
+
+  @Override
+  public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+    return writeLimiter.callUnmeasured(() -> delegate.put(key, fileDataDto));
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(Set<String> keys) {
+    if (keys.size() > 1) {
+      return readLimiter.callUnmeasured(() -> delegate.getMetadata(keys));
+    }
+    return readLimiter.call(() -> delegate.getMetadata(keys));
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(String prefix) {
+    return listLimiter.call(() -> delegate.getMetadata(prefix));
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    return listLimiter.call(() -> delegate.getKeys(prefix));
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    if (keys.size() > 1) {
+      writeLimiter.runUnmeasured(() -> delegate.delete(keys));
+    } else {
+      writeLimiter.run(() -> delegate.delete(keys));
+    }
+  }
+
+  @Override
+  public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return writeLimiter.callUnmeasured(() -> delegate.copy(sourceKey, targetKey, userMetadata));
+  }
+
+  @Override
+  public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return writeLimiter.callUnmeasured(() -> delegate.move(sourceKey, targetKey, userMetadata));
+  }
+
+  /**
+   * @return limiter counters by operation kind
+   */
+  public Map<String, ConcurrencyLimitStatsDto> getStats() {
+    var stats = new LinkedHashMap<String, ConcurrencyLimitStatsDto>();
+    stats.put("read", readLimiter.getStats());
+    stats.put("write", writeLimiter.getStats());
+    stats.put("list", listLimiter.getStats());
+    return stats;
+  }
+}
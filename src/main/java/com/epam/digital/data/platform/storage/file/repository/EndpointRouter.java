@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.epam.digital.data.platform.storage.file.dto.EndpointStatsDto;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The router of storage calls between repositories of several endpoints. Reads go to the healthy
+ * endpoint with the lowest average latency, writes go to the first healthy endpoint in the
+ * configured order. Only transport failures and server errors are endpoint failures: they are
+ * retried on the next endpoint unless the call is not retryable, other errors are thrown to the
+ * caller at once. Endpoints are ejected after {@code maxFailures} consecutive failures and
+ * returned after a successful probe, ejected endpoints are used only if no endpoint is healthy.
+ * <p>
+ * The average latency is measured on single object reads only, batch and listing reads and
+ * writes are routed by it without updating it. A healthy endpoint that was not called for
+ * {@code probeInterval} gets the next measured read, so that the latency of an endpoint that
+ * recovered from a slow period is measured again.
+ *
+ * @param <R> repository type
+ */
+@Slf4j
+public class EndpointRouter<R> implements AutoCloseable {
+
+  private final List<Endpoint<R>> endpoints;
+  private final int maxFailures;
+  private final Duration probeInterval;
+  private final long probeIntervalNanos;
+  private final double latencyDecay;
+  private final Consumer<R> probe;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param endpoints repositories by endpoint in the order of write preference
+   * @param probe     lightweight call that succeeds on a healthy endpoint
+   */
+  @Builder
+  public EndpointRouter(Map<String, R> endpoints, int maxFailures, Duration probeInterval,
+      double latencyDecay, Consumer<R> probe) {
+    this.endpoints = endpoints.entrySet().stream()
+        .map(endpoint -> new Endpoint<>(endpoint.getKey(), endpoint.getValue()))
+        .collect(Collectors.toList());
+    this.maxFailures = Math.max(1, maxFailures);
+    this.probeInterval = probeInterval;
+    this.probeIntervalNanos = probeInterval.toNanos();
+    this.latencyDecay = latencyDecay;
+    this.probe = probe;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      var thread = new Thread(runnable, "storage-endpoint-probe");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Schedule probes of ejected endpoints
+   */
+  public void start() {
+    var intervalMillis = probeInterval.toMillis();
+    scheduler.scheduleWithFixedDelay(this::probeEjected, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Call the endpoint with the lowest latency, retrying failures on other endpoints
+   */
+  public <T> T read(Function<R, T> call) {
+    return read(call, true);
+  }
+
+  /**
+   * Call the endpoint with the lowest latency, retrying failures on other endpoints
+   *
+   * @param measured whether the call latency is comparable between calls and updates the
+   *                 endpoint average, {@code false} for batch and listing calls
+   */
+  public <T> T read(Function<R, T> call, boolean measured) {
+    var healthy = new ArrayList<Map.Entry<Endpoint<R>, Double>>();
+    var ejected = new ArrayList<Endpoint<R>>();
+    for (var endpoint : endpoints) {
+      if (endpoint.ejected) {
+        ejected.add(endpoint);
+      } else {
+        healthy.add(Map.entry(endpoint, endpoint.latencyNanos));
+      }
+    }
+    healthy.sort(Map.Entry.comparingByValue());
+    var candidates = new ArrayList<Endpoint<R>>();
+    healthy.forEach(endpoint -> candidates.add(endpoint.getKey()));
+    var stale = measured ? takeStale(candidates) : null;
+    if (stale != null) {
+      candidates.remove(stale);
+      candidates.add(0, stale);
+    }
+    candidates.addAll(ejected);
+    return call(candidates, call, true, measured);
+  }
+
+  /**
+   * Call the preferred healthy endpoint
+   *
+   * @param retryable whether a failed call may be repeated on another endpoint
+   */
+  public <T> T write(Function<R, T> call, boolean retryable) {
+    var candidates = new ArrayList<Endpoint<R>>();
+    var ejected = new ArrayList<Endpoint<R>>();
+    for (var endpoint : endpoints) {
+      (endpoint.ejected ? ejected : candidates).add(endpoint);
+    }
+    candidates.addAll(ejected);
+    return call(candidates, call, retryable, false);
+  }
+
+  public List<EndpointStatsDto> getStats() {
+    return endpoints.stream()
+        .map(endpoint -> EndpointStatsDto.builder()
+            .endpoint(endpoint.name)
+            .healthy(!endpoint.ejected)
+            .latency(Duration.ofNanos((long) endpoint.latencyNanos))
+            .requestCount(endpoint.requestCount.sum())
+            .failureCount(endpoint.failureCount.sum())
+            .build())
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  private <T> T call(List<Endpoint<R>> candidates, Function<R, T> call, boolean retryable,
+      boolean measured) {
+    RuntimeException failure = null;
+    for (var endpoint : candidates) {
+      endpoint.requestCount.increment();
+      var startedAt = System.nanoTime();
+      if (measured) {
+        endpoint.lastCalledAt = startedAt;
+      }
+      try {
+        var result = call.apply(endpoint.repository);
+        onSuccess(endpoint, measured ? System.nanoTime() - startedAt : -1);
+        return result;
+      } catch (RuntimeException e) {
+        if (!isEndpointFailure(e)) {
+          if (failure != null) {
+            e.addSuppressed(failure);
+          }
+          throw e;
+        }
+        onFailure(endpoint, e);
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+        if (!retryable) {
+          break;
+        }
+      }
+    }
+    throw failure;
+  }
+
+  /**
+   * @return endpoint that was not called for the probe interval, it is marked as called so that
+   * only one read explores it
+   */
+  private synchronized Endpoint<R> takeStale(List<Endpoint<R>> candidates) {
+    var now = System.nanoTime();
+    for (var endpoint : candidates) {
+      if (now - endpoint.lastCalledAt > probeIntervalNanos) {
+        endpoint.lastCalledAt = now;
+        return endpoint;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param latencyNanos call latency, negative if the call is not measured
+   */
+  private synchronized void onSuccess(Endpoint<R> endpoint, long latencyNanos) {
+    endpoint.consecutiveFailures = 0;
+    if (latencyNanos < 0) {
+      return;
+    }
+    endpoint.latencyNanos = endpoint.latencyNanos == 0 ? latencyNanos
+        : endpoint.latencyNanos * (1 - latencyDecay) + latencyNanos * latencyDecay;
+  }
+
+  private synchronized void onFailure(Endpoint<R> endpoint, RuntimeException e) {
+    endpoint.failureCount.increment();
+    if (++endpoint.consecutiveFailures >= maxFailures && !endpoint.ejected) {
+      endpoint.ejected = true;
+      log.warn("Storage endpoint {} is ejected after {} failures", endpoint.name,
+          endpoint.consecutiveFailures, e);
+    }
+  }
+
+  /**
+   * @return whether the failure is caused by the endpoint: a transport failure or a server error,
+   * errors of the request itself are the same on every endpoint
+   */
+  static boolean isEndpointFailure(Throwable e) {
+    for (var cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof AmazonServiceException) {
+        return ((AmazonServiceException) cause).getStatusCode() >= 500;
+      }
+      if (cause instanceof SdkClientException || cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void probeEjected() {
+    for (var endpoint : endpoints) {
+      if (!endpoint.ejected) {
+        continue;
+      }
+      try {
+        probe.accept(endpoint.repository);
+        synchronized (this) {
+          endpoint.consecutiveFailures = 0;
+          endpoint.ejected = false;
+        }
+        log.info("Storage endpoint {} is healthy again", endpoint.name);
+      } catch (RuntimeException e) {
+        log.debug("Probe of storage endpoint {} failed", endpoint.name, e);
+      }
+    }
+  }
+
+  private static class Endpoint<R> {
+
+    private final String name;
+    private final R repository;
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private volatile boolean ejected;
+    private volatile double latencyNanos;
+    private volatile long lastCalledAt = System.nanoTime();
+    private int consecutiveFailures;
+
+    private Endpoint(String name, R repository) {
+      this.name = name;
+      this.repository = repository;
+    }
+  }
+}
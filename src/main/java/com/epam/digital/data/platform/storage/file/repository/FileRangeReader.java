@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import java.io.InputStream;
+
+/**
+ * The reader of byte ranges of stored files. Used for parallel downloads of large files, the
+ * implementation is expected to issue ranged GET requests.
+ */
+@FunctionalInterface
+public interface FileRangeReader {
+
+  /**
+   * Open content of the byte range of the file
+   *
+   * @param key    file key
+   * @param offset position of the first byte
+   * @param length number of bytes
+   * @return range content
+   */
+  InputStream read(String key, long offset, long length);
+}
@@ -19,13 +19,25 @@ package com.epam.digital.data.platform.storage.file.repository;
 
 import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
 import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import org.springframework.cloud.sleuth.annotation.NewSpan;
 
 /**
  * The repository for getting and storing files.
  */
-public interface FileRepository {
+public interface FileRepository extends AutoCloseable {
+
+  /**
+   * Retrieve file data by key
+   *
+   * @param key file key
+   * @return {@link FileObjectDto} content and metadata representation (optional)
+   */
+  @NewSpan("getFile")
+  Optional<FileObjectDto> get(String key);
 
   /**
    * Put file data to repository
@@ -36,6 +48,41 @@ public interface FileRepository {
   @NewSpan("putFile")
   BaseFileMetadataDto put(String key, FileObjectDto fileDataDto);
 
+  /**
+   * Get file metadata by key
+   *
+   * @param key specified file key
+   * @return file metadata (optional)
+   */
+  @NewSpan("getFileMetadata")
+  Optional<BaseFileMetadataDto> getMetadata(String key);
+
+  /**
+   * Get files metadata by prefix
+   *
+   * @param prefix specified prefix
+   * @return list of metadata
+   */
+  @NewSpan("getFilesMetadata")
+  List<BaseFileMetadataDto> getMetadataByPrefix(String prefix);
+
+  /**
+   * Get storage keys by prefix
+   *
+   * @param prefix provided prefix
+   * @return set of storage keys
+   */
+  @NewSpan("getKeysByPrefix")
+  Set<String> getKeys(String prefix);
+
+  /**
+   * Delete files by set of storage keys
+   *
+   * @param keys provided storage keys
+   */
+  @NewSpan("deleteFilesByKeys")
+  void delete(Set<String> keys);
+
   /**
    * Set user metadata by key.
    *
@@ -45,4 +92,36 @@ public interface FileRepository {
    */
   @NewSpan("setUserMetadata")
   BaseFileMetadataDto setUserMetadata(String key, Map<String, String> userMetadata);
+
+  /**
+   * Copy file to another key
+   *
+   * @param sourceKey    key of the file to copy
+   * @param targetKey    key of the copy
+   * @param userMetadata user metadata of the copy, metadata of the source file is preserved if
+   *                     null
+   * @return metadata of the copy or empty if source file not found
+   */
+  @NewSpan("copyFile")
+  Optional<BaseFileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata);
+
+  /**
+   * Move file to another key
+   *
+   * @param sourceKey    key of the file to move
+   * @param targetKey    new key of the file
+   * @param userMetadata new user metadata of the file, current metadata is preserved if null
+   * @return metadata of the moved file or empty if source file not found
+   */
+  @NewSpan("moveFile")
+  Optional<BaseFileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata);
+
+  /**
+   * Release resources of the repository, e.g. background threads of its decorators
+   */
+  @Override
+  default void close() {
+  }
 }
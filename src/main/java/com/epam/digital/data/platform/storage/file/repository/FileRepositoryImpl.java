@@ -17,11 +17,18 @@
 
 package com.epam.digital.data.platform.storage.file.repository;
 
+import com.epam.digital.data.platform.integration.ceph.model.CephObject;
 import com.epam.digital.data.platform.integration.ceph.model.CephObjectMetadata;
 import com.epam.digital.data.platform.integration.ceph.service.CephService;
 import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
 import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -34,6 +41,14 @@ public class FileRepositoryImpl implements FileRepository {
   private final String cephBucketName;
   private final CephService cephService;
 
+  @Override
+  public Optional<FileObjectDto> get(String key) {
+    return cephService.get(cephBucketName, key).map(cephObject -> FileObjectDto.builder()
+        .content(cephObject.getContent())
+        .metadata(toFileMetadataDto(cephObject.getMetadata()))
+        .build());
+  }
+
   @Override
   public BaseFileMetadataDto put(String key, FileObjectDto fileObjectDto) {
     var objectMetadata = cephService.put(
@@ -46,6 +61,30 @@ public class FileRepositoryImpl implements FileRepository {
     return toFileMetadataDto(objectMetadata);
   }
 
+  @Override
+  public Optional<BaseFileMetadataDto> getMetadata(String key) {
+    return cephService.getMetadata(cephBucketName, Set.of(key)).stream()
+        .findFirst()
+        .map(this::toFileMetadataDto);
+  }
+
+  @Override
+  public List<BaseFileMetadataDto> getMetadataByPrefix(String prefix) {
+    return cephService.getMetadata(cephBucketName, prefix).stream()
+        .map(this::toFileMetadataDto)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    return cephService.getKeys(cephBucketName, prefix);
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    cephService.delete(cephBucketName, keys);
+  }
+
   @Override
   public BaseFileMetadataDto setUserMetadata(String key, Map<String, String> userMetadata) {
     var objectMetadata = cephService.setUserMetadata(
@@ -53,6 +92,44 @@ public class FileRepositoryImpl implements FileRepository {
     return toFileMetadataDto(objectMetadata);
   }
 
+  @Override
+  public Optional<BaseFileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return cephService.get(cephBucketName, sourceKey)
+        .map(source -> toFileMetadataDto(copy(source, targetKey, userMetadata)));
+  }
+
+  @Override
+  public Optional<BaseFileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    var result = copy(sourceKey, targetKey, userMetadata);
+    if (result.isPresent()) {
+      cephService.delete(cephBucketName, Set.of(sourceKey));
+    }
+    return result;
+  }
+
+  /**
+   * Streams the object to the target key. The ceph client has no server-side copy operation, so
+   * the content is passed through without buffering.
+   */
+  private CephObjectMetadata copy(CephObject source, String targetKey,
+      Map<String, String> userMetadata) {
+    var metadata = source.getMetadata();
+    var targetMetadata = userMetadata != null ? userMetadata : metadata.getUserMetadata();
+    Long contentLength = metadata.getContentLength();
+    try (var content = source.getContent()) {
+      if (contentLength == null) {
+        return cephService.put(cephBucketName, targetKey, metadata.getContentType(),
+            targetMetadata, content);
+      }
+      return cephService.put(cephBucketName, targetKey, metadata.getContentType(),
+          contentLength, targetMetadata, content);
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failed to copy file to key %s", targetKey), e);
+    }
+  }
+
   private BaseFileMetadataDto toFileMetadataDto(CephObjectMetadata metadata) {
     return new BaseFileMetadataDto(metadata.getContentLength(), metadata.getContentType(),
         metadata.getUserMetadata());
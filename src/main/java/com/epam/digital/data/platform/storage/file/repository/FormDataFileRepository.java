@@ -19,16 +19,27 @@ package com.epam.digital.data.platform.storage.file.repository;
 
 import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
 import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataPageDto;
+import com.epam.digital.data.platform.storage.file.utils.BufferPool;
+import com.epam.digital.data.platform.storage.file.utils.ContinuationTokens;
+import com.epam.digital.data.platform.storage.file.utils.StreamTransfer;
 import org.springframework.cloud.sleuth.annotation.NewSpan;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * The repository for getting and storing files.
  */
-public interface FormDataFileRepository {
+public interface FormDataFileRepository extends AutoCloseable {
 
     /**
      * Retrieve file data by key
@@ -53,7 +64,7 @@ public interface FormDataFileRepository {
      * Get files metadata by keys
      *
      * @param keys specified file keys
-     * @return list of metadata
+     * @return list of metadata of existing files in the iteration order of keys
      */
     @NewSpan("getFilesMetadata")
     List<FileMetadataDto> getMetadata(Set<String> keys);
@@ -67,6 +78,53 @@ public interface FormDataFileRepository {
     @NewSpan("getFilesMetadata")
     List<FileMetadataDto> getMetadata(String prefix);
 
+    /**
+     * Get a page of files metadata by prefix ordered by key. Metadata is requested with a single
+     * call for keys of the page only, keys are listed in full since the storage listing is not
+     * paged.
+     *
+     * @param prefix            specified prefix
+     * @param pageSize          max number of files in the page
+     * @param continuationToken token of the previous page, may be null
+     * @param startAfter        key to start the listing after if no token is provided, may be
+     *                          null
+     * @return page of metadata
+     */
+    @NewSpan("getFilesMetadataPage")
+    default FileMetadataPageDto getMetadataPage(String prefix, int pageSize,
+            String continuationToken, String startAfter) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        var keys = new TreeSet<>(getKeys(prefix));
+        var position = continuationToken != null ? ContinuationTokens.decode(continuationToken)
+                : startAfter;
+        var remaining = position == null ? keys : keys.tailSet(position, false);
+        var pageKeys = new LinkedHashSet<String>();
+        String lastKey = null;
+        var iterator = remaining.iterator();
+        while (pageKeys.size() < pageSize && iterator.hasNext()) {
+            lastKey = iterator.next();
+            pageKeys.add(lastKey);
+        }
+        var items = pageKeys.isEmpty() ? List.<FileMetadataDto>of() : getMetadata(pageKeys);
+        return FileMetadataPageDto.builder()
+                .items(items)
+                .continuationToken(iterator.hasNext() ? ContinuationTokens.encode(lastKey) : null)
+                .build();
+    }
+
+    /**
+     * Check that file exists without loading its content
+     *
+     * @param key file key
+     * @return true if file exists
+     */
+    @NewSpan("fileExists")
+    default boolean exists(String key) {
+        return !getMetadata(Set.of(key)).isEmpty();
+    }
+
     /**
      * Get storage keys by prefix
      *
@@ -83,4 +141,104 @@ public interface FormDataFileRepository {
      */
     @NewSpan("deleteFilesByKeys")
     void delete(Set<String> keys);
+
+    /**
+     * Copy file to another key
+     *
+     * @param sourceKey    key of the file to copy
+     * @param targetKey    key of the copy
+     * @param userMetadata user metadata of the copy, metadata of the source file is preserved if
+     *                     null
+     * @return metadata of the copy or empty if source file not found
+     */
+    @NewSpan("copyFile")
+    Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+            Map<String, String> userMetadata);
+
+    /**
+     * Move file to another key
+     *
+     * @param sourceKey    key of the file to move
+     * @param targetKey    new key of the file
+     * @param userMetadata new user metadata of the file, current metadata is preserved if null
+     * @return metadata of the moved file or empty if source file not found
+     */
+    @NewSpan("moveFile")
+    Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+            Map<String, String> userMetadata);
+
+    /**
+     * Write file content to the channel using pooled buffers
+     *
+     * @param key    file key
+     * @param target channel to write content to, it is not closed
+     * @return metadata of the written file or empty if file not found
+     */
+    @NewSpan("transferFile")
+    default Optional<FileMetadataDto> transferTo(String key, WritableByteChannel target) {
+        return transferTo(key, target, BufferPool.getDefault());
+    }
+
+    /**
+     * Write file content to the channel using buffers of the specified pool
+     *
+     * @param key    file key
+     * @param target channel to write content to, it is not closed
+     * @param pool   pool of copy buffers
+     * @return metadata of the written file or empty if file not found
+     */
+    @NewSpan("transferFile")
+    default Optional<FileMetadataDto> transferTo(String key, WritableByteChannel target,
+            BufferPool pool) {
+        return get(key).map(file -> {
+            try (var content = file.getContent()) {
+                StreamTransfer.transfer(content, target, pool);
+                return file.getMetadata();
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        String.format("Failed to transfer file with key %s", key), e);
+            }
+        });
+    }
+
+    /**
+     * Write file content to the output stream using pooled buffers
+     *
+     * @param key    file key
+     * @param target stream to write content to, it is not closed
+     * @return metadata of the written file or empty if file not found
+     */
+    @NewSpan("transferFile")
+    default Optional<FileMetadataDto> transferTo(String key, OutputStream target) {
+        return transferTo(key, target, BufferPool.getDefault());
+    }
+
+    /**
+     * Write file content to the output stream using buffers of the specified pool
+     *
+     * @param key    file key
+     * @param target stream to write content to, it is not closed
+     * @param pool   pool of copy buffers
+     * @return metadata of the written file or empty if file not found
+     */
+    @NewSpan("transferFile")
+    default Optional<FileMetadataDto> transferTo(String key, OutputStream target,
+            BufferPool pool) {
+        return get(key).map(file -> {
+            try (var content = file.getContent()) {
+                StreamTransfer.transfer(content, target, pool);
+                return file.getMetadata();
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        String.format("Failed to transfer file with key %s", key), e);
+            }
+        });
+    }
+
+    /**
+     * Release resources of the repository, e.g. background threads of its decorators
+     */
+    @Override
+    default void close() {
+    }
 }
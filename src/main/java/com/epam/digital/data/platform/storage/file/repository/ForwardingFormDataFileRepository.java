@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The base class for {@link FormDataFileRepository} decorators that forwards all calls to the
+ * wrapped repository. Decorators override only the operations they change.
+ */
+public abstract class ForwardingFormDataFileRepository implements FormDataFileRepository {
+
+  protected final FormDataFileRepository delegate;
+
+  protected ForwardingFormDataFileRepository(FormDataFileRepository delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Optional<FileDataDto> get(String key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+    return delegate.put(key, fileDataDto);
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(Set<String> keys) {
+    return delegate.getMetadata(keys);
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(String prefix) {
+    return delegate.getMetadata(prefix);
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    return delegate.getKeys(prefix);
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    delegate.delete(keys);
+  }
+
+  @Override
+  public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return delegate.copy(sourceKey, targetKey, userMetadata);
+  }
+
+  @Override
+  public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return delegate.move(sourceKey, targetKey, userMetadata);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
@@ -0,0 +1,621 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.repository.PackedSegmentHead.Entry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The repository decorator that packs small files of a key group (all keys sharing the same prefix
+ * up to the last {@code /}, i.e. a process instance) into shared segment objects.
+ * <p>
+ * Each group that has packed files owns a head object {@code <group>.packed/head} that holds the
+ * offset index of all packed files and the segment that is currently being filled. Once the head
+ * segment reaches {@code maxSegmentSize} it is sealed to a {@code <group>.packed/segment-<n>}
+ * object. Deleting packed files rewrites the affected segments without the deleted ranges. Each
+ * packed write rewrites the head, so {@code maxSegmentSize} is limited to
+ * {@value #MAX_SEGMENT_SIZE} bytes.
+ * <p>
+ * Files larger than {@code maxFileSize} are stored as separate objects by the wrapped repository.
+ * Packed objects are hidden from listings, packed files are listed as regular keys.
+ * <p>
+ * Heads are cached up to {@code maxCachedHeads} groups and are revalidated by the version stored
+ * in their user metadata, so a read of a cached head costs a metadata request only. Keys that were
+ * written or read as separate objects are remembered and read without the head, a packed file
+ * replaces the separate object of its key, so a missing object falls back to the head. The head
+ * records names of separate objects of its group, the group is listed once when its head is
+ * created, so packing a new file does not delete a separate object that does not exist.
+ * <p>
+ * Writes of the same group are serialized within the JVM only and the head is replaced without a
+ * conditional put, so a group must not be written by several nodes concurrently. Packing must be
+ * enabled for single writer deployments only.
+ */
+@Slf4j
+public class PackedFormDataFileRepository extends ForwardingFormDataFileRepository {
+
+  static final String PACK_DIRECTORY = ".packed/";
+  static final String PACKED_HEADER = "packed";
+  static final String PACKED_GROUP_HEADER = "packed-group";
+  static final String PACKED_VERSION_HEADER = "packed-version";
+  static final int MAX_SEGMENT_SIZE = 256 * 1024;
+  private static final String HEAD = "head";
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String PACKED_CONTENT_TYPE = "application/octet-stream";
+  private static final int LOCK_STRIPES = 64;
+  private static final int MAX_UNPACKED_KEYS = 10_000;
+
+  private final int maxFileSize;
+  private final int maxSegmentSize;
+  private final Lock[] locks;
+  private final Map<String, CachedHead> heads;
+  private final Set<String> unpackedKeys;
+
+  @Builder
+  public PackedFormDataFileRepository(FormDataFileRepository delegate, int maxFileSize,
+      int maxSegmentSize, int maxCachedHeads) {
+    super(delegate);
+    if (maxFileSize <= 0 || maxSegmentSize < maxFileSize || maxSegmentSize > MAX_SEGMENT_SIZE) {
+      throw new IllegalArgumentException(String.format(
+          "Packed segment size %d must be between file size %d and %d", maxSegmentSize,
+          maxFileSize, MAX_SEGMENT_SIZE));
+    }
+    this.maxFileSize = maxFileSize;
+    this.maxSegmentSize = maxSegmentSize;
+    this.heads = Collections.synchronizedMap(lruMap(maxCachedHeads));
+    this.unpackedKeys = Collections.newSetFromMap(
+        Collections.synchronizedMap(lruMap(MAX_UNPACKED_KEYS)));
+    this.locks = new Lock[LOCK_STRIPES];
+    for (var i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  @Override
+  public Optional<FileDataDto> get(String key) {
+    if (isPackKey(key)) {
+      return Optional.empty();
+    }
+    if (unpackedKeys.contains(key)) {
+      var unpacked = delegate.get(key);
+      if (unpacked.isPresent()) {
+        return unpacked;
+      }
+      unpackedKeys.remove(key);
+    }
+    var group = groupOf(key);
+    var name = key.substring(group.length());
+    var head = loadHead(group);
+    if (head.isEmpty() || !head.get().getEntries().containsKey(name)) {
+      var unpacked = delegate.get(key);
+      unpacked.ifPresent(file -> unpackedKeys.add(key));
+      return unpacked;
+    }
+    var content = readPacked(group, head.get(), name);
+    if (content.isEmpty()) {
+      // the segment was compacted after the head had been read
+      content = loadHead(group).flatMap(reloaded -> readPacked(group, reloaded, name));
+    }
+    return content.map(bytes -> FileDataDto.builder()
+        .content(new ByteArrayInputStream(bytes))
+        .metadata(toFileMetadataDto(head.get().getEntries().get(name)))
+        .build());
+  }
+
+  @Override
+  public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+    if (isPackKey(key)) {
+      throw new IllegalArgumentException(
+          String.format("Key %s is reserved for packed storage", key));
+    }
+    var metadata = fileDataDto.getMetadata();
+    var declaredLength = metadata.getContentLength();
+    if (declaredLength != null && declaredLength > maxFileSize) {
+      return putUnpacked(key, fileDataDto);
+    }
+    var content = fileDataDto.getContent();
+    var bytes = readNBytes(content, maxFileSize + 1);
+    if (bytes.length > maxFileSize) {
+      return putUnpacked(key, FileDataDto.builder()
+          .content(new SequenceInputStream(new ByteArrayInputStream(bytes), content))
+          .metadata(metadata)
+          .build());
+    }
+    return putPacked(key, bytes, metadata);
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(Set<String> keys) {
+    var found = new HashMap<String, FileMetadataDto>();
+    var unpacked = new LinkedHashSet<String>();
+    groupByGroup(keys).forEach((group, groupKeys) -> {
+      var entries = loadHead(group).map(PackedSegmentHead::getEntries).orElse(Map.of());
+      for (var key : groupKeys) {
+        var entry = entries.get(key.substring(group.length()));
+        if (entry != null) {
+          found.put(key, toFileMetadataDto(entry));
+        } else {
+          unpacked.add(key);
+        }
+      }
+    });
+    if (!unpacked.isEmpty()) {
+      var unpackedMetadata = delegate.getMetadata(unpacked);
+      if (unpackedMetadata.size() == unpacked.size()) {
+        var iterator = unpackedMetadata.iterator();
+        unpacked.forEach(key -> found.put(key, iterator.next()));
+      } else {
+        // some files are missing, so metadata can't be matched with keys by position
+        unpacked.forEach(key -> delegate.getMetadata(Set.of(key)).stream().findFirst()
+            .ifPresent(metadata -> found.put(key, metadata)));
+      }
+    }
+    return keys.stream()
+        .map(found::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(String prefix) {
+    var result = new ArrayList<FileMetadataDto>();
+    var groups = new LinkedHashSet<String>();
+    for (var metadata : delegate.getMetadata(prefix)) {
+      var userMetadata = metadata.getUserMetadata();
+      if (userMetadata == null || !userMetadata.containsKey(PACKED_HEADER)) {
+        result.add(metadata);
+      } else if (HEAD.equals(userMetadata.get(PACKED_HEADER))) {
+        groups.add(userMetadata.get(PACKED_GROUP_HEADER));
+      }
+    }
+    if (!prefix.endsWith("/")) {
+      groups.add(groupOf(prefix));
+    }
+    for (var group : groups) {
+      loadHead(group).ifPresent(head -> head.getEntries().forEach((name, entry) -> {
+        if ((group + name).startsWith(prefix)) {
+          result.add(toFileMetadataDto(entry));
+        }
+      }));
+    }
+    return result;
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    var result = new HashSet<String>();
+    var groups = new LinkedHashSet<String>();
+    for (var key : delegate.getKeys(prefix)) {
+      if (!isPackKey(key)) {
+        result.add(key);
+      } else if (key.endsWith(PACK_DIRECTORY + HEAD)) {
+        groups.add(key.substring(0, key.length() - PACK_DIRECTORY.length() - HEAD.length()));
+      }
+    }
+    if (!prefix.endsWith("/")) {
+      groups.add(groupOf(prefix));
+    }
+    for (var group : groups) {
+      loadHead(group).ifPresent(head -> head.getEntries().keySet().stream()
+          .map(group::concat)
+          .filter(key -> key.startsWith(prefix))
+          .forEach(result::add));
+    }
+    return result;
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    unpackedKeys.removeAll(keys);
+    var unpacked = new HashSet<String>();
+    groupByGroup(keys).forEach((group, groupKeys) -> {
+      var names = groupKeys.stream()
+          .map(key -> key.substring(group.length()))
+          .collect(Collectors.toSet());
+      var removed = removePacked(group, names, false);
+      groupKeys.stream()
+          .filter(key -> !removed.contains(key.substring(group.length())))
+          .forEach(unpacked::add);
+    });
+    if (!unpacked.isEmpty()) {
+      delegate.delete(unpacked);
+    }
+  }
+
+  @Override
+  public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    var sourceGroup = groupOf(sourceKey);
+    var packed = !isPackKey(sourceKey) && loadHead(sourceGroup)
+        .map(head -> head.getEntries().containsKey(sourceKey.substring(sourceGroup.length())))
+        .orElse(false);
+    if (!packed) {
+      var result = delegate.copy(sourceKey, targetKey, userMetadata);
+      if (result.isPresent()) {
+        var targetGroup = groupOf(targetKey);
+        removePacked(targetGroup, Set.of(targetKey.substring(targetGroup.length())), true);
+        unpackedKeys.add(targetKey);
+      }
+      return result;
+    }
+    return get(sourceKey).map(source -> {
+      var metadata = source.getMetadata();
+      var targetMetadata = new FileMetadataDto(metadata.getContentLength(),
+          metadata.getContentType(),
+          userMetadata != null ? userMetadata : metadata.getUserMetadata());
+      return put(targetKey, FileDataDto.builder()
+          .content(source.getContent())
+          .metadata(targetMetadata)
+          .build());
+    });
+  }
+
+  @Override
+  public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    var result = copy(sourceKey, targetKey, userMetadata);
+    if (result.isPresent()) {
+      delete(Set.of(sourceKey));
+    }
+    return result;
+  }
+
+  private FileMetadataDto putUnpacked(String key, FileDataDto fileDataDto) {
+    var result = delegate.put(key, fileDataDto);
+    var group = groupOf(key);
+    removePacked(group, Set.of(key.substring(group.length())), true);
+    unpackedKeys.add(key);
+    return result;
+  }
+
+  private FileMetadataDto putPacked(String key, byte[] bytes, FileMetadataDto metadata) {
+    var group = groupOf(key);
+    var name = key.substring(group.length());
+    var userMetadata = withoutNullValues(metadata.getUserMetadata());
+    var lock = lockFor(group);
+    lock.lock();
+    try {
+      unpackedKeys.remove(key);
+      var head = loadHead(group).orElseGet(() -> newHead(group));
+      var previous = head.getEntries().remove(name);
+      var obsolete = new HashSet<String>();
+      if (head.getUnpacked().remove(name)) {
+        // a separate object of a larger file is stored under the key
+        obsolete.add(key);
+      }
+      if (previous != null && previous.getSegment() == PackedSegmentHead.HEAD_SEGMENT) {
+        head.compact();
+      } else if (previous != null) {
+        obsolete.add(segmentKey(group, previous.getSegment()));
+        compactSegment(group, head, previous.getSegment());
+      }
+      if (head.getData().length > 0 && head.getData().length + bytes.length > maxSegmentSize) {
+        var segmentId = head.reserveSegmentId();
+        storeSegment(group, segmentId, head.seal(segmentId));
+      }
+      var offset = head.append(bytes);
+      head.getEntries().put(name, new Entry(PackedSegmentHead.HEAD_SEGMENT, offset, bytes.length,
+          metadata.getContentType(), userMetadata));
+      storeHead(group, head);
+      if (!obsolete.isEmpty()) {
+        delegate.delete(obsolete);
+      }
+      log.debug("File with key {} was packed, group {}, size {}", key, group, bytes.length);
+      return new FileMetadataDto((long) bytes.length, metadata.getContentType(), userMetadata);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes packed files of the group and compacts the segments they were stored in
+   *
+   * @param unpacked true if the files are now stored as separate objects, false if they are
+   *                 deleted
+   * @return names of the files that were packed and removed
+   */
+  private Set<String> removePacked(String group, Set<String> names, boolean unpacked) {
+    var lock = lockFor(group);
+    lock.lock();
+    try {
+      var loaded = loadHead(group);
+      if (loaded.isEmpty()) {
+        return Set.of();
+      }
+      var head = loaded.get();
+      var removed = new HashSet<String>();
+      var touchedSegments = new HashSet<Integer>();
+      for (var name : names) {
+        var entry = head.getEntries().remove(name);
+        if (entry != null) {
+          removed.add(name);
+          touchedSegments.add(entry.getSegment());
+        }
+      }
+      var unpackedChanged = unpacked ? head.getUnpacked().addAll(names)
+          : head.getUnpacked().removeAll(names);
+      if (removed.isEmpty() && !unpackedChanged) {
+        return removed;
+      }
+      var obsolete = new HashSet<String>();
+      for (var segment : touchedSegments) {
+        if (segment == PackedSegmentHead.HEAD_SEGMENT) {
+          head.compact();
+        } else {
+          obsolete.add(segmentKey(group, segment));
+          compactSegment(group, head, segment);
+        }
+      }
+      if (head.getEntries().isEmpty()) {
+        obsolete.add(headKey(group));
+        heads.remove(group);
+      } else {
+        storeHead(group, head);
+      }
+      if (!obsolete.isEmpty()) {
+        delegate.delete(obsolete);
+      }
+      log.debug("Packed files {} were removed from group {}", removed, group);
+      return removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Creates the head of a group that has no packed files yet with names of its separate objects
+   */
+  private PackedSegmentHead newHead(String group) {
+    var names = delegate.getKeys(group).stream()
+        .filter(key -> key.indexOf('/', group.length()) < 0)
+        .map(key -> key.substring(group.length()))
+        .collect(Collectors.toSet());
+    return new PackedSegmentHead(names);
+  }
+
+  /**
+   * Copies live entries of a sealed segment to a new segment. The old segment stays readable until
+   * the head referencing the new one is stored.
+   */
+  private void compactSegment(String group, PackedSegmentHead head, int segment) {
+    var live = head.getEntries().values().stream()
+        .anyMatch(entry -> entry.getSegment() == segment);
+    if (!live) {
+      return;
+    }
+    var data = delegate.get(segmentKey(group, segment))
+        .map(dto -> readAll(dto.getContent()))
+        .orElseThrow(() -> new IllegalStateException(
+            String.format("Packed segment %s is missing", segmentKey(group, segment))));
+    var compacted = head.compact(segment, data);
+    var segmentId = head.reserveSegmentId();
+    head.getEntries().values().stream()
+        .filter(entry -> entry.getSegment() == segment)
+        .forEach(entry -> entry.setSegment(segmentId));
+    storeSegment(group, segmentId, compacted);
+  }
+
+  private Optional<byte[]> readPacked(String group, PackedSegmentHead head, String name) {
+    var entry = head.getEntries().get(name);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    if (entry.getSegment() == PackedSegmentHead.HEAD_SEGMENT) {
+      return Optional.of(Arrays.copyOfRange(head.getData(), entry.getOffset(),
+          entry.getOffset() + entry.getLength()));
+    }
+    return delegate.get(segmentKey(group, entry.getSegment()))
+        .map(dto -> readRange(dto.getContent(), entry.getOffset(), entry.getLength()));
+  }
+
+  /**
+   * Loads the head of the group, a cached head is used if its version is still current
+   *
+   * @return head that may be modified by the caller or empty if the group has no packed files
+   */
+  private Optional<PackedSegmentHead> loadHead(String group) {
+    var key = headKey(group);
+    var cached = heads.get(group);
+    if (cached != null) {
+      var current = delegate.getMetadata(Set.of(key)).stream().findFirst();
+      if (current.isEmpty()) {
+        heads.remove(group);
+        return Optional.empty();
+      }
+      if (cached.getVersion().equals(versionOf(current.get()))) {
+        return Optional.of(parseHead(group, cached.getData()));
+      }
+    }
+    var loaded = delegate.get(key);
+    if (loaded.isEmpty()) {
+      heads.remove(group);
+      return Optional.empty();
+    }
+    var data = readAll(loaded.get().getContent());
+    var version = versionOf(loaded.get().getMetadata());
+    if (version != null) {
+      heads.put(group, new CachedHead(version, data));
+    }
+    return Optional.of(parseHead(group, data));
+  }
+
+  private PackedSegmentHead parseHead(String group, byte[] data) {
+    try {
+      return PackedSegmentHead.read(new ByteArrayInputStream(data));
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          String.format("Failed to read packed head of group %s", group), e);
+    }
+  }
+
+  private void storeHead(String group, PackedSegmentHead head) {
+    byte[] data;
+    try {
+      data = head.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          String.format("Failed to write packed head of group %s", group), e);
+    }
+    var version = UUID.randomUUID().toString();
+    storePackObject(headKey(group), Map.of(PACKED_HEADER, HEAD, PACKED_GROUP_HEADER, group,
+        PACKED_VERSION_HEADER, version), data);
+    heads.put(group, new CachedHead(version, data));
+  }
+
+  private void storeSegment(String group, int segment, byte[] data) {
+    storePackObject(segmentKey(group, segment),
+        Map.of(PACKED_HEADER, SEGMENT_PREFIX, PACKED_GROUP_HEADER, group), data);
+  }
+
+  private void storePackObject(String key, Map<String, String> userMetadata, byte[] data) {
+    delegate.put(key, FileDataDto.builder()
+        .content(new ByteArrayInputStream(data))
+        .metadata(new FileMetadataDto((long) data.length, PACKED_CONTENT_TYPE, userMetadata))
+        .build());
+  }
+
+  private String versionOf(FileMetadataDto metadata) {
+    var userMetadata = metadata.getUserMetadata();
+    return userMetadata == null ? null : userMetadata.get(PACKED_VERSION_HEADER);
+  }
+
+  private Lock lockFor(String group) {
+    return locks[Math.floorMod(group.hashCode(), LOCK_STRIPES)];
+  }
+
+  private FileMetadataDto toFileMetadataDto(Entry entry) {
+    return new FileMetadataDto((long) entry.getLength(), entry.getContentType(),
+        new LinkedHashMap<>(entry.getUserMetadata()));
+  }
+
+  private Map<String, List<String>> groupByGroup(Set<String> keys) {
+    return keys.stream()
+        .filter(key -> !isPackKey(key))
+        .collect(Collectors.groupingBy(this::groupOf, LinkedHashMap::new, Collectors.toList()));
+  }
+
+  private Map<String, String> withoutNullValues(Map<String, String> userMetadata) {
+    var result = new LinkedHashMap<String, String>();
+    if (userMetadata != null) {
+      userMetadata.forEach((key, value) -> {
+        if (key != null && value != null) {
+          result.put(key, value);
+        }
+      });
+    }
+    return result;
+  }
+
+  private String groupOf(String key) {
+    return key.substring(0, key.lastIndexOf('/') + 1);
+  }
+
+  private boolean isPackKey(String key) {
+    return groupOf(key).endsWith(PACK_DIRECTORY);
+  }
+
+  private String headKey(String group) {
+    return group + PACK_DIRECTORY + HEAD;
+  }
+
+  private String segmentKey(String group, int segment) {
+    return group + PACK_DIRECTORY + SEGMENT_PREFIX + segment;
+  }
+
+  private static <K, V> Map<K, V> lruMap(int maxSize) {
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  private static byte[] readNBytes(InputStream content, int length) {
+    try {
+      return content.readNBytes(length);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read file content", e);
+    }
+  }
+
+  private static byte[] readAll(InputStream content) {
+    try (content) {
+      return content.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read packed object", e);
+    }
+  }
+
+  private static byte[] readRange(InputStream content, int offset, int length) {
+    try (content) {
+      var skipped = 0L;
+      while (skipped < offset) {
+        var step = content.skip(offset - skipped);
+        if (step <= 0) {
+          if (content.read() < 0) {
+            throw new IOException("Packed segment is shorter than its index");
+          }
+          step = 1;
+        }
+        skipped += step;
+      }
+      var result = content.readNBytes(length);
+      if (result.length != length) {
+        throw new IOException("Packed segment is shorter than its index");
+      }
+      return result;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read packed segment", e);
+    }
+  }
+
+  @Getter
+  @RequiredArgsConstructor
+  private static class CachedHead {
+
+    private final String version;
+    private final byte[] data;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The head object of packed storage of a single key group. Holds the offset index of every packed
+ * file of the group and the data of the segment that is currently being filled. Sealed segments
+ * are stored as separate objects that contain raw file data only.
+ * <p>
+ * The head also holds names of files of the group that are stored as separate objects, so
+ * packing a file deletes a separate object only if one exists.
+ */
+@Getter
+class PackedSegmentHead {
+
+  static final int HEAD_SEGMENT = 0;
+  private static final int FORMAT_VERSION = 2;
+
+  private final Map<String, Entry> entries;
+  private final Set<String> unpacked;
+  private int nextSegmentId;
+  private byte[] data;
+
+  PackedSegmentHead(Set<String> unpacked) {
+    this(new LinkedHashMap<>(), new HashSet<>(unpacked), HEAD_SEGMENT + 1, new byte[0]);
+  }
+
+  private PackedSegmentHead(Map<String, Entry> entries, Set<String> unpacked, int nextSegmentId,
+      byte[] data) {
+    this.entries = entries;
+    this.unpacked = unpacked;
+    this.nextSegmentId = nextSegmentId;
+    this.data = data;
+  }
+
+  /**
+   * Appends bytes to the head segment
+   *
+   * @param bytes file content
+   * @return offset of the appended bytes in the head segment
+   */
+  int append(byte[] bytes) {
+    var offset = data.length;
+    data = Arrays.copyOf(data, data.length + bytes.length);
+    System.arraycopy(bytes, 0, data, offset, bytes.length);
+    return offset;
+  }
+
+  /**
+   * Moves the data of the head segment to a new sealed segment and empties the head segment
+   *
+   * @return data of the sealed segment
+   */
+  byte[] seal(int segmentId) {
+    entries.values().stream()
+        .filter(entry -> entry.getSegment() == HEAD_SEGMENT)
+        .forEach(entry -> entry.setSegment(segmentId));
+    var sealed = data;
+    data = new byte[0];
+    return sealed;
+  }
+
+  int reserveSegmentId() {
+    return nextSegmentId++;
+  }
+
+  /**
+   * Drops the bytes of the head segment that are not referenced by any entry
+   */
+  void compact() {
+    data = compact(HEAD_SEGMENT, data);
+  }
+
+  /**
+   * Copies live entries of the segment to a new byte array and updates their offsets
+   *
+   * @param segment     segment id
+   * @param segmentData current segment data
+   * @return compacted segment data
+   */
+  byte[] compact(int segment, byte[] segmentData) {
+    var out = new ByteArrayOutputStream(segmentData.length);
+    entries.values().stream()
+        .filter(entry -> entry.getSegment() == segment)
+        .sorted(Comparator.comparingInt(Entry::getOffset))
+        .forEach(entry -> {
+          var offset = out.size();
+          out.write(segmentData, entry.getOffset(), entry.getLength());
+          entry.setOffset(offset);
+        });
+    return out.toByteArray();
+  }
+
+  byte[] toByteArray() throws IOException {
+    var bytes = new ByteArrayOutputStream(data.length + entries.size() * 128);
+    try (var out = new DataOutputStream(bytes)) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(nextSegmentId);
+      out.writeInt(entries.size());
+      for (var item : entries.entrySet()) {
+        var entry = item.getValue();
+        out.writeUTF(item.getKey());
+        out.writeInt(entry.getSegment());
+        out.writeInt(entry.getOffset());
+        out.writeInt(entry.getLength());
+        out.writeBoolean(entry.getContentType() != null);
+        if (entry.getContentType() != null) {
+          out.writeUTF(entry.getContentType());
+        }
+        out.writeInt(entry.getUserMetadata().size());
+        for (var header : entry.getUserMetadata().entrySet()) {
+          out.writeUTF(header.getKey());
+          out.writeUTF(header.getValue());
+        }
+      }
+      out.writeInt(unpacked.size());
+      for (var name : unpacked) {
+        out.writeUTF(name);
+      }
+      out.writeInt(data.length);
+      out.write(data);
+    }
+    return bytes.toByteArray();
+  }
+
+  static PackedSegmentHead read(InputStream content) throws IOException {
+    try (var in = new DataInputStream(content)) {
+      var version = in.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException(String.format("Unsupported packed head format version %d", version));
+      }
+      var nextSegmentId = in.readInt();
+      var entryCount = in.readInt();
+      var entries = new LinkedHashMap<String, Entry>(entryCount * 2);
+      for (var i = 0; i < entryCount; i++) {
+        var name = in.readUTF();
+        var segment = in.readInt();
+        var offset = in.readInt();
+        var length = in.readInt();
+        var contentType = in.readBoolean() ? in.readUTF() : null;
+        var headerCount = in.readInt();
+        var userMetadata = new LinkedHashMap<String, String>(headerCount * 2);
+        for (var j = 0; j < headerCount; j++) {
+          userMetadata.put(in.readUTF(), in.readUTF());
+        }
+        entries.put(name, new Entry(segment, offset, length, contentType, userMetadata));
+      }
+      var unpackedCount = in.readInt();
+      var unpacked = new HashSet<String>(unpackedCount * 2);
+      for (var i = 0; i < unpackedCount; i++) {
+        unpacked.add(in.readUTF());
+      }
+      var data = new byte[in.readInt()];
+      in.readFully(data);
+      return new PackedSegmentHead(entries, unpacked, nextSegmentId, data);
+    }
+  }
+
+  @Getter
+  @Setter
+  @AllArgsConstructor
+  static class Entry {
+
+    private int segment;
+    private int offset;
+    private int length;
+    private String contentType;
+    private Map<String, String> userMetadata;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.EndpointStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The {@link FileRepository} that routes calls between repositories of several storage
+ * endpoints. Uploads are retried on another endpoint only if the content stream supports
+ * {@link java.io.InputStream#mark(int)} and is either held in memory or not larger than
+ * {@code maxRetryBufferSize}, so that buffering for retries is bounded. Moves are never retried.
+ */
+public class RoutingFileRepository implements FileRepository {
+
+  private final EndpointRouter<FileRepository> router;
+  private final int maxRetryBufferSize;
+
+  public RoutingFileRepository(EndpointRouter<FileRepository> router, int maxRetryBufferSize) {
+    this.router = router;
+    this.maxRetryBufferSize = maxRetryBufferSize;
+  }
+
+  @Override
+  public Optional<FileObjectDto> get(String key) {
+    return router.read(repository -> repository.get(key));
+  }
+
+  @Override
+  public BaseFileMetadataDto put(String key, FileObjectDto fileDataDto) {
+    var content = fileDataDto.getContent();
+    var metadata = fileDataDto.getMetadata();
+    var retryable = RoutingFormDataFileRepository.markForRetry(content,
+        metadata == null ? null : metadata.getContentLength(), maxRetryBufferSize);
+    return router.write(repository -> {
+      if (retryable) {
+        RoutingFormDataFileRepository.reset(content);
+      }
+      return repository.put(key, fileDataDto);
+    }, retryable);
+  }
+
+  @Override
+  public Optional<BaseFileMetadataDto> getMetadata(String key) {
+    return router.read(repository -> repository.getMetadata(key));
+  }
+
+  @Override
+  public List<BaseFileMetadataDto> getMetadataByPrefix(String prefix) {
+    return router.read(repository -> repository.getMetadataByPrefix(prefix), false);
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    return router.read(repository -> repository.getKeys(prefix), false);
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    router.write(repository -> {
+      repository.delete(keys);
+      return null;
+    }, true);
+  }
+
+  @Override
+  public BaseFileMetadataDto setUserMetadata(String key, Map<String, String> userMetadata) {
+    return router.write(repository -> repository.setUserMetadata(key, userMetadata), true);
+  }
+
+  @Override
+  public Optional<BaseFileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return router.write(repository -> repository.copy(sourceKey, targetKey, userMetadata), true);
+  }
+
+  @Override
+  public Optional<BaseFileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return router.write(repository -> repository.move(sourceKey, targetKey, userMetadata), false);
+  }
+
+  public List<EndpointStatsDto> getStats() {
+    return router.getStats();
+  }
+
+  @Override
+  public void close() {
+    router.close();
+  }
+}
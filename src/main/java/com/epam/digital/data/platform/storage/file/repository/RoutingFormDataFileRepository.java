@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.EndpointStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The {@link FormDataFileRepository} that routes calls between repositories of several storage
+ * endpoints. Uploads are retried on another endpoint only if the content stream supports
+ * {@link InputStream#mark(int)} and is either held in memory or not larger than
+ * {@code maxRetryBufferSize}, so that buffering for retries is bounded. Moves are never retried.
+ */
+public class RoutingFormDataFileRepository implements FormDataFileRepository {
+
+  private final EndpointRouter<FormDataFileRepository> router;
+  private final int maxRetryBufferSize;
+
+  public RoutingFormDataFileRepository(EndpointRouter<FormDataFileRepository> router,
+      int maxRetryBufferSize) {
+    this.router = router;
+    this.maxRetryBufferSize = maxRetryBufferSize;
+  }
+
+  @Override
+  public Optional<FileDataDto> get(String key) {
+    return router.read(repository -> repository.get(key));
+  }
+
+  @Override
+  public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+    var content = fileDataDto.getContent();
+    var metadata = fileDataDto.getMetadata();
+    var retryable = markForRetry(content, metadata == null ? null : metadata.getContentLength(),
+        maxRetryBufferSize);
+    return router.write(repository -> {
+      if (retryable) {
+        reset(content);
+      }
+      return repository.put(key, fileDataDto);
+    }, retryable);
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(Set<String> keys) {
+    return router.read(repository -> repository.getMetadata(keys), false);
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(String prefix) {
+    return router.read(repository -> repository.getMetadata(prefix), false);
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    return router.read(repository -> repository.getKeys(prefix), false);
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    router.write(repository -> {
+      repository.delete(keys);
+      return null;
+    }, true);
+  }
+
+  @Override
+  public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return router.write(repository -> repository.copy(sourceKey, targetKey, userMetadata), true);
+  }
+
+  @Override
+  public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return router.write(repository -> repository.move(sourceKey, targetKey, userMetadata), false);
+  }
+
+  public List<EndpointStatsDto> getStats() {
+    return router.getStats();
+  }
+
+  /**
+   * Marks the content to be reset for a retry if it can be reset without unbounded buffering
+   *
+   * @return whether the upload may be retried
+   */
+  static boolean markForRetry(InputStream content, Long contentLength, int maxRetryBufferSize) {
+    if (content == null || !content.markSupported()) {
+      return false;
+    }
+    if (content instanceof ByteArrayInputStream) {
+      content.mark(0);
+      return true;
+    }
+    if (contentLength == null || contentLength <= 0 || contentLength > maxRetryBufferSize) {
+      return false;
+    }
+    content.mark((int) (contentLength + 1));
+    return true;
+  }
+
+  static void reset(InputStream content) {
+    try {
+      content.reset();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to reset file content for retry", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    router.close();
+  }
+}
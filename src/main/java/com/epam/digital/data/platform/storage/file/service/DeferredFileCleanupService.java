@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileCleanupStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The service for deferred deletion of process instance files. Process instances are registered
+ * as marker objects in the bucket, so registrations survive restarts, and are drained by a
+ * background task in rate-limited batches.
+ */
+@Slf4j
+public class DeferredFileCleanupService implements AutoCloseable {
+
+  private static final String QUEUE_CONTENT_TYPE = "text/plain";
+
+  private final FormDataFileRepository repository;
+  private final FormDataFileRepository queueRepository;
+  private final FormDataFileKeyProvider keyProvider;
+  private final String queuePrefix;
+  private final Duration interval;
+  private final int batchSize;
+  private final int maxDeletesPerSecond;
+  private final ScheduledExecutorService executor;
+
+  private final LongAdder registeredCount = new LongAdder();
+  private final AtomicLong pendingCount = new AtomicLong();
+  private final LongAdder completedCount = new LongAdder();
+  private final LongAdder deletedFilesCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+
+  /**
+   * @param repository      repository the files are deleted from
+   * @param queueRepository repository the queue markers are stored in, must not pack or cache
+   *                        objects as markers are written by several nodes
+   */
+  @Builder
+  public DeferredFileCleanupService(FormDataFileRepository repository,
+      FormDataFileRepository queueRepository, FormDataFileKeyProvider keyProvider,
+      String queuePrefix, Duration interval, int batchSize, int maxDeletesPerSecond) {
+    this.repository = repository;
+    this.queueRepository = queueRepository;
+    this.keyProvider = keyProvider;
+    this.queuePrefix = queuePrefix;
+    this.interval = interval;
+    this.batchSize = batchSize;
+    this.maxDeletesPerSecond = maxDeletesPerSecond;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      var thread = new Thread(runnable, "file-cleanup");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Register process instance for deferred deletion of its files
+   *
+   * @param processInstanceId specified process instance id
+   */
+  public void register(String processInstanceId) {
+    queueRepository.put(queuePrefix + processInstanceId, FileDataDto.builder()
+        .content(new ByteArrayInputStream(new byte[0]))
+        .metadata(new FileMetadataDto(0L, QUEUE_CONTENT_TYPE, new HashMap<>()))
+        .build());
+    registeredCount.increment();
+    pendingCount.incrementAndGet();
+    log.info("Process instance {} was registered for files cleanup", processInstanceId);
+  }
+
+  /**
+   * Start periodic draining of registered process instances
+   */
+  public void start() {
+    var delay = interval.toMillis();
+    executor.scheduleWithFixedDelay(this::drain, delay, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Delete files of all registered process instances and remove their registrations
+   */
+  public void drain() {
+    var markers = queueRepository.getKeys(queuePrefix);
+    pendingCount.set(markers.size());
+    for (var marker : markers) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      var processInstanceId = marker.substring(queuePrefix.length());
+      try {
+        deleteFiles(processInstanceId);
+        queueRepository.delete(Set.of(marker));
+        completedCount.increment();
+        pendingCount.decrementAndGet();
+      } catch (RuntimeException e) {
+        failedCount.increment();
+        log.warn("Failed to clean up files of process instance {}", processInstanceId, e);
+      }
+    }
+  }
+
+  public FileCleanupStatsDto getStats() {
+    return FileCleanupStatsDto.builder()
+        .registeredCount(registeredCount.sum())
+        .pendingCount(pendingCount.get())
+        .completedCount(completedCount.sum())
+        .deletedFilesCount(deletedFilesCount.sum())
+        .failedCount(failedCount.sum())
+        .build();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void deleteFiles(String processInstanceId) {
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId);
+    var keys = new ArrayList<>(repository.getKeys(prefix));
+    for (var from = 0; from < keys.size(); from += batchSize) {
+      var batch = keys.subList(from, Math.min(from + batchSize, keys.size()));
+      var startedAt = System.nanoTime();
+      repository.delete(new HashSet<>(batch));
+      deletedFilesCount.add(batch.size());
+      pace(batch, startedAt);
+    }
+    log.debug("Deleted {} files of process instance {}", keys.size(), processInstanceId);
+  }
+
+  private void pace(List<String> batch, long startedAt) {
+    if (maxDeletesPerSecond <= 0) {
+      return;
+    }
+    var budget = TimeUnit.SECONDS.toNanos(batch.size()) / maxDeletesPerSecond;
+    var remaining = budget - (System.nanoTime() - startedAt);
+    if (remaining > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
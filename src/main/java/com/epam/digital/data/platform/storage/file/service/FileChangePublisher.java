@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto;
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto.Type;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The publisher of file changes made by this node. Events received from the transport are passed
+ * to the subscribed listeners unless they were published by this node, whose caches are updated
+ * by the services directly.
+ * <p>
+ * Failures of the transport are logged and do not fail the file operations.
+ */
+@Slf4j
+public class FileChangePublisher {
+
+  @Getter
+  private final String nodeId;
+  private final FileChangeTransport transport;
+  private final List<FileChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+  @Builder
+  public FileChangePublisher(String nodeId, FileChangeTransport transport) {
+    this.nodeId = nodeId != null ? nodeId : UUID.randomUUID().toString();
+    this.transport = transport;
+    transport.subscribe(this::receive);
+  }
+
+  public void publish(Type type, Collection<String> keys) {
+    publish(type, keys, null);
+  }
+
+  /**
+   * Publish file change event
+   *
+   * @param type   change type
+   * @param keys   keys of changed files
+   * @param prefix key prefix of deleted process instance files, may be null
+   */
+  public void publish(Type type, Collection<String> keys, String prefix) {
+    publish(type, keys, prefix, null, null);
+  }
+
+  /**
+   * Publish file change event with the usage change of the prefix of the single changed key
+   *
+   * @param type            change type
+   * @param keys            keys of changed files
+   * @param prefix          key prefix of deleted process instance files, may be null
+   * @param fileCountDelta  change of the file count, null if not tracked
+   * @param totalBytesDelta change of the total size, null if not tracked
+   */
+  public void publish(Type type, Collection<String> keys, String prefix, Long fileCountDelta,
+      Long totalBytesDelta) {
+    var event = FileChangeEventDto.builder()
+        .type(type)
+        .keys(Set.copyOf(keys))
+        .prefix(prefix)
+        .fileCountDelta(fileCountDelta)
+        .totalBytesDelta(totalBytesDelta)
+        .origin(nodeId)
+        .timestamp(Instant.now())
+        .build();
+    try {
+      transport.send(event);
+    } catch (RuntimeException e) {
+      log.warn("Failed to publish file change event {}", event, e);
+    }
+  }
+
+  public void subscribe(FileChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  private void receive(FileChangeEventDto event) {
+    if (nodeId.equals(event.getOrigin())) {
+      return;
+    }
+    for (var listener : listeners) {
+      try {
+        listener.onChange(event);
+      } catch (RuntimeException e) {
+        log.warn("Failed to handle file change event {}", event, e);
+      }
+    }
+  }
+}
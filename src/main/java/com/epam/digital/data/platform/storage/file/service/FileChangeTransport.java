@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto;
+import java.util.function.Consumer;
+
+/**
+ * The transport that delivers file change events to all nodes, including the sending one
+ */
+public interface FileChangeTransport {
+
+  void send(FileChangeEventDto event);
+
+  void subscribe(Consumer<FileChangeEventDto> receiver);
+
+  /**
+   * @return false if events are delivered to receivers of this JVM only
+   */
+  default boolean reachesOtherNodes() {
+    return true;
+  }
+}
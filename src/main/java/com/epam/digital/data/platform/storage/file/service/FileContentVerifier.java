@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.VerificationStatsDto;
+import com.epam.digital.data.platform.storage.file.utils.Digests;
+import com.epam.digital.data.platform.storage.file.utils.BufferPool;
+import com.epam.digital.data.platform.storage.file.utils.VerifyingInputStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The verifier of loaded file content against the stored checksum. The digest is computed while
+ * the caller reads the content, a mismatch is thrown from the read that reaches the end of the
+ * content. Files read partially are not counted as verified.
+ */
+@Slf4j
+public class FileContentVerifier {
+
+  private final String digestAlgorithm;
+  private final long minContentLength;
+  private final long maxContentLength;
+  private final BufferPool bufferPool;
+
+  private final LongAdder verifiedCount = new LongAdder();
+  private final LongAdder mismatchCount = new LongAdder();
+  private final LongAdder skippedCount = new LongAdder();
+  private final LongAdder verifiedBytes = new LongAdder();
+  private final LongAdder digestNanos = new LongAdder();
+
+  @Builder
+  public FileContentVerifier(String digestAlgorithm, long minContentLength,
+      long maxContentLength, BufferPool bufferPool) {
+    this.digestAlgorithm = digestAlgorithm;
+    this.minContentLength = minContentLength;
+    this.maxContentLength = maxContentLength;
+    this.bufferPool = bufferPool != null ? bufferPool : BufferPool.getDefault();
+    Digests.newMessageDigest(digestAlgorithm);
+  }
+
+  /**
+   * Wrap content of the file to verify it while it is read
+   *
+   * @param key  file key
+   * @param file loaded file
+   * @return file with verifying content or the same file if it is not verified
+   */
+  public FileDataDto verify(String key, FileDataDto file) {
+    var metadata = file.getMetadata();
+    var checksum = metadata == null ? null : metadata.getChecksum();
+    if (checksum == null || !isVerifiedLength(metadata.getContentLength())) {
+      skippedCount.increment();
+      return file;
+    }
+    var content = new VerifyingInputStream(file.getContent(), key, checksum,
+        Digests.newMessageDigest(digestAlgorithm), (matched, length, nanos) -> {
+          verifiedCount.increment();
+          verifiedBytes.add(length);
+          digestNanos.add(nanos);
+          if (!matched) {
+            mismatchCount.increment();
+            log.error("Checksum mismatch of file with key {}", key);
+          }
+        }, bufferPool);
+    return FileDataDto.builder().content(content).metadata(metadata).build();
+  }
+
+  public VerificationStatsDto getStats() {
+    return VerificationStatsDto.builder()
+        .verifiedCount(verifiedCount.sum())
+        .mismatchCount(mismatchCount.sum())
+        .skippedCount(skippedCount.sum())
+        .verifiedBytes(verifiedBytes.sum())
+        .digestTime(Duration.ofNanos(digestNanos.sum()))
+        .build();
+  }
+
+  private boolean isVerifiedLength(Long contentLength) {
+    if (contentLength == null) {
+      return minContentLength <= 0 && maxContentLength <= 0;
+    }
+    return contentLength >= minContentLength
+        && (maxContentLength <= 0 || contentLength <= maxContentLength);
+  }
+}
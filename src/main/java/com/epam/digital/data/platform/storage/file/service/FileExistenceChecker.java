@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Builder;
+
+/**
+ * The checker of file existence that runs metadata requests for several keys concurrently.
+ * Optionally remembers missing keys for a short time, so repeated checks for absent files are
+ * answered locally. Cached misses must be invalidated when a file is stored.
+ */
+public class FileExistenceChecker implements AutoCloseable {
+
+  private final FormDataFileRepository repository;
+  private final long negativeCacheTtlNanos;
+  private final int maxCachedMisses;
+  private final ExecutorService executor;
+  private final ConcurrentMap<String, Long> cachedMisses = new ConcurrentHashMap<>();
+
+  @Builder
+  public FileExistenceChecker(FormDataFileRepository repository, int parallelism,
+      Duration negativeCacheTtl, int maxCachedMisses) {
+    this.repository = repository;
+    this.negativeCacheTtlNanos = negativeCacheTtl != null ? negativeCacheTtl.toNanos() : 0;
+    this.maxCachedMisses = maxCachedMisses;
+    var threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+      var thread = new Thread(runnable, "file-exists-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Check that file exists
+   *
+   * @param key file key
+   * @return true if file exists
+   */
+  public boolean exists(String key) {
+    if (isCachedMiss(key)) {
+      return false;
+    }
+    var exists = repository.exists(key);
+    if (!exists) {
+      cacheMiss(key);
+    }
+    return exists;
+  }
+
+  /**
+   * Check existence of several files concurrently
+   *
+   * @param keys file keys
+   * @return keys of files that do not exist
+   */
+  public Set<String> findMissing(Collection<String> keys) {
+    var missing = new HashSet<String>();
+    var checks = new LinkedHashMap<String, Future<Boolean>>();
+    for (var key : keys) {
+      if (isCachedMiss(key)) {
+        missing.add(key);
+      } else if (!checks.containsKey(key)) {
+        checks.put(key, executor.submit(() -> repository.exists(key)));
+      }
+    }
+    for (var check : checks.entrySet()) {
+      if (!await(check.getValue(), checks.values())) {
+        missing.add(check.getKey());
+        cacheMiss(check.getKey());
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Forget cached miss of the file, must be called when the file is stored
+   *
+   * @param key file key
+   */
+  public void invalidate(String key) {
+    cachedMisses.remove(key);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private boolean isCachedMiss(String key) {
+    var expiresAt = cachedMisses.get(key);
+    if (expiresAt == null) {
+      return false;
+    }
+    if (expiresAt - System.nanoTime() > 0) {
+      return true;
+    }
+    cachedMisses.remove(key, expiresAt);
+    return false;
+  }
+
+  private void cacheMiss(String key) {
+    if (negativeCacheTtlNanos <= 0) {
+      return;
+    }
+    var now = System.nanoTime();
+    if (cachedMisses.size() >= maxCachedMisses) {
+      cachedMisses.values().removeIf(expiresAt -> expiresAt - now <= 0);
+      if (cachedMisses.size() >= maxCachedMisses) {
+        return;
+      }
+    }
+    cachedMisses.put(key, now + negativeCacheTtlNanos);
+  }
+
+  private boolean await(Future<Boolean> check, Collection<Future<Boolean>> checks) {
+    try {
+      return check.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      checks.forEach(other -> other.cancel(true));
+      throw new IllegalStateException("File existence check was interrupted", e);
+    } catch (ExecutionException e) {
+      checks.forEach(other -> other.cancel(true));
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
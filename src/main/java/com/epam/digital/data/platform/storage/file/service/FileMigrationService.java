@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMigrationResultDto;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.utils.Digests;
+import com.epam.digital.data.platform.storage.file.utils.ThrottledInputStream;
+import com.epam.digital.data.platform.storage.file.utils.TokenBucket;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The engine that copies files by prefix from the source to the target storage in parallel.
+ * Content is streamed without buffering, the ceph client has no copy between buckets.
+ * <p>
+ * Keys are copied in key order and the last key before which all files are copied is saved as a
+ * checkpoint in the target storage, so a repeated run with the same migration id continues after
+ * it. Files copied out of order after a failed file are copied again by the next run. When
+ * verification is enabled, the length and checksum of each copy are compared with the source and
+ * the digest of the streamed content is compared with the source checksum.
+ */
+@Slf4j
+public class FileMigrationService {
+
+  private static final int MAX_REPORTED_FAILURES = 100;
+  private static final String LAST_KEY = "lastKey";
+
+  private final FormDataFileRepository source;
+  private final FormDataFileRepository target;
+  private final int parallelism;
+  private final TokenBucket fileBucket;
+  private final TokenBucket byteBucket;
+  private final boolean verify;
+  private final String digestAlgorithm;
+  private final String checkpointPrefix;
+  private final int checkpointInterval;
+
+  @Builder
+  public FileMigrationService(FormDataFileRepository source, FormDataFileRepository target,
+      int parallelism, double maxFilesPerSecond, long maxBytesPerSecond, boolean verify,
+      String digestAlgorithm, String checkpointPrefix, int checkpointInterval) {
+    this.source = source;
+    this.target = target;
+    this.parallelism = Math.max(1, parallelism);
+    this.fileBucket = maxFilesPerSecond > 0
+        ? new TokenBucket(maxFilesPerSecond, Math.max(1, maxFilesPerSecond)) : null;
+    this.byteBucket = maxBytesPerSecond > 0
+        ? new TokenBucket(maxBytesPerSecond, maxBytesPerSecond) : null;
+    this.verify = verify;
+    this.digestAlgorithm = digestAlgorithm;
+    this.checkpointPrefix = checkpointPrefix;
+    this.checkpointInterval = Math.max(1, checkpointInterval);
+  }
+
+  /**
+   * Copy files by prefix continuing from the checkpoint of the migration
+   *
+   * @param migrationId id of the migration to save progress by
+   * @param prefix      prefix of files to copy
+   * @return migration counters
+   */
+  public FileMigrationResultDto migrate(String migrationId, String prefix) {
+    var startedAt = System.nanoTime();
+    var checkpointKey = checkpointPrefix + migrationId;
+    var keys = new TreeSet<>(source.getKeys(prefix));
+    keys.removeIf(key -> key.startsWith(checkpointPrefix));
+    var lastKey = loadCheckpoint(checkpointKey);
+    var remaining = new ArrayList<>(lastKey == null ? keys : keys.tailSet(lastKey, false));
+    log.info("Migrate {} of {} files by prefix {}, migration id {}", remaining.size(),
+        keys.size(), prefix, migrationId);
+
+    var progress = new Progress(remaining, checkpointKey);
+    var executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      var thread = new Thread(runnable, "file-migration");
+      thread.setDaemon(true);
+      return thread;
+    });
+    var slots = new Semaphore(parallelism * 2);
+    try {
+      for (var i = 0; i < remaining.size(); i++) {
+        slots.acquire();
+        var index = i;
+        executor.execute(() -> {
+          try {
+            progress.complete(index, copy(remaining.get(index), progress));
+          } finally {
+            slots.release();
+          }
+        });
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Migration {} was interrupted", migrationId);
+    } finally {
+      executor.shutdownNow();
+    }
+    progress.saveCheckpoint();
+
+    var result = FileMigrationResultDto.builder()
+        .totalCount(keys.size())
+        .resumedCount(keys.size() - remaining.size())
+        .copiedCount(progress.copiedCount.sum())
+        .copiedBytes(progress.copiedBytes.sum())
+        .missingCount(progress.missingCount.sum())
+        .failedCount(progress.failedCount.sum())
+        .failedKeys(progress.failedKeys())
+        .duration(Duration.ofNanos(System.nanoTime() - startedAt))
+        .build();
+    log.info("Migration {} finished: {}", migrationId, result);
+    return result;
+  }
+
+  private boolean copy(String key, Progress progress) {
+    try {
+      if (fileBucket != null) {
+        fileBucket.acquire(1);
+      }
+      var file = source.get(key);
+      if (file.isEmpty()) {
+        progress.missingCount.increment();
+        return true;
+      }
+      var metadata = file.get().getMetadata();
+      var digest = verify && metadata.getChecksum() != null
+          ? Digests.newMessageDigest(digestAlgorithm) : null;
+      try (var content = file.get().getContent()) {
+        InputStream copied = digest == null ? content : new DigestInputStream(content, digest);
+        if (byteBucket != null) {
+          copied = new ThrottledInputStream(copied, byteBucket, nanos -> {
+          });
+        }
+        target.put(key, FileDataDto.builder().content(copied).metadata(metadata).build());
+      }
+      if (digest != null
+          && !Digests.toHex(digest.digest()).equalsIgnoreCase(metadata.getChecksum())) {
+        throw new IllegalStateException("Copied content does not match source checksum");
+      }
+      var stored = verify ? verifyCopy(key, metadata) : metadata;
+      progress.copiedCount.increment();
+      if (stored.getContentLength() != null) {
+        progress.copiedBytes.add(stored.getContentLength());
+      }
+      return true;
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to migrate file with key {}", key, e);
+      progress.fail(key);
+      return false;
+    }
+  }
+
+  private FileMetadataDto verifyCopy(String key, FileMetadataDto metadata) {
+    var stored = target.getMetadata(Set.of(key)).stream().findFirst()
+        .orElseThrow(() -> new IllegalStateException("Copy is not found"));
+    if (metadata.getContentLength() != null
+        && !metadata.getContentLength().equals(stored.getContentLength())) {
+      throw new IllegalStateException(String.format("Copy length %s does not match source %s",
+          stored.getContentLength(), metadata.getContentLength()));
+    }
+    if (!Objects.equals(metadata.getChecksum(), stored.getChecksum())) {
+      throw new IllegalStateException("Copy checksum does not match source");
+    }
+    return stored;
+  }
+
+  private String loadCheckpoint(String checkpointKey) {
+    return target.get(checkpointKey).map(file -> {
+      try (var content = file.getContent()) {
+        var properties = new Properties();
+        properties.load(new InputStreamReader(content, StandardCharsets.UTF_8));
+        return properties.getProperty(LAST_KEY);
+      } catch (IOException e) {
+        throw new UncheckedIOException(
+            String.format("Failed to load migration checkpoint %s", checkpointKey), e);
+      }
+    }).orElse(null);
+  }
+
+  private void storeCheckpoint(String checkpointKey, String lastKey) {
+    var properties = new Properties();
+    properties.setProperty(LAST_KEY, lastKey);
+    var bytes = new ByteArrayOutputStream();
+    try {
+      properties.store(new OutputStreamWriter(bytes, StandardCharsets.UTF_8), null);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    var content = bytes.toByteArray();
+    target.put(checkpointKey, FileDataDto.builder()
+        .content(new ByteArrayInputStream(content))
+        .metadata(new FileMetadataDto((long) content.length, "text/plain", Map.of()))
+        .build());
+  }
+
+  /**
+   * Tracks completed files and the checkpoint before which all files are completed
+   */
+  private class Progress {
+
+    private final List<String> keys;
+    private final String checkpointKey;
+    private final boolean[] completed;
+    private final List<String> failedKeys = Collections.synchronizedList(new ArrayList<>());
+    private final LongAdder copiedCount = new LongAdder();
+    private final LongAdder copiedBytes = new LongAdder();
+    private final LongAdder missingCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private int watermark;
+    private int savedWatermark;
+
+    private Progress(List<String> keys, String checkpointKey) {
+      this.keys = keys;
+      this.checkpointKey = checkpointKey;
+      this.completed = new boolean[keys.size()];
+    }
+
+    private void complete(int index, boolean succeeded) {
+      synchronized (this) {
+        completed[index] = succeeded;
+        while (watermark < completed.length && completed[watermark]) {
+          watermark++;
+        }
+        if (watermark - savedWatermark < checkpointInterval) {
+          return;
+        }
+      }
+      saveCheckpoint();
+    }
+
+    private void fail(String key) {
+      failedCount.increment();
+      if (failedKeys.size() < MAX_REPORTED_FAILURES) {
+        failedKeys.add(key);
+      }
+    }
+
+    private List<String> failedKeys() {
+      synchronized (failedKeys) {
+        return new ArrayList<>(failedKeys);
+      }
+    }
+
+    private synchronized void saveCheckpoint() {
+      if (watermark == savedWatermark) {
+        return;
+      }
+      try {
+        storeCheckpoint(checkpointKey, keys.get(watermark - 1));
+        savedWatermark = watermark;
+      } catch (RuntimeException e) {
+        log.warn("Failed to save migration checkpoint {}", checkpointKey, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.PrefetchStatsDto;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.utils.TokenBucket;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The prefetcher of files of a listed process instance. Files are loaded in background into a
+ * bounded cache and each cached file is served once by the following load. Prefetching of a
+ * listing is cancelled when the cache has no room for the next file or the bandwidth limit would
+ * delay it, cached files are dropped after ttl or when they are changed.
+ * <p>
+ * Files larger than one second of bandwidth could never be admitted by the limit, so the max file
+ * size is clamped to it. The cancelled count is the number of listed files that were not loaded
+ * because their listing was cancelled.
+ */
+@Slf4j
+public class FilePrefetcher implements AutoCloseable {
+
+  private final FormDataFileRepository repository;
+  private final boolean smallestFirst;
+  private final int maxFilesPerListing;
+  private final long maxFileSize;
+  private final long maxCacheBytes;
+  private final TokenBucket bandwidth;
+  private final long ttlNanos;
+  private final ThreadPoolExecutor executor;
+
+  private final Map<String, CachedFile> cache = new ConcurrentHashMap<>();
+  private final Map<String, Fetch> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong cachedBytes = new AtomicLong();
+
+  private final LongAdder prefetchedCount = new LongAdder();
+  private final LongAdder prefetchedBytes = new LongAdder();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder cancelledCount = new LongAdder();
+  private final LongAdder invalidatedCount = new LongAdder();
+
+  @Builder
+  public FilePrefetcher(FormDataFileRepository repository, boolean smallestFirst,
+      int maxFilesPerListing, long maxFileSize, long maxCacheBytes, long maxBytesPerSecond,
+      Duration ttl, int parallelism, int queueCapacity) {
+    this.repository = repository;
+    this.smallestFirst = smallestFirst;
+    this.maxFilesPerListing = maxFilesPerListing;
+    this.maxFileSize = maxBytesPerSecond > 0 ? Math.min(maxFileSize, maxBytesPerSecond)
+        : maxFileSize;
+    this.maxCacheBytes = maxCacheBytes;
+    this.bandwidth = maxBytesPerSecond > 0
+        ? new TokenBucket(maxBytesPerSecond, maxBytesPerSecond) : null;
+    this.ttlNanos = ttl.toNanos();
+    var threads = Math.max(1, parallelism);
+    this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+          var thread = new Thread(runnable, "file-prefetch");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Start loading of listed files that are not cached yet
+   *
+   * @param filesByKey metadata of listed files by key in listing order
+   */
+  public void prefetch(Map<String, FileMetadataDto> filesByKey) {
+    removeExpired();
+    var stream = filesByKey.entrySet().stream()
+        .filter(file -> file.getValue().getContentLength() != null
+            && file.getValue().getContentLength() <= maxFileSize)
+        .filter(file -> !cache.containsKey(file.getKey()) && !inFlight.containsKey(file.getKey()));
+    if (smallestFirst) {
+      stream = stream.sorted(Comparator.comparing(file -> file.getValue().getContentLength()));
+    }
+    var files = stream.limit(maxFilesPerListing).collect(Collectors.toList());
+    var listing = new Listing();
+    for (var i = 0; i < files.size(); i++) {
+      var file = files.get(i);
+      try {
+        executor.execute(() -> fetch(listing, file));
+      } catch (RejectedExecutionException e) {
+        listing.cancelled = true;
+        cancelledCount.add(files.size() - i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Take the prefetched file from the cache
+   *
+   * @param key file key
+   * @return prefetched file if it is cached
+   */
+  public Optional<FileDataDto> take(String key) {
+    var cached = cache.remove(key);
+    if (cached != null) {
+      cachedBytes.addAndGet(-cached.content.length);
+    }
+    if (cached == null || cached.isExpired()) {
+      missCount.increment();
+      return Optional.empty();
+    }
+    hitCount.increment();
+    return Optional.of(FileDataDto.builder()
+        .content(new ByteArrayInputStream(cached.content))
+        .metadata(cached.metadata)
+        .build());
+  }
+
+  /**
+   * Drop the cached file and discard its loading in progress after the file was changed
+   *
+   * @param key file key
+   */
+  public void invalidate(String key) {
+    var fetch = inFlight.get(key);
+    if (fetch != null) {
+      fetch.invalidated = true;
+    }
+    remove(key);
+  }
+
+  /**
+   * Drop cached files of the prefix and discard their loading in progress
+   *
+   * @param prefix key prefix
+   */
+  public void invalidatePrefix(String prefix) {
+    inFlight.forEach((key, fetch) -> {
+      if (key.startsWith(prefix)) {
+        fetch.invalidated = true;
+      }
+    });
+    cache.keySet().stream().filter(key -> key.startsWith(prefix)).forEach(this::remove);
+  }
+
+  public PrefetchStatsDto getStats() {
+    return PrefetchStatsDto.builder()
+        .prefetchedCount(prefetchedCount.sum())
+        .prefetchedBytes(prefetchedBytes.sum())
+        .hitCount(hitCount.sum())
+        .missCount(missCount.sum())
+        .cancelledCount(cancelledCount.sum())
+        .invalidatedCount(invalidatedCount.sum())
+        .cachedBytes(cachedBytes.get())
+        .build();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void fetch(Listing listing, Entry<String, FileMetadataDto> file) {
+    var key = file.getKey();
+    long length = file.getValue().getContentLength();
+    var fetch = new Fetch();
+    if (inFlight.putIfAbsent(key, fetch) != null) {
+      return;
+    }
+    try {
+      if (listing.cancelled) {
+        cancelledCount.increment();
+        return;
+      }
+      if (!reserve(length)) {
+        cancel(listing);
+        return;
+      }
+      if (bandwidth != null && !bandwidth.tryAcquire(length)) {
+        release(length);
+        cancel(listing);
+        return;
+      }
+      store(key, length, fetch);
+    } catch (IOException | RuntimeException e) {
+      release(length);
+      log.debug("Failed to prefetch file with key {}", key, e);
+    } finally {
+      inFlight.remove(key, fetch);
+    }
+  }
+
+  /**
+   * Cancel the rest of the listing, the current file is counted here and each following file is
+   * counted when its fetch finds the listing cancelled
+   */
+  private void cancel(Listing listing) {
+    listing.cancelled = true;
+    cancelledCount.increment();
+  }
+
+  private void store(String key, long length, Fetch fetch) throws IOException {
+    var file = repository.get(key);
+    if (file.isEmpty()) {
+      release(length);
+      return;
+    }
+    byte[] content;
+    try (var stream = file.get().getContent()) {
+      content = stream.readNBytes((int) length + 1);
+    }
+    if (content.length != length) {
+      release(length);
+      return;
+    }
+    var cached = new CachedFile(content, file.get().getMetadata(), System.nanoTime() + ttlNanos);
+    var replaced = cache.put(key, cached);
+    if (replaced != null) {
+      release(replaced.content.length);
+    }
+    if (fetch.invalidated) {
+      remove(key);
+      return;
+    }
+    prefetchedCount.increment();
+    prefetchedBytes.add(length);
+  }
+
+  private void remove(String key) {
+    var cached = cache.remove(key);
+    if (cached != null) {
+      release(cached.content.length);
+      invalidatedCount.increment();
+    }
+  }
+
+  private void removeExpired() {
+    cache.forEach((key, cached) -> {
+      if (cached.isExpired() && cache.remove(key, cached)) {
+        release(cached.content.length);
+      }
+    });
+  }
+
+  private boolean reserve(long length) {
+    var current = cachedBytes.get();
+    while (current + length <= maxCacheBytes) {
+      if (cachedBytes.compareAndSet(current, current + length)) {
+        return true;
+      }
+      current = cachedBytes.get();
+    }
+    return false;
+  }
+
+  private void release(long length) {
+    cachedBytes.addAndGet(-length);
+  }
+
+  private static class Listing {
+
+    private volatile boolean cancelled;
+  }
+
+  private static class Fetch {
+
+    private volatile boolean invalidated;
+  }
+
+  private static class CachedFile {
+
+    private final byte[] content;
+    private final FileMetadataDto metadata;
+    private final long expiresAt;
+
+    CachedFile(byte[] content, FileMetadataDto metadata, long expiresAt) {
+      this.content = content;
+      this.metadata = metadata;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired() {
+      return System.nanoTime() - expiresAt > 0;
+    }
+  }
+}
@@ -18,9 +18,29 @@
 package com.epam.digital.data.platform.storage.file.service;
 
 import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto.Type;
 import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import com.epam.digital.data.platform.storage.file.dto.UserMetadataUpdateResultDto;
+import com.epam.digital.data.platform.storage.file.dto.UserMetadataUpdateResultDto.Status;
+import com.epam.digital.data.platform.storage.file.exception.FileNotFoundException;
 import com.epam.digital.data.platform.storage.file.repository.FileRepository;
+import com.epam.digital.data.platform.storage.file.utils.BufferPool;
+import com.epam.digital.data.platform.storage.file.utils.SpooledContent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 
@@ -28,11 +48,43 @@ import lombok.extern.slf4j.Slf4j;
  * The storage service for managing files
  */
 @Slf4j
-@Builder
-public class FileStorageService {
+public class FileStorageService implements AutoCloseable {
+
+  private static final int DEFAULT_BATCH_PARALLELISM = 8;
+  private static final int DEFAULT_SPOOL_MEMORY_THRESHOLD = 1024 * 1024;
+  private static final String DEFAULT_DIGEST_ALGORITHM = "SHA-256";
 
   private final FileRepository repository;
   private final FormDataFileKeyProvider keyProvider;
+  private final FileChangePublisher changePublisher;
+  private final int spoolMemoryThreshold;
+  private final String digestAlgorithm;
+  private final Path spoolDirectory;
+  private final OperationLog operationLog;
+  private final BufferPool bufferPool;
+  private final ExecutorService batchExecutor;
+
+  @Builder
+  public FileStorageService(FileRepository repository, FormDataFileKeyProvider keyProvider,
+      int batchParallelism, FileChangePublisher changePublisher, int spoolMemoryThreshold,
+      String digestAlgorithm, Path spoolDirectory, OperationLog operationLog,
+      BufferPool bufferPool) {
+    this.repository = repository;
+    this.keyProvider = keyProvider;
+    this.changePublisher = changePublisher;
+    this.spoolMemoryThreshold = spoolMemoryThreshold;
+    this.digestAlgorithm = digestAlgorithm;
+    this.spoolDirectory = spoolDirectory;
+    this.operationLog = operationLog;
+    this.bufferPool = bufferPool != null ? bufferPool : BufferPool.getDefault();
+    var threadNumber = new AtomicInteger();
+    this.batchExecutor = Executors.newFixedThreadPool(
+        batchParallelism > 0 ? batchParallelism : DEFAULT_BATCH_PARALLELISM, runnable -> {
+          var thread = new Thread(runnable, "file-batch-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
 
   /**
    * Save file by key
@@ -42,10 +94,11 @@ public class FileStorageService {
    * @return metadata of the saved file
    */
   public BaseFileMetadataDto save(String key, FileObjectDto content) {
-    log.info("Save file with key {}", key);
-    var result = repository.put(key, content);
-    log.info("File was saved with key {}", key);
-    return result;
+    return call("save", List.of(key), () -> {
+      var result = repository.put(key, content);
+      publish(Type.STORED, List.of(key));
+      return result;
+    });
   }
 
   /**
@@ -57,11 +110,73 @@ public class FileStorageService {
    * @return metadata of the saved file
    */
   public BaseFileMetadataDto save(String processInstanceId, String fileId, FileObjectDto content) {
-    log.info("Save file by process instance id {}, file id {}", processInstanceId, fileId);
     var key = keyProvider.generateKey(processInstanceId, fileId);
     return this.save(key, content);
   }
 
+  /**
+   * Save file with user metadata derived from its content in one storage request instead of save
+   * followed by {@link #setUserMetadata(String, Map)}. The content is read to the end before
+   * saving, its length and checksum are passed to the resolver with the provided metadata.
+   * Content larger than the spool memory threshold is buffered in a temporary file.
+   *
+   * @param key                  specified storage key
+   * @param content              file content and metadata
+   * @param userMetadataResolver resolves user metadata to save from metadata with computed
+   *                             content length and checksum
+   * @return metadata of the saved file
+   */
+  public BaseFileMetadataDto save(String key, FileObjectDto content,
+      Function<BaseFileMetadataDto, Map<String, String>> userMetadataResolver) {
+    return call("saveWithDerivedMetadata", List.of(key),
+        () -> saveWithDerivedMetadata(key, content, userMetadataResolver));
+  }
+
+  /**
+   * Save file with user metadata derived from its content by generated key based on specified
+   * process instance id and file id
+   *
+   * @param processInstanceId    the process instance id to whom file attached to
+   * @param fileId               specified file id
+   * @param content              file content and metadata
+   * @param userMetadataResolver resolves user metadata to save from metadata with computed
+   *                             content length and checksum
+   * @return metadata of the saved file
+   */
+  public BaseFileMetadataDto save(String processInstanceId, String fileId, FileObjectDto content,
+      Function<BaseFileMetadataDto, Map<String, String>> userMetadataResolver) {
+    var key = keyProvider.generateKey(processInstanceId, fileId);
+    return this.save(key, content, userMetadataResolver);
+  }
+
+  private BaseFileMetadataDto saveWithDerivedMetadata(String key, FileObjectDto content,
+      Function<BaseFileMetadataDto, Map<String, String>> userMetadataResolver) {
+    var threshold =
+        spoolMemoryThreshold > 0 ? spoolMemoryThreshold : DEFAULT_SPOOL_MEMORY_THRESHOLD;
+    var algorithm = digestAlgorithm != null ? digestAlgorithm : DEFAULT_DIGEST_ALGORITHM;
+    try (var source = content.getContent();
+        var spooled = SpooledContent.spool(source, threshold, algorithm, spoolDirectory,
+            bufferPool);
+        var spooledStream = spooled.openStream()) {
+      var metadata = content.getMetadata();
+      var providedUserMetadata = metadata.getUserMetadata() == null
+          ? new LinkedHashMap<String, String>() : new LinkedHashMap<>(metadata.getUserMetadata());
+      var derived = new BaseFileMetadataDto(spooled.getLength(), metadata.getContentType(),
+          providedUserMetadata);
+      derived.setChecksum(spooled.getDigest());
+      var userMetadata = userMetadataResolver.apply(derived);
+      var result = repository.put(key, FileObjectDto.builder()
+          .content(spooledStream)
+          .metadata(new BaseFileMetadataDto(spooled.getLength(), metadata.getContentType(),
+              userMetadata))
+          .build());
+      publish(Type.STORED, List.of(key));
+      return result;
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failed to save file with key %s", key), e);
+    }
+  }
+
   /**
    * Sets a new userMetadata to a file with the current key
    *
@@ -70,10 +185,11 @@ public class FileStorageService {
    * @return metadata of the saved file
    */
   public BaseFileMetadataDto setUserMetadata(String key, Map<String, String> userMetadata) {
-    log.info("Set user metadata to file with key {}", key);
-    var result = repository.setUserMetadata(key, userMetadata);
-    log.info("Metadata saved {}", key);
-    return result;
+    return call("setUserMetadata", List.of(key), () -> {
+      var result = repository.setUserMetadata(key, userMetadata);
+      publish(Type.METADATA_UPDATED, List.of(key));
+      return result;
+    });
   }
 
   /**
@@ -86,9 +202,146 @@ public class FileStorageService {
    */
   public BaseFileMetadataDto setUserMetadata(String processInstanceId, String fileId,
       Map<String, String> userMetadata) {
-    log.info("Set user metadata to file by process instance id {}, file id {}", processInstanceId,
-        fileId);
     var key = keyProvider.generateKey(processInstanceId, fileId);
-    return repository.setUserMetadata(key, userMetadata);
+    return this.setUserMetadata(key, userMetadata);
+  }
+
+  /**
+   * Sets new user metadata to several files in parallel. Files whose current user metadata equals
+   * the new one are not updated.
+   *
+   * @param userMetadataByKey new user metadata by file key
+   * @return update results by file key
+   */
+  public Map<String, UserMetadataUpdateResultDto> setUserMetadata(
+      Map<String, Map<String, String>> userMetadataByKey) {
+    if (userMetadataByKey.isEmpty()) {
+      return Map.of();
+    }
+    return call("setUserMetadataBatch", userMetadataByKey.keySet(),
+        () -> setUserMetadataInParallel(userMetadataByKey));
+  }
+
+  private Map<String, UserMetadataUpdateResultDto> setUserMetadataInParallel(
+      Map<String, Map<String, String>> userMetadataByKey) {
+    var updates = new LinkedHashMap<String, Future<UserMetadataUpdateResultDto>>();
+    userMetadataByKey.forEach((key, userMetadata) ->
+        updates.put(key, batchExecutor.submit(() -> updateUserMetadata(key, userMetadata))));
+    var results = new LinkedHashMap<String, UserMetadataUpdateResultDto>();
+    try {
+      for (var update : updates.entrySet()) {
+        results.put(update.getKey(), await(update.getKey(), update.getValue()));
+      }
+    } finally {
+      updates.values().forEach(update -> update.cancel(true));
+    }
+    var updatedKeys = results.values().stream()
+        .filter(result -> result.getStatus() == Status.UPDATED)
+        .map(UserMetadataUpdateResultDto::getKey)
+        .collect(Collectors.toList());
+    if (!updatedKeys.isEmpty()) {
+      publish(Type.METADATA_UPDATED, updatedKeys);
+    }
+    return results;
+  }
+
+  @Override
+  public void close() {
+    batchExecutor.shutdownNow();
+    if (operationLog != null) {
+      operationLog.close();
+    }
+    repository.close();
+  }
+
+  /**
+   * Copy file to another key
+   *
+   * @param sourceKey    key of the file to copy
+   * @param targetKey    key of the copy
+   * @param userMetadata user metadata of the copy, metadata of the source file is preserved if
+   *                     null
+   * @return metadata of the copy
+   * @throws FileNotFoundException if source file not found
+   */
+  public BaseFileMetadataDto copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return call("copy", List.of(sourceKey, targetKey), () -> {
+      var result = repository.copy(sourceKey, targetKey, userMetadata)
+          .orElseThrow(() -> new FileNotFoundException(List.of(sourceKey)));
+      publish(Type.STORED, List.of(targetKey));
+      return result;
+    });
+  }
+
+  /**
+   * Move file to another key
+   *
+   * @param sourceKey    key of the file to move
+   * @param targetKey    new key of the file
+   * @param userMetadata new user metadata of the file, current metadata is preserved if null
+   * @return metadata of the moved file
+   * @throws FileNotFoundException if source file not found
+   */
+  public BaseFileMetadataDto move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return call("move", List.of(sourceKey, targetKey), () -> {
+      var result = repository.move(sourceKey, targetKey, userMetadata)
+          .orElseThrow(() -> new FileNotFoundException(List.of(sourceKey)));
+      publish(Type.STORED, List.of(targetKey));
+      publish(Type.DELETED, List.of(sourceKey));
+      return result;
+    });
+  }
+
+  private <T> T call(String operation, Collection<String> keys, Supplier<T> call) {
+    return (operationLog != null ? operationLog : OperationLog.unsampled())
+        .call(operation, keys, call);
+  }
+
+  private void publish(Type type, Collection<String> keys) {
+    if (changePublisher != null) {
+      changePublisher.publish(type, keys);
+    }
+  }
+
+  private UserMetadataUpdateResultDto updateUserMetadata(String key,
+      Map<String, String> userMetadata) {
+    var result = UserMetadataUpdateResultDto.builder().key(key);
+    try {
+      var current = repository.getMetadata(key);
+      if (current.isEmpty()) {
+        return result.status(Status.NOT_FOUND).build();
+      }
+      if (userMetadata.equals(current.get().getUserMetadata())) {
+        return result.status(Status.UNCHANGED).metadata(current.get()).build();
+      }
+      return result.status(Status.UPDATED)
+          .metadata(repository.setUserMetadata(key, userMetadata))
+          .build();
+    } catch (RuntimeException e) {
+      log.warn("Failed to set user metadata to file with key {}", key, e);
+      return result.status(Status.FAILED).error(e.getMessage()).build();
+    }
+  }
+
+  private UserMetadataUpdateResultDto await(String key,
+      Future<UserMetadataUpdateResultDto> update) {
+    try {
+      return update.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return failed(key, e);
+    } catch (ExecutionException e) {
+      return failed(key, e.getCause());
+    }
+  }
+
+  private UserMetadataUpdateResultDto failed(String key, Throwable cause) {
+    return UserMetadataUpdateResultDto.builder()
+        .key(key)
+        .status(Status.FAILED)
+        .error(cause.getMessage())
+        .build();
   }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.ThrottleStatsDto;
+import com.epam.digital.data.platform.storage.file.utils.ThrottledInputStream;
+import com.epam.digital.data.platform.storage.file.utils.ThrottledOutputStream;
+import com.epam.digital.data.platform.storage.file.utils.TokenBucket;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The throttler of storage requests and transferred bytes with token buckets per throttle key.
+ * The key is a tenant id set for the current call with {@link #callAs(String, Supplier)} or the
+ * process instance id supplied by the service. Buckets of least recently used keys are dropped
+ * when more than {@code maxTrackedKeys} keys are tracked.
+ */
+public class FileThrottler {
+
+  private final ThreadLocal<String> tenantKey = new ThreadLocal<>();
+  private final double requestsPerSecond;
+  private final int requestBurst;
+  private final long bytesPerSecond;
+  private final long byteBurst;
+  private final Map<String, Buckets> buckets;
+
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder throttledRequestCount = new LongAdder();
+  private final LongAdder requestThrottledNanos = new LongAdder();
+  private final LongAdder byteThrottledNanos = new LongAdder();
+
+  @Builder
+  public FileThrottler(double requestsPerSecond, int requestBurst, long bytesPerSecond,
+      long byteBurst, int maxTrackedKeys) {
+    this.requestsPerSecond = requestsPerSecond;
+    this.requestBurst = requestBurst;
+    this.bytesPerSecond = bytesPerSecond;
+    this.byteBurst = byteBurst;
+    this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Buckets> eldest) {
+        return size() > maxTrackedKeys;
+      }
+    };
+  }
+
+  /**
+   * Run the call throttled by the specified tenant instead of the process instance
+   *
+   * @param tenantId tenant id to throttle by
+   * @param call     call to storage service
+   * @return call result
+   */
+  public <T> T callAs(String tenantId, Supplier<T> call) {
+    var previous = tenantKey.get();
+    tenantKey.set(tenantId);
+    try {
+      return call.get();
+    } finally {
+      if (previous == null) {
+        tenantKey.remove();
+      } else {
+        tenantKey.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Resolve the throttle key of the current call
+   *
+   * @param defaultKey key used if no tenant is set for the call
+   * @return throttle key
+   */
+  public String resolveKey(String defaultKey) {
+    var tenant = tenantKey.get();
+    return tenant != null ? tenant : defaultKey;
+  }
+
+  /**
+   * Wait until the request is allowed
+   *
+   * @param throttleKey tenant or process instance id
+   */
+  public void acquireRequest(String throttleKey) {
+    requestCount.increment();
+    var bucket = bucketsFor(throttleKey).requests;
+    if (bucket == null) {
+      return;
+    }
+    var throttledNanos = bucket.acquire(1);
+    if (throttledNanos > 0) {
+      throttledRequestCount.increment();
+      requestThrottledNanos.add(throttledNanos);
+    }
+  }
+
+  /**
+   * Wrap the stream to limit reading rate
+   *
+   * @param throttleKey tenant or process instance id
+   * @param content     stream to wrap
+   * @return throttled stream
+   */
+  public InputStream throttle(String throttleKey, InputStream content) {
+    var bucket = bucketsFor(throttleKey).bytes;
+    return bucket == null ? content
+        : new ThrottledInputStream(content, bucket, byteThrottledNanos::add);
+  }
+
+  /**
+   * Wrap the stream to limit writing rate
+   *
+   * @param throttleKey tenant or process instance id
+   * @param target      stream to wrap
+   * @return throttled stream
+   */
+  public OutputStream throttle(String throttleKey, OutputStream target) {
+    var bucket = bucketsFor(throttleKey).bytes;
+    return bucket == null ? target
+        : new ThrottledOutputStream(target, bucket, byteThrottledNanos::add);
+  }
+
+  public ThrottleStatsDto getStats() {
+    int trackedKeyCount;
+    synchronized (buckets) {
+      trackedKeyCount = buckets.size();
+    }
+    return ThrottleStatsDto.builder()
+        .trackedKeyCount(trackedKeyCount)
+        .requestCount(requestCount.sum())
+        .throttledRequestCount(throttledRequestCount.sum())
+        .requestThrottledTime(Duration.ofNanos(requestThrottledNanos.sum()))
+        .byteThrottledTime(Duration.ofNanos(byteThrottledNanos.sum()))
+        .build();
+  }
+
+  private Buckets bucketsFor(String throttleKey) {
+    synchronized (buckets) {
+      return buckets.computeIfAbsent(throttleKey, key -> new Buckets(
+          requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond, requestBurst) : null,
+          bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond, byteBurst) : null));
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Buckets {
+
+    private final TokenBucket requests;
+    private final TokenBucket bytes;
+  }
+}
@@ -17,15 +17,38 @@
 
 package com.epam.digital.data.platform.storage.file.service;
 
+import com.epam.digital.data.platform.storage.file.dto.BufferPoolStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto;
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto.Type;
+import com.epam.digital.data.platform.storage.file.dto.FileCleanupStatsDto;
 import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
 import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataPageDto;
+import com.epam.digital.data.platform.storage.file.dto.KeyFilterStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.OperationLogStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.PrefetchStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.StorageUsageDto;
+import com.epam.digital.data.platform.storage.file.dto.ThrottleStatsDto;
+import com.epam.digital.data.platform.storage.file.dto.VerificationStatsDto;
 import com.epam.digital.data.platform.storage.file.exception.FileNotFoundException;
 import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.utils.BufferPool;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -33,10 +56,20 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Builder
-public class FormDataFileStorageService {
+public class FormDataFileStorageService implements FileChangeListener, AutoCloseable {
 
   private final FormDataFileRepository repository;
   private final FormDataFileKeyProvider keyProvider;
+  private final DeferredFileCleanupService cleanupService;
+  private final FileExistenceChecker existenceChecker;
+  private final ProcessInstanceKeyFilter keyFilter;
+  private final FileChangePublisher changePublisher;
+  private final FileThrottler throttler;
+  private final FileContentVerifier contentVerifier;
+  private final OperationLog operationLog;
+  private final ProcessInstanceUsageTracker usageTracker;
+  private final FilePrefetcher prefetcher;
+  private final BufferPool bufferPool;
 
   /**
    * Load file by key
@@ -46,10 +79,12 @@ public class FormDataFileStorageService {
    * @throws FileNotFoundException if file not found
    */
   public FileDataDto loadByKey(String key) {
-    log.info("Load file by key {}", key);
-    var result = repository.get(key).orElseThrow(() -> new FileNotFoundException(List.of(key)));
-    log.info("File was loaded by key {}", key);
-    return result;
+    return call("loadByKey", List.of(key), () -> {
+      acquireRequest(key);
+      return prefetched(key).or(() -> repository.get(key))
+          .map(file -> throttleContent(key, verify(key, file)))
+          .orElseThrow(() -> new FileNotFoundException(List.of(key)));
+    });
   }
 
   /**
@@ -61,11 +96,71 @@ public class FormDataFileStorageService {
    * @throws FileNotFoundException if file not found
    */
   public FileDataDto loadByProcessInstanceIdAndId(String processInstanceId, String id) {
-    log.info("Load file by process instance id {}, file id {}", processInstanceId, id);
     var key = keyProvider.generateKey(processInstanceId, id);
-    var result = repository.get(key).orElseThrow(() -> new FileNotFoundException(List.of(id)));
-    log.info("File was loaded by key {}", key);
-    return result;
+    return call("loadByProcessInstanceIdAndId", List.of(key), () -> {
+      if (!mightContain(processInstanceId, key)) {
+        throw new FileNotFoundException(List.of(id));
+      }
+      acquireRequest(key);
+      return prefetched(key).or(() -> repository.get(key))
+          .map(file -> throttleContent(key, verify(key, file)))
+          .orElseThrow(() -> notFound(id));
+    });
+  }
+
+  /**
+   * Write file content by key to the output stream without intermediate copies
+   *
+   * @param key    specified file key
+   * @param target stream to write content to, it is not closed
+   * @return metadata of the written file
+   * @throws FileNotFoundException if file not found
+   */
+  public FileMetadataDto transferTo(String key, OutputStream target) {
+    return call("transferTo", List.of(key), () -> {
+      acquireRequest(key);
+      return repository.transferTo(key, throttleTarget(key, target), getBufferPool())
+          .orElseThrow(() -> new FileNotFoundException(List.of(key)));
+    });
+  }
+
+  /**
+   * Write file content by key to the channel without intermediate copies
+   *
+   * @param key    specified file key
+   * @param target channel to write content to, it is not closed
+   * @return metadata of the written file
+   * @throws FileNotFoundException if file not found
+   */
+  public FileMetadataDto transferTo(String key, WritableByteChannel target) {
+    return call("transferTo", List.of(key), () -> {
+      acquireRequest(key);
+      return repository.transferTo(key, throttleTarget(key, target), getBufferPool())
+          .orElseThrow(() -> new FileNotFoundException(List.of(key)));
+    });
+  }
+
+  /**
+   * Write file content by generated key based on specified file id and process instance id to the
+   * output stream without intermediate copies
+   *
+   * @param processInstanceId the process instance id to whom file attached to
+   * @param id                specified file id
+   * @param target            stream to write content to, it is not closed
+   * @return metadata of the written file
+   * @throws FileNotFoundException if file not found
+   */
+  public FileMetadataDto transferByProcessInstanceIdAndId(String processInstanceId, String id,
+      OutputStream target) {
+    var key = keyProvider.generateKey(processInstanceId, id);
+    return call("transferByProcessInstanceIdAndId", List.of(key), () -> {
+      if (!mightContain(processInstanceId, key)) {
+        throw new FileNotFoundException(List.of(id));
+      }
+      acquireRequest(key);
+      return repository.transferTo(key, throttleTarget(key, target), getBufferPool())
+          .orElseThrow(() -> notFound(id));
+    });
   }
 
   /**
@@ -76,10 +171,16 @@ public class FormDataFileStorageService {
    * @return metadata of the saved file
    */
   public FileMetadataDto save(String key, FileDataDto content) {
-    log.info("Save file by key {}", key);
-    var result = repository.put(key, content);
-    log.info("File was saved by key {}", key);
-    return result;
+    return call("save", List.of(key), () -> {
+      acquireRequest(key);
+      var previousLength = prepareSave(key,
+          content.getMetadata() == null ? null : content.getMetadata().getContentLength());
+      var result = repository.put(key, throttleContent(key, content));
+      onSaved(key, previousLength, result);
+      onStored(key);
+      publishStored(key, previousLength, result);
+      return result;
+    });
   }
 
   /**
@@ -92,11 +193,191 @@ public class FormDataFileStorageService {
    */
   public FileMetadataDto save(String processInstanceId, String fileId,
       FileDataDto content) {
-    log.info("Save file by process instance id {}, file id {}", processInstanceId, fileId);
     var key = keyProvider.generateKey(processInstanceId, fileId);
     return this.save(key, content);
   }
 
+  /**
+   * Save file by key unless a file with the same checksum and content length is already stored
+   * by the key, e.g. by a retried request. Stored metadata is checked before the content is
+   * read, content length is compared only if provided.
+   *
+   * @param key     specified storage key
+   * @param content file content and metadata with checksum
+   * @return metadata of the saved or already stored file
+   */
+  public FileMetadataDto saveIdempotent(String key, FileDataDto content) {
+    return saveIdempotent(key, content, true);
+  }
+
+  /**
+   * Save by generated key based on specified process instance id and file id unless a file with
+   * the same checksum and content length is already stored by the key
+   *
+   * @param processInstanceId the process instance id to whom file attached to
+   * @param fileId            specified file id
+   * @param content           file content and metadata with checksum
+   * @return metadata of the saved or already stored file
+   */
+  public FileMetadataDto saveIdempotent(String processInstanceId, String fileId,
+      FileDataDto content) {
+    var key = keyProvider.generateKey(processInstanceId, fileId);
+    return saveIdempotent(key, content, mightContain(processInstanceId, key));
+  }
+
+  /**
+   * Copy file to another key
+   *
+   * @param sourceKey    key of the file to copy
+   * @param targetKey    key of the copy
+   * @param userMetadata user metadata of the copy, metadata of the source file is preserved if
+   *                     null
+   * @return metadata of the copy
+   * @throws FileNotFoundException if source file not found
+   */
+  public FileMetadataDto copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return call("copy", List.of(sourceKey, targetKey), () -> {
+      acquireRequest(sourceKey);
+      var previousLength = prepareSave(targetKey, null);
+      var result = repository.copy(sourceKey, targetKey, userMetadata)
+          .orElseThrow(() -> new FileNotFoundException(List.of(sourceKey)));
+      onSaved(targetKey, previousLength, result);
+      onStored(targetKey);
+      publishStored(targetKey, previousLength, result);
+      return result;
+    });
+  }
+
+  /**
+   * Copy file to another process instance preserving its id and metadata
+   *
+   * @param sourceProcessInstanceId the process instance id to whom file attached to
+   * @param id                      specified file id
+   * @param targetProcessInstanceId the process instance id to attach the copy to
+   * @return metadata of the copy
+   * @throws FileNotFoundException if source file not found
+   */
+  public FileMetadataDto copyByProcessInstanceIdAndId(String sourceProcessInstanceId, String id,
+      String targetProcessInstanceId) {
+    var sourceKey = keyProvider.generateKey(sourceProcessInstanceId, id);
+    var targetKey = keyProvider.generateKey(targetProcessInstanceId, id);
+    return call("copyByProcessInstanceIdAndId", List.of(sourceKey, targetKey), () -> {
+      acquireRequest(sourceKey);
+      var previousLength = prepareSave(targetKey, null);
+      var result = repository.copy(sourceKey, targetKey, null)
+          .orElseThrow(() -> new FileNotFoundException(List.of(id)));
+      onSaved(targetKey, previousLength, result);
+      onStored(targetKey);
+      publishStored(targetKey, previousLength, result);
+      return result;
+    });
+  }
+
+  /**
+   * Move file to another key
+   *
+   * @param sourceKey    key of the file to move
+   * @param targetKey    new key of the file
+   * @param userMetadata new user metadata of the file, current metadata is preserved if null
+   * @return metadata of the moved file
+   * @throws FileNotFoundException if source file not found
+   */
+  public FileMetadataDto move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return call("move", List.of(sourceKey, targetKey), () -> {
+      acquireRequest(sourceKey);
+      var previousLength = prepareSave(targetKey, null);
+      var result = repository.move(sourceKey, targetKey, userMetadata)
+          .orElseThrow(() -> new FileNotFoundException(List.of(sourceKey)));
+      onMoved(sourceKey, targetKey, previousLength, result);
+      return result;
+    });
+  }
+
+  /**
+   * Move file to another process instance preserving its id and metadata
+   *
+   * @param sourceProcessInstanceId the process instance id to whom file attached to
+   * @param id                      specified file id
+   * @param targetProcessInstanceId the process instance id to attach the file to
+   * @return metadata of the moved file
+   * @throws FileNotFoundException if source file not found
+   */
+  public FileMetadataDto moveByProcessInstanceIdAndId(String sourceProcessInstanceId, String id,
+      String targetProcessInstanceId) {
+    var sourceKey = keyProvider.generateKey(sourceProcessInstanceId, id);
+    var targetKey = keyProvider.generateKey(targetProcessInstanceId, id);
+    return call("moveByProcessInstanceIdAndId", List.of(sourceKey, targetKey), () -> {
+      acquireRequest(sourceKey);
+      var previousLength = prepareSave(targetKey, null);
+      var result = repository.move(sourceKey, targetKey, null)
+          .orElseThrow(() -> new FileNotFoundException(List.of(id)));
+      onMoved(sourceKey, targetKey, previousLength, result);
+      return result;
+    });
+  }
+
+  /**
+   * Check that file exists by generated key based on specified file id and process instance id
+   *
+   * @param processInstanceId the process instance id to whom file attached to
+   * @param id                specified file id
+   * @return true if file exists
+   */
+  public boolean exists(String processInstanceId, String id) {
+    var key = keyProvider.generateKey(processInstanceId, id);
+    if (!mightContain(processInstanceId, key)) {
+      return false;
+    }
+    acquireRequest(key);
+    var result =
+        existenceChecker != null ? existenceChecker.exists(key) : repository.exists(key);
+    if (!result && keyFilter != null) {
+      keyFilter.recordFalsePositive();
+    }
+    return result;
+  }
+
+  /**
+   * Find files that do not exist by generated keys based on specified process instance id and
+   * file ids. Files are checked concurrently without loading content.
+   *
+   * @param processInstanceId the process instance id to whom file ids attached to
+   * @param ids               specified file ids
+   * @return ids of files that do not exist
+   */
+  public Set<String> findMissingIds(String processInstanceId, Collection<String> ids) {
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId);
+    return call("findMissingIds", List.of(prefix), () -> findMissingIds(processInstanceId, prefix,
+        ids));
+  }
+
+  private Set<String> findMissingIds(String processInstanceId, String prefix,
+      Collection<String> ids) {
+    acquireRequest(prefix);
+    var idsByKey = new LinkedHashMap<String, String>();
+    var missingIds = new HashSet<String>();
+    ids.forEach(id -> {
+      var key = keyProvider.generateKey(processInstanceId, id);
+      if (mightContain(processInstanceId, key)) {
+        idsByKey.put(key, id);
+      } else {
+        missingIds.add(id);
+      }
+    });
+    var missingKeys = existenceChecker != null
+        ? existenceChecker.findMissing(idsByKey.keySet())
+        : idsByKey.keySet().stream()
+            .filter(key -> !repository.exists(key))
+            .collect(Collectors.toSet());
+    if (keyFilter != null) {
+      missingKeys.forEach(key -> keyFilter.recordFalsePositive());
+    }
+    missingKeys.forEach(key -> missingIds.add(idsByKey.get(key)));
+    return missingIds;
+  }
+
   /**
    * Get metadata by generated keys based on specified process instance id and file ids
    *
@@ -105,27 +386,54 @@ public class FormDataFileStorageService {
    * @return list of files metadata
    */
   public List<FileMetadataDto> getMetadata(String processInstanceId, Set<String> fileIds) {
-    log.info("Get metadata by process instance id {} and file ids {}", processInstanceId, fileIds);
     var keys = fileIds.stream()
         .map(id -> keyProvider.generateKey(processInstanceId, id)).collect(Collectors.toSet());
-    var result = repository.getMetadata(keys);
-    if (!result.isEmpty()) {
-      log.info("Metadata was found by keys {}", keys);
-    }
-    return result;
+    return call("getMetadata", keys, () -> {
+      acquireRequest(keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId));
+      return repository.getMetadata(keys);
+    });
   }
 
   /**
-   * Get metadata by generated key based on specified process instance id
+   * Get metadata by generated key based on specified process instance id. Listed files are
+   * prefetched in background if prefetching is configured.
    *
    * @param processInstanceId the process instance id to whom file ids attracted to
    */
   public List<FileMetadataDto> getMetadata(String processInstanceId) {
-    log.info("Get metadata by process instance id {}", processInstanceId);
     var prefix = keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId);
-    var result = repository.getMetadata(prefix);
-    log.info("Metadata was found by prefix {}", prefix);
-    return result;
+    return call("getMetadataByPrefix", List.of(prefix), () -> {
+      acquireRequest(prefix);
+      var result = repository.getMetadata(prefix);
+      if (prefetcher != null) {
+        var filesByKey = new LinkedHashMap<String, FileMetadataDto>();
+        result.stream().filter(metadata -> metadata.getId() != null).forEach(metadata ->
+            filesByKey.put(keyProvider.generateKey(processInstanceId, metadata.getId()), metadata));
+        prefetcher.prefetch(filesByKey);
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Get a page of metadata of process instance files ordered by key
+   *
+   * @param processInstanceId the process instance id to whom files attached to
+   * @param pageSize          max number of files in the page
+   * @param continuationToken token of the previous page, may be null
+   * @param startAfterId      file id to start the listing after if no token is provided, may be
+   *                          null
+   * @return page of metadata with the token of the next page
+   */
+  public FileMetadataPageDto getMetadataPage(String processInstanceId, int pageSize,
+      String continuationToken, String startAfterId) {
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId);
+    var startAfter =
+        startAfterId == null ? null : keyProvider.generateKey(processInstanceId, startAfterId);
+    return call("getMetadataPage", List.of(prefix), () -> {
+      acquireRequest(prefix);
+      return repository.getMetadataPage(prefix, pageSize, continuationToken, startAfter);
+    });
   }
 
   /**
@@ -135,13 +443,164 @@ public class FormDataFileStorageService {
    */
   public void deleteByProcessInstanceId(String processInstanceId) {
     var prefix = keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId);
-    log.info("Delete files by process instance id {}, files prefix {}", processInstanceId, prefix);
-    var keys = repository.getKeys(prefix);
-    if (!keys.isEmpty()) {
-      repository.delete(keys);
-      log.debug("Deleted next files from storage - {}, processInstanceId={}", keys,
-          processInstanceId);
+    run("deleteByProcessInstanceId", List.of(prefix), () -> {
+      acquireRequest(prefix);
+      var keys = repository.getKeys(prefix);
+      if (keyFilter != null) {
+        keyFilter.invalidate(prefix);
+      }
+      if (!keys.isEmpty()) {
+        repository.delete(keys);
+      }
+      if (usageTracker != null) {
+        usageTracker.reset(prefix);
+      }
+      if (prefetcher != null) {
+        prefetcher.invalidatePrefix(prefix);
+      }
+      publish(Type.DELETED, keys, prefix);
+    });
+  }
+
+  /**
+   * Register files of the process instance for deferred deletion. Files are deleted synchronously
+   * if deferred cleanup is not configured.
+   *
+   * @param processInstanceId specified process id
+   */
+  public void scheduleDeleteByProcessInstanceId(String processInstanceId) {
+    if (cleanupService == null) {
+      deleteByProcessInstanceId(processInstanceId);
+      return;
+    }
+    cleanupService.register(processInstanceId);
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId);
+    if (keyFilter != null) {
+      keyFilter.invalidate(prefix);
+    }
+    if (usageTracker != null) {
+      usageTracker.reset(prefix);
     }
+    if (prefetcher != null) {
+      prefetcher.invalidatePrefix(prefix);
+    }
+    publish(Type.DELETED, Set.of(), prefix);
+  }
+
+  /**
+   * Get progress of deferred process instance files cleanup
+   *
+   * @return cleanup counters if deferred cleanup is configured
+   */
+  public Optional<FileCleanupStatsDto> getCleanupStats() {
+    return Optional.ofNullable(cleanupService).map(DeferredFileCleanupService::getStats);
+  }
+
+  /**
+   * Get counters of per process instance key filters
+   *
+   * @return filter counters if key filters are configured
+   */
+  public Optional<KeyFilterStatsDto> getKeyFilterStats() {
+    return Optional.ofNullable(keyFilter).map(ProcessInstanceKeyFilter::getStats);
+  }
+
+  /**
+   * Get counters of checksum verification of loaded files
+   *
+   * @return verification counters if verification is configured
+   */
+  public Optional<VerificationStatsDto> getVerificationStats() {
+    return Optional.ofNullable(contentVerifier).map(FileContentVerifier::getStats);
+  }
+
+  /**
+   * Get counters of request and bandwidth throttling
+   *
+   * @return throttling counters if throttling is configured
+   */
+  public Optional<ThrottleStatsDto> getThrottleStats() {
+    return Optional.ofNullable(throttler).map(FileThrottler::getStats);
+  }
+
+  /**
+   * Get number and total size of process instance files. Files are listed if usage tracking is
+   * not configured.
+   *
+   * @param processInstanceId the process instance id to whom files attached to
+   * @return file count and total size
+   */
+  public StorageUsageDto getUsage(String processInstanceId) {
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId);
+    if (usageTracker != null) {
+      return usageTracker.getUsage(prefix);
+    }
+    acquireRequest(prefix);
+    var files = repository.getMetadata(prefix);
+    return StorageUsageDto.builder()
+        .fileCount(files.size())
+        .totalBytes(files.stream()
+            .map(FileMetadataDto::getContentLength)
+            .filter(Objects::nonNull)
+            .mapToLong(Long::longValue)
+            .sum())
+        .reconciledAt(Instant.now())
+        .build();
+  }
+
+  /**
+   * Get counters of file prefetching after metadata listings
+   *
+   * @return prefetch counters if prefetching is configured
+   */
+  public Optional<PrefetchStatsDto> getPrefetchStats() {
+    return Optional.ofNullable(prefetcher).map(FilePrefetcher::getStats);
+  }
+
+  /**
+   * Get counters of sampled operation logging
+   *
+   * @return logging counters if sampled logging is configured
+   */
+  public Optional<OperationLogStatsDto> getOperationLogStats() {
+    return Optional.ofNullable(operationLog).map(OperationLog::getStats);
+  }
+
+  /**
+   * Get memory usage and counters of the buffer pool used by content copies
+   *
+   * @return buffer pool counters
+   */
+  public BufferPoolStatsDto getBufferPoolStats() {
+    return getBufferPool().getStats();
+  }
+
+  /**
+   * Stop background work of the service components, store changed usage counters and release
+   * the repository
+   */
+  @Override
+  public void close() {
+    if (prefetcher != null) {
+      prefetcher.close();
+    }
+    if (cleanupService != null) {
+      cleanupService.close();
+    }
+    if (existenceChecker != null) {
+      existenceChecker.close();
+    }
+    if (usageTracker != null) {
+      usageTracker.close();
+    }
+    if (operationLog != null) {
+      operationLog.close();
+    }
+    repository.close();
+  }
+
+  private BufferPool getBufferPool() {
+    return bufferPool != null ? bufferPool : BufferPool.getDefault();
   }
 
   /**
@@ -151,10 +610,228 @@ public class FormDataFileStorageService {
    * @param id specified file id
    */
   public void deleteByProcessInstanceIdAndId(String processInstanceId, String id) {
-    log.info("Delete file by process instance id {}, file id {}", processInstanceId, id);
     var key = keyProvider.generateKey(processInstanceId, id);
-    repository.delete(Set.of(key));
-    log.info("Deleted next file from storage - {}, processInstanceId={}", key,
-        processInstanceId);
+    run("deleteByProcessInstanceIdAndId", List.of(key), () -> {
+      acquireRequest(key);
+      var length = usageTracker != null ? usageTracker.prepareDelete(key)
+          : ProcessInstanceUsageTracker.NOT_STORED;
+      repository.delete(Set.of(key));
+      if (usageTracker != null) {
+        usageTracker.onDeleted(key, length);
+      }
+      if (prefetcher != null) {
+        prefetcher.invalidate(key);
+      }
+      publishDeleted(key, length);
+    });
+  }
+
+  /**
+   * Update local caches after files were changed by another node
+   *
+   * @param event file change event
+   */
+  @Override
+  public void onChange(FileChangeEventDto event) {
+    log.debug("Apply file change event {}", event);
+    if (event.getType() == Type.STORED) {
+      event.getKeys().forEach(this::onStored);
+    } else if (event.getType() == Type.DELETED && event.getPrefix() != null
+        && keyFilter != null) {
+      keyFilter.invalidate(event.getPrefix());
+    }
+    if (usageTracker != null) {
+      onUsageChange(event);
+    }
+    if (prefetcher != null && event.getType() != Type.STORED) {
+      event.getKeys().forEach(prefetcher::invalidate);
+      if (event.getPrefix() != null) {
+        prefetcher.invalidatePrefix(event.getPrefix());
+      }
+    }
+  }
+
+  private <T> T call(String operation, Collection<String> keys, Supplier<T> call) {
+    return (operationLog != null ? operationLog : OperationLog.unsampled())
+        .call(operation, keys, call);
+  }
+
+  private void run(String operation, Collection<String> keys, Runnable call) {
+    (operationLog != null ? operationLog : OperationLog.unsampled()).run(operation, keys, call);
+  }
+
+  private boolean mightContain(String processInstanceId, String key) {
+    return keyFilter == null || keyFilter.mightContain(
+        keyProvider.getKeyPrefixByProcessInstanceId(processInstanceId), key);
+  }
+
+  private FileNotFoundException notFound(String id) {
+    if (keyFilter != null) {
+      keyFilter.recordFalsePositive();
+    }
+    return new FileNotFoundException(List.of(id));
+  }
+
+  private void onMoved(String sourceKey, String targetKey, long previousLength,
+      FileMetadataDto metadata) {
+    onSaved(targetKey, previousLength, metadata);
+    if (usageTracker != null && metadata.getContentLength() != null) {
+      usageTracker.onDeleted(sourceKey, metadata.getContentLength());
+    }
+    if (prefetcher != null) {
+      prefetcher.invalidate(sourceKey);
+    }
+    onStored(targetKey);
+    publishStored(targetKey, previousLength, metadata);
+    publishDeleted(sourceKey, metadata.getContentLength() == null
+        ? ProcessInstanceUsageTracker.NOT_STORED : metadata.getContentLength());
+  }
+
+  private Optional<FileDataDto> prefetched(String key) {
+    return prefetcher == null ? Optional.empty() : prefetcher.take(key);
+  }
+
+  private long prepareSave(String key, Long contentLength) {
+    if (usageTracker == null) {
+      return ProcessInstanceUsageTracker.NOT_STORED;
+    }
+    var mightExist = keyFilter == null || keyFilter.mightContain(prefixOf(key), key);
+    return usageTracker.prepareSave(key, contentLength, mightExist);
+  }
+
+  private void onSaved(String key, long previousLength, FileMetadataDto metadata) {
+    if (usageTracker != null) {
+      usageTracker.onSaved(key, previousLength, metadata);
+    }
+  }
+
+  private FileMetadataDto saveIdempotent(String key, FileDataDto content, boolean mightExist) {
+    var metadata = content.getMetadata();
+    if (mightExist && metadata != null && metadata.getChecksum() != null) {
+      acquireRequest(key);
+      var stored = repository.getMetadata(Set.of(key)).stream()
+          .filter(storedMetadata -> isSameContent(storedMetadata, metadata))
+          .findFirst();
+      if (stored.isPresent()) {
+        log.debug("File with the same checksum is already stored by key {}", key);
+        return stored.get();
+      }
+    }
+    return save(key, content);
+  }
+
+  private boolean isSameContent(FileMetadataDto stored, FileMetadataDto provided) {
+    return provided.getChecksum().equals(stored.getChecksum())
+        && (provided.getContentLength() == null
+        || provided.getContentLength().equals(stored.getContentLength()));
+  }
+
+  private void acquireRequest(String key) {
+    if (throttler != null) {
+      throttler.acquireRequest(throttleKeyOf(key));
+    }
+  }
+
+  private FileDataDto verify(String key, FileDataDto file) {
+    return contentVerifier == null ? file : contentVerifier.verify(key, file);
+  }
+
+  private FileDataDto throttleContent(String key, FileDataDto file) {
+    if (throttler == null) {
+      return file;
+    }
+    return FileDataDto.builder()
+        .content(throttler.throttle(throttleKeyOf(key), file.getContent()))
+        .metadata(file.getMetadata())
+        .build();
+  }
+
+  private OutputStream throttleTarget(String key, OutputStream target) {
+    return throttler == null ? target : throttler.throttle(throttleKeyOf(key), target);
+  }
+
+  private WritableByteChannel throttleTarget(String key, WritableByteChannel target) {
+    if (throttler == null) {
+      return target;
+    }
+    return Channels.newChannel(
+        throttler.throttle(throttleKeyOf(key), Channels.newOutputStream(target)));
+  }
+
+  /**
+   * Files are throttled by the tenant of the call or by the process instance key prefix
+   */
+  private String throttleKeyOf(String key) {
+    return throttler.resolveKey(prefixOf(key));
+  }
+
+  private static String prefixOf(String key) {
+    return key.substring(0, key.lastIndexOf('/') + 1);
+  }
+
+  private void publish(Type type, Collection<String> keys, String prefix) {
+    if (changePublisher != null) {
+      changePublisher.publish(type, keys, prefix);
+    }
+  }
+
+  /**
+   * Publish the stored file with the usage change, so other nodes don't recount usage
+   */
+  private void publishStored(String key, long previousLength, FileMetadataDto metadata) {
+    if (changePublisher == null) {
+      return;
+    }
+    if (usageTracker == null) {
+      changePublisher.publish(Type.STORED, Set.of(key), null);
+      return;
+    }
+    var length = metadata.getContentLength() == null ? 0 : metadata.getContentLength();
+    var stored = previousLength == ProcessInstanceUsageTracker.NOT_STORED;
+    changePublisher.publish(Type.STORED, Set.of(key), null, stored ? 1L : 0L,
+        stored ? length : length - previousLength);
+  }
+
+  private void publishDeleted(String key, long length) {
+    if (changePublisher == null) {
+      return;
+    }
+    if (usageTracker == null) {
+      changePublisher.publish(Type.DELETED, Set.of(key), null);
+      return;
+    }
+    var deleted = length != ProcessInstanceUsageTracker.NOT_STORED;
+    changePublisher.publish(Type.DELETED, Set.of(key), null, deleted ? -1L : 0L,
+        deleted ? -length : 0L);
+  }
+
+  private void onUsageChange(FileChangeEventDto event) {
+    if (event.getType() == Type.METADATA_UPDATED) {
+      return;
+    }
+    if (event.getPrefix() != null) {
+      usageTracker.onRemoteReset(event.getPrefix());
+      return;
+    }
+    if (event.getKeys().size() == 1 && event.getFileCountDelta() != null
+        && event.getTotalBytesDelta() != null) {
+      var key = event.getKeys().iterator().next();
+      usageTracker.onRemoteChange(prefixOf(key), event.getFileCountDelta(),
+          event.getTotalBytesDelta());
+      return;
+    }
+    event.getKeys().forEach(key -> usageTracker.invalidate(prefixOf(key)));
+  }
+
+  private void onStored(String key) {
+    if (existenceChecker != null) {
+      existenceChecker.invalidate(key);
+    }
+    if (prefetcher != null) {
+      prefetcher.invalidate(key);
+    }
+    if (keyFilter != null) {
+      keyFilter.onStored(key);
+    }
   }
 }
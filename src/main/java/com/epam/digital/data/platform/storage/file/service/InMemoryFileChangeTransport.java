@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The transport that delivers file change events synchronously to receivers in the same JVM
+ */
+@Slf4j
+public class InMemoryFileChangeTransport implements FileChangeTransport {
+
+  private final List<Consumer<FileChangeEventDto>> receivers = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void send(FileChangeEventDto event) {
+    for (var receiver : receivers) {
+      try {
+        receiver.accept(event);
+      } catch (RuntimeException e) {
+        log.warn("Failed to deliver file change event {}", event, e);
+      }
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<FileChangeEventDto> receiver) {
+    receivers.add(receiver);
+  }
+
+  @Override
+  public boolean reachesOtherNodes() {
+    return false;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.OperationEventDto;
+import com.epam.digital.data.platform.storage.file.dto.OperationLogStatsDto;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The log of storage operations that writes one structured line per operation instead of
+ * per-call messages. Failed and slow operations are logged at WARN level by the calling thread,
+ * so they are never lost. Other operations are sampled and logged at INFO level in batches by a
+ * background thread, sampled events are dropped when the queue is full. Keys of an operation are
+ * truncated and copied only if the operation is logged.
+ */
+@Slf4j
+public class OperationLog implements AutoCloseable {
+
+  private static final OperationLog UNSAMPLED = OperationLog.builder().sampleRate(1).build();
+
+  private final double sampleRate;
+  private final long slowThresholdNanos;
+  private final int maxLoggedKeys;
+  private final int batchSize;
+  private final BlockingQueue<OperationEventDto> queue;
+  private final Thread writer;
+  private volatile boolean closed;
+
+  private final LongAdder operationCount = new LongAdder();
+  private final LongAdder loggedCount = new LongAdder();
+  private final LongAdder errorCount = new LongAdder();
+  private final LongAdder slowCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+
+  /**
+   * @param sampleRate    probability of a successful operation to be logged
+   * @param slowThreshold min duration of an operation that is always logged, disabled if null
+   * @param maxLoggedKeys max number of logged keys of an operation, 10 by default
+   * @param queueCapacity capacity of the queue of sampled events, sampled events are logged by
+   *                      the calling thread if not positive
+   * @param batchSize     max number of events logged by the background thread at once
+   */
+  @Builder
+  public OperationLog(double sampleRate, Duration slowThreshold, int maxLoggedKeys,
+      int queueCapacity, int batchSize) {
+    this.sampleRate = sampleRate;
+    this.slowThresholdNanos = slowThreshold != null ? slowThreshold.toNanos() : Long.MAX_VALUE;
+    this.maxLoggedKeys = maxLoggedKeys > 0 ? maxLoggedKeys : 10;
+    this.batchSize = Math.max(1, batchSize);
+    if (queueCapacity > 0) {
+      this.queue = new ArrayBlockingQueue<>(queueCapacity);
+      this.writer = new Thread(this::writeEvents, "storage-operation-log");
+      this.writer.setDaemon(true);
+      this.writer.start();
+    } else {
+      this.queue = null;
+      this.writer = null;
+    }
+  }
+
+  /**
+   * Get the log that synchronously logs every operation, used when sampled logging is not
+   * configured
+   *
+   * @return shared unsampled log
+   */
+  public static OperationLog unsampled() {
+    return UNSAMPLED;
+  }
+
+  /**
+   * Perform the operation and log it
+   *
+   * @param operation name of the operation
+   * @param keys      keys or prefixes the operation is applied to
+   * @param call      the operation
+   * @param <T>       type of the operation result
+   * @return result of the operation
+   */
+  public <T> T call(String operation, Collection<String> keys, Supplier<T> call) {
+    var startedAt = System.nanoTime();
+    T result;
+    try {
+      result = call.get();
+    } catch (RuntimeException e) {
+      record(operation, keys, System.nanoTime() - startedAt, e);
+      throw e;
+    }
+    record(operation, keys, System.nanoTime() - startedAt, null);
+    return result;
+  }
+
+  /**
+   * Perform the operation without result and log it
+   *
+   * @param operation name of the operation
+   * @param keys      keys or prefixes the operation is applied to
+   * @param call      the operation
+   */
+  public void run(String operation, Collection<String> keys, Runnable call) {
+    call(operation, keys, () -> {
+      call.run();
+      return null;
+    });
+  }
+
+  /**
+   * @return logging counters
+   */
+  public OperationLogStatsDto getStats() {
+    return OperationLogStatsDto.builder()
+        .operationCount(operationCount.sum())
+        .loggedCount(loggedCount.sum())
+        .errorCount(errorCount.sum())
+        .slowCount(slowCount.sum())
+        .droppedCount(droppedCount.sum())
+        .build();
+  }
+
+  /**
+   * Stop the background thread and log queued events
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (writer != null) {
+      writer.interrupt();
+      try {
+        writer.join(TimeUnit.SECONDS.toMillis(1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      drain(new ArrayList<>());
+    }
+  }
+
+  private void record(String operation, Collection<String> keys, long durationNanos,
+      RuntimeException error) {
+    operationCount.increment();
+    var slow = durationNanos >= slowThresholdNanos;
+    if (error != null || slow) {
+      if (error != null) {
+        errorCount.increment();
+      } else {
+        slowCount.increment();
+      }
+      write(event(operation, keys, durationNanos, slow, error));
+      return;
+    }
+    if (!isSampled()) {
+      return;
+    }
+    var event = event(operation, keys, durationNanos, false, null);
+    if (queue == null) {
+      write(event);
+    } else if (closed || !queue.offer(event)) {
+      droppedCount.increment();
+    }
+  }
+
+  private boolean isSampled() {
+    return sampleRate >= 1
+        || sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  private OperationEventDto event(String operation, Collection<String> keys, long durationNanos,
+      boolean slow, RuntimeException error) {
+    var loggedKeys = new ArrayList<String>(Math.min(keys.size(), maxLoggedKeys));
+    for (var key : keys) {
+      if (loggedKeys.size() == maxLoggedKeys) {
+        break;
+      }
+      loggedKeys.add(key);
+    }
+    return OperationEventDto.builder()
+        .operation(operation)
+        .keys(loggedKeys)
+        .keyCount(keys.size())
+        .duration(Duration.ofNanos(durationNanos))
+        .slow(slow)
+        .error(error == null ? null
+            : String.format("%s: %s", error.getClass().getSimpleName(), error.getMessage()))
+        .build();
+  }
+
+  private void writeEvents() {
+    var batch = new ArrayList<OperationEventDto>(batchSize);
+    while (!closed) {
+      try {
+        var event = queue.poll(1, TimeUnit.SECONDS);
+        if (event != null) {
+          batch.add(event);
+          queue.drainTo(batch, batchSize - 1);
+          batch.forEach(this::write);
+          batch.clear();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.error("Failed to write storage operation events", e);
+        batch.clear();
+      }
+    }
+  }
+
+  private void drain(List<OperationEventDto> batch) {
+    queue.drainTo(batch);
+    batch.forEach(this::write);
+  }
+
+  private void write(OperationEventDto event) {
+    loggedCount.increment();
+    var durationMs = event.getDuration().toMillis();
+    if (event.getError() != null) {
+      log.warn("operation={} outcome=error durationMs={} keyCount={} keys={} error=\"{}\"",
+          event.getOperation(), durationMs, event.getKeyCount(), event.getKeys(),
+          event.getError());
+    } else if (event.isSlow()) {
+      log.warn("operation={} outcome=slow durationMs={} keyCount={} keys={}",
+          event.getOperation(), durationMs, event.getKeyCount(), event.getKeys());
+    } else {
+      log.info("operation={} outcome=success durationMs={} keyCount={} keys={}",
+          event.getOperation(), durationMs, event.getKeyCount(), event.getKeys());
+    }
+  }
+}
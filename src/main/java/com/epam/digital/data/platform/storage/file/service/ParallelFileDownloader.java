@@ -0,0 +1,310 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.exception.FileNotFoundException;
+import com.epam.digital.data.platform.storage.file.repository.FileRangeReader;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.utils.BufferPool;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The service for downloading large files over several connections. Files larger than
+ * {@code threshold} are split into ranges that are fetched concurrently with the
+ * {@link FileRangeReader} and reassembled in order. Smaller files and all files if no range reader
+ * is configured are downloaded with a single request.
+ * <p>
+ * Downloads to a file write every range at its position as it arrives. Downloads to a stream hold
+ * at most {@code concurrency} parts of {@code partSize} bytes in pooled buffers. A range that is
+ * shorter than requested fails the download.
+ */
+@Slf4j
+public class ParallelFileDownloader implements AutoCloseable {
+
+  private final FormDataFileRepository repository;
+  private final FileRangeReader rangeReader;
+  private final long threshold;
+  private final int partSize;
+  private final int concurrency;
+  private final BufferPool bufferPool;
+  private final ExecutorService executor;
+
+  @Builder
+  public ParallelFileDownloader(FormDataFileRepository repository, FileRangeReader rangeReader,
+      long threshold, int partSize, int concurrency, BufferPool bufferPool) {
+    this.repository = repository;
+    this.rangeReader = rangeReader;
+    this.threshold = threshold;
+    this.partSize = partSize;
+    this.concurrency = concurrency;
+    this.bufferPool = bufferPool != null ? bufferPool : BufferPool.getDefault();
+    var threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+      var thread = new Thread(runnable, "file-download-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Download file to the local file. Content is written to a temporary file next to the target
+   * that replaces the target once the download is complete, so the target is left as is if the
+   * file is not found or the download fails.
+   *
+   * @param key    specified file key
+   * @param target local file path
+   * @return metadata of the downloaded file
+   * @throws FileNotFoundException if file not found
+   */
+  public FileMetadataDto download(String key, Path target) {
+    var temp = target.resolveSibling(
+        "." + target.getFileName() + "." + UUID.randomUUID() + ".part");
+    try {
+      var metadata = downloadTo(key, temp);
+      try {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+      return metadata;
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failed to download file with key %s", key), e);
+    } finally {
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException e) {
+        log.warn("Failed to delete temporary file {}", temp, e);
+      }
+    }
+  }
+
+  private FileMetadataDto downloadTo(String key, Path target) throws IOException {
+    try (var channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE)) {
+      var metadata = rangeReader != null ? getMetadata(key) : null;
+      if (!isParallel(metadata)) {
+        return repository.transferTo(key, channel, bufferPool)
+            .orElseThrow(() -> new FileNotFoundException(List.of(key)));
+      }
+      log.info("Download file by key {} in ranges to {}", key, target);
+      var parts = new ArrayList<Future<?>>();
+      for (var offset = 0L; offset < metadata.getContentLength(); offset += partSize) {
+        var position = offset;
+        var length = Math.min(partSize, metadata.getContentLength() - offset);
+        parts.add(executor.submit(() -> writeRange(key, position, length, channel)));
+      }
+      for (var part : parts) {
+        await(part, parts);
+      }
+      return metadata;
+    }
+  }
+
+  /**
+   * Download file to the output stream
+   *
+   * @param key    specified file key
+   * @param target stream to write content to, it is not closed
+   * @return metadata of the downloaded file
+   * @throws FileNotFoundException if file not found
+   */
+  public FileMetadataDto download(String key, OutputStream target) {
+    var metadata = rangeReader != null ? getMetadata(key) : null;
+    if (!isParallel(metadata)) {
+      return repository.transferTo(key, target, bufferPool)
+          .orElseThrow(() -> new FileNotFoundException(List.of(key)));
+    }
+    log.info("Download file by key {} in ranges", key);
+    var length = metadata.getContentLength();
+    var window = new ArrayDeque<Part>(concurrency);
+    var next = 0L;
+    try {
+      for (; next < length && window.size() < concurrency; next += partSize) {
+        window.add(submitPart(key, next, Math.min(partSize, length - next)));
+      }
+      while (!window.isEmpty()) {
+        var part = window.poll();
+        try {
+          await(part.future, window.stream().map(other -> other.future)
+              .collect(Collectors.toList()));
+          target.write(part.buffer.array(), part.buffer.arrayOffset(), part.buffer.limit());
+        } finally {
+          abandon(part);
+        }
+        if (next < length) {
+          window.add(submitPart(key, next, Math.min(partSize, length - next)));
+          next += partSize;
+        }
+      }
+      return metadata;
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failed to download file with key %s", key), e);
+    } finally {
+      window.forEach(part -> {
+        part.future.cancel(true);
+        abandon(part);
+      });
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private FileMetadataDto getMetadata(String key) {
+    return repository.getMetadata(Set.of(key)).stream()
+        .findFirst()
+        .orElseThrow(() -> new FileNotFoundException(List.of(key)));
+  }
+
+  private boolean isParallel(FileMetadataDto metadata) {
+    return metadata != null && metadata.getContentLength() != null
+        && metadata.getContentLength() > threshold;
+  }
+
+  /**
+   * Parts are read into pooled buffers taken by the caller, so the caller waits when the pool
+   * limit is reached instead of the download threads
+   */
+  private Part submitPart(String key, long offset, long length) {
+    var part = new Part(bufferPool.acquire((int) length));
+    part.future = executor.submit(() -> readPart(part, key, offset, length));
+    return part;
+  }
+
+  private Void readPart(Part part, String key, long offset, long length) throws IOException {
+    if (!part.state.compareAndSet(Part.PENDING, Part.RUNNING)) {
+      return null;
+    }
+    try (var content = rangeReader.read(key, offset, length)) {
+      var buffer = part.buffer;
+      var received = content.readNBytes(buffer.array(), buffer.arrayOffset(), (int) length);
+      checkReceived(key, offset, length, received);
+      buffer.limit(received);
+      return null;
+    } finally {
+      if (!part.state.compareAndSet(Part.RUNNING, Part.DONE)) {
+        bufferPool.release(part.buffer);
+      }
+    }
+  }
+
+  /**
+   * Return the part buffer to the pool unless the part is still being read, the reading thread
+   * returns it then
+   */
+  private void abandon(Part part) {
+    if (part.state.compareAndSet(Part.PENDING, Part.ABANDONED)
+        || !part.state.compareAndSet(Part.RUNNING, Part.ABANDONED)) {
+      bufferPool.release(part.buffer);
+    }
+  }
+
+  private Void writeRange(String key, long offset, long length, FileChannel target)
+      throws IOException {
+    var buffer = bufferPool.acquire();
+    try (var content = rangeReader.read(key, offset, length)) {
+      var array = buffer.array();
+      var position = offset;
+      var end = offset + length;
+      int read;
+      while (position < end && (read = content.read(array, buffer.arrayOffset(),
+          (int) Math.min(buffer.capacity(), end - position))) >= 0) {
+        buffer.position(0).limit(read);
+        while (buffer.hasRemaining()) {
+          position += target.write(buffer, position);
+        }
+      }
+      checkReceived(key, offset, length, position - offset);
+      return null;
+    } finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+  private void checkReceived(String key, long offset, long length, long received)
+      throws IOException {
+    if (received != length) {
+      throw new IOException(String.format(
+          "Range at %d of file with key %s is truncated, expected %d bytes, received %d",
+          offset, key, length, received));
+    }
+  }
+
+  private <T> T await(Future<T> part, Collection<? extends Future<?>> parts) {
+    try {
+      return part.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      parts.forEach(other -> other.cancel(true));
+      throw new IllegalStateException("File download was interrupted", e);
+    } catch (ExecutionException e) {
+      parts.forEach(other -> other.cancel(true));
+      if (e.getCause() instanceof IOException) {
+        throw new UncheckedIOException((IOException) e.getCause());
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private static class Part {
+
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int ABANDONED = 3;
+
+    private final ByteBuffer buffer;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private volatile Future<?> future;
+
+    Part(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+}
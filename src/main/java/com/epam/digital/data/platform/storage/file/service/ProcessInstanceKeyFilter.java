@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.KeyFilterStatsDto;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.utils.BloomFilter;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The in-memory Bloom filters of stored keys by process instance key prefix. A filter is built
+ * from the key listing on first use and updated when files are stored through the service, so
+ * keys that were never stored are rejected without a storage request.
+ * <p>
+ * Files stored by other nodes are not visible until the filter expires after {@code ttl}. Process
+ * instances with more than {@code maxKeysPerProcessInstance} files are not filtered.
+ */
+public class ProcessInstanceKeyFilter {
+
+  private static final int LOCK_STRIPES = 256;
+
+  private final FormDataFileRepository repository;
+  private final int maxProcessInstances;
+  private final int expectedKeysPerProcessInstance;
+  private final int maxKeysPerProcessInstance;
+  private final double falsePositiveProbability;
+  private final long ttlNanos;
+  private final Map<String, CachedFilter> filters;
+  private final Lock[] locks;
+  private final Map<String, Queue<String>> pendingBuilds = new ConcurrentHashMap<>();
+
+  private final LongAdder checkCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder falsePositiveCount = new LongAdder();
+
+  @Builder
+  public ProcessInstanceKeyFilter(FormDataFileRepository repository, int maxProcessInstances,
+      int expectedKeysPerProcessInstance, int maxKeysPerProcessInstance,
+      double falsePositiveProbability, Duration ttl) {
+    this.repository = repository;
+    this.maxProcessInstances = maxProcessInstances;
+    this.expectedKeysPerProcessInstance = expectedKeysPerProcessInstance;
+    this.maxKeysPerProcessInstance = maxKeysPerProcessInstance;
+    this.falsePositiveProbability = falsePositiveProbability;
+    this.ttlNanos = ttl.toNanos();
+    this.filters = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedFilter> eldest) {
+        return size() > ProcessInstanceKeyFilter.this.maxProcessInstances;
+      }
+    };
+    this.locks = new Lock[LOCK_STRIPES];
+    for (var i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Check whether the file might be stored
+   *
+   * @param prefix key prefix of the process instance
+   * @param key    file key
+   * @return false if the file is definitely not stored
+   */
+  public boolean mightContain(String prefix, String key) {
+    checkCount.increment();
+    var filter = filterFor(prefix);
+    if (filter == null || filter.mightContain(key)) {
+      return true;
+    }
+    rejectedCount.increment();
+    return false;
+  }
+
+  /**
+   * Record that a file allowed by the filter was not found
+   */
+  public void recordFalsePositive() {
+    falsePositiveCount.increment();
+  }
+
+  /**
+   * Add stored file to the filter of its process instance
+   *
+   * @param key file key, its process instance prefix is the part up to the last {@code /}
+   */
+  public void onStored(String key) {
+    var prefix = prefixOf(key);
+    var storedKeys = pendingBuilds.get(prefix);
+    if (storedKeys != null) {
+      storedKeys.add(key);
+    }
+    if (!hasFilter(prefix)) {
+      return;
+    }
+    var lock = lockFor(prefix);
+    lock.lock();
+    try {
+      var cached = getCached(prefix);
+      if (cached == null || cached.filter == null) {
+        return;
+      }
+      if (cached.filter.getSize() >= cached.filter.getCapacity()) {
+        invalidate(prefix);
+      } else {
+        cached.filter.add(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop the filter of the process instance
+   *
+   * @param prefix key prefix of the process instance
+   */
+  public void invalidate(String prefix) {
+    synchronized (filters) {
+      filters.remove(prefix);
+    }
+  }
+
+  public KeyFilterStatsDto getStats() {
+    var filterCount = 0;
+    var memoryBytes = 0L;
+    synchronized (filters) {
+      for (var cached : filters.values()) {
+        if (cached.filter != null) {
+          filterCount++;
+          memoryBytes += cached.filter.getMemoryBytes();
+        }
+      }
+    }
+    return KeyFilterStatsDto.builder()
+        .filterCount(filterCount)
+        .memoryBytes(memoryBytes)
+        .checkCount(checkCount.sum())
+        .rejectedCount(rejectedCount.sum())
+        .falsePositiveCount(falsePositiveCount.sum())
+        .build();
+  }
+
+  private BloomFilter filterFor(String prefix) {
+    var cached = getCached(prefix);
+    if (cached != null) {
+      return cached.filter;
+    }
+    var lock = lockFor(prefix);
+    lock.lock();
+    try {
+      cached = getCached(prefix);
+      if (cached == null) {
+        var storedKeys = new ConcurrentLinkedQueue<String>();
+        pendingBuilds.put(prefix, storedKeys);
+        try {
+          cached = new CachedFilter(build(prefix), System.nanoTime() + ttlNanos);
+          synchronized (filters) {
+            filters.put(prefix, cached);
+          }
+        } finally {
+          pendingBuilds.remove(prefix);
+        }
+        if (cached.filter != null) {
+          storedKeys.forEach(cached.filter::add);
+        }
+      }
+      return cached.filter;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private BloomFilter build(String prefix) {
+    var keys = repository.getKeys(prefix);
+    if (keys.size() > maxKeysPerProcessInstance) {
+      return null;
+    }
+    var filter = new BloomFilter(Math.max(expectedKeysPerProcessInstance, keys.size() * 2),
+        falsePositiveProbability);
+    keys.forEach(filter::add);
+    return filter;
+  }
+
+  private CachedFilter getCached(String prefix) {
+    synchronized (filters) {
+      var cached = filters.get(prefix);
+      if (cached != null && cached.expiresAt - System.nanoTime() <= 0) {
+        filters.remove(prefix);
+        return null;
+      }
+      return cached;
+    }
+  }
+
+  private boolean hasFilter(String prefix) {
+    var cached = getCached(prefix);
+    return cached != null && cached.filter != null;
+  }
+
+  private static String prefixOf(String key) {
+    return key.substring(0, key.lastIndexOf('/') + 1);
+  }
+
+  private Lock lockFor(String prefix) {
+    return locks[Math.floorMod(prefix.hashCode(), LOCK_STRIPES)];
+  }
+
+  @RequiredArgsConstructor
+  private static class CachedFilter {
+
+    private final BloomFilter filter;
+    private final long expiresAt;
+  }
+}
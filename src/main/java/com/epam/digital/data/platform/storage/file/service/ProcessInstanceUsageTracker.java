@@ -0,0 +1,389 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.StorageUsageDto;
+import com.epam.digital.data.platform.storage.file.exception.StorageQuotaExceededException;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The tracker of file count and total size of each process instance key prefix. Counters are
+ * changed by saves and deletes of this node and by usage changes published by other nodes, so
+ * usage is read without listing files. Counters are stored as user metadata of an empty record
+ * object per prefix and are recounted by listing the prefix periodically and after changes of
+ * other nodes whose usage change is unknown.
+ * <p>
+ * Quotas are checked before a file is saved. The check is not atomic with the save, so
+ * concurrent saves may exceed the quota slightly. Size of a file without content length is
+ * unknown before saving, it is rejected only if the byte quota is already used up.
+ */
+@Slf4j
+public class ProcessInstanceUsageTracker implements AutoCloseable {
+
+  /**
+   * Previous length of a file that was not stored
+   */
+  public static final long NOT_STORED = -1;
+
+  private static final String RECORD_CONTENT_TYPE = "text/plain";
+  private static final String FILE_COUNT = "file-count";
+  private static final String TOTAL_BYTES = "total-bytes";
+  private static final String RECONCILED_AT = "reconciled-at";
+
+  private final FormDataFileRepository repository;
+  private final FormDataFileRepository recordRepository;
+  private final String recordPrefix;
+  private final Duration flushInterval;
+  private final Duration reconcileInterval;
+  private final int maxTrackedProcessInstances;
+  private final long maxBytesPerProcessInstance;
+  private final long maxFilesPerProcessInstance;
+  private final Map<String, Usage> usages = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService executor;
+
+  /**
+   * @param repository       repository of process instance files
+   * @param recordRepository repository the counter records are stored in, must not pack or cache
+   *                         objects as records are written by several nodes
+   */
+  @Builder
+  public ProcessInstanceUsageTracker(FormDataFileRepository repository,
+      FormDataFileRepository recordRepository, String recordPrefix, Duration flushInterval,
+      Duration reconcileInterval, int maxTrackedProcessInstances, long maxBytesPerProcessInstance,
+      long maxFilesPerProcessInstance) {
+    this.repository = repository;
+    this.recordRepository = recordRepository;
+    this.recordPrefix = recordPrefix;
+    this.flushInterval = flushInterval;
+    this.reconcileInterval = reconcileInterval;
+    this.maxTrackedProcessInstances = maxTrackedProcessInstances;
+    this.maxBytesPerProcessInstance = maxBytesPerProcessInstance;
+    this.maxFilesPerProcessInstance = maxFilesPerProcessInstance;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      var thread = new Thread(runnable, "file-usage-flush");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Start periodic storing and reconciliation of counters
+   */
+  public void start() {
+    var delay = flushInterval.toMillis();
+    executor.scheduleWithFixedDelay(this::flush, delay, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Get usage of the prefix
+   *
+   * @param prefix process instance key prefix
+   * @return file count and total size
+   */
+  public StorageUsageDto getUsage(String prefix) {
+    return load(prefix).toDto();
+  }
+
+  /**
+   * Check quotas before the file is saved
+   *
+   * @param key           key of the file to save
+   * @param contentLength length of the file to save, may be null
+   * @param mightExist    false if the file is known to be absent, so its length is not requested
+   * @return length of the file that is replaced or {@link #NOT_STORED}
+   * @throws StorageQuotaExceededException if the file does not fit into quotas
+   */
+  public long prepareSave(String key, Long contentLength, boolean mightExist) {
+    var prefix = prefixOf(key);
+    if (prefix.isEmpty()) {
+      return NOT_STORED;
+    }
+    var previousLength = mightExist ? lengthOf(key) : NOT_STORED;
+    var usage = load(prefix);
+    var fileCount = usage.fileCount.get() + (previousLength == NOT_STORED ? 1 : 0);
+    var totalBytes = usage.totalBytes.get()
+        + (contentLength == null ? 0 : contentLength - Math.max(previousLength, 0));
+    if (maxFilesPerProcessInstance > 0 && fileCount > maxFilesPerProcessInstance
+        || maxBytesPerProcessInstance > 0 && (totalBytes > maxBytesPerProcessInstance
+        || contentLength == null && totalBytes >= maxBytesPerProcessInstance)) {
+      throw new StorageQuotaExceededException(prefix, fileCount, totalBytes);
+    }
+    return previousLength;
+  }
+
+  /**
+   * Count the saved file
+   *
+   * @param key            key of the saved file
+   * @param previousLength length of the replaced file or {@link #NOT_STORED}
+   * @param metadata       metadata of the saved file
+   */
+  public void onSaved(String key, long previousLength, FileMetadataDto metadata) {
+    var prefix = prefixOf(key);
+    var usage = prefix.isEmpty() ? null : usages.get(prefix);
+    if (usage == null) {
+      return;
+    }
+    var length = metadata.getContentLength() == null ? 0 : metadata.getContentLength();
+    if (previousLength == NOT_STORED) {
+      usage.add(1, length);
+    } else {
+      usage.add(0, length - previousLength);
+    }
+  }
+
+  /**
+   * Get length of the file before it is deleted
+   *
+   * @param key key of the file to delete
+   * @return length of the file or {@link #NOT_STORED}
+   */
+  public long prepareDelete(String key) {
+    var prefix = prefixOf(key);
+    if (prefix.isEmpty()) {
+      return NOT_STORED;
+    }
+    load(prefix);
+    return lengthOf(key);
+  }
+
+  /**
+   * Count the deleted file
+   *
+   * @param key    key of the deleted file
+   * @param length length of the deleted file or {@link #NOT_STORED}
+   */
+  public void onDeleted(String key, long length) {
+    var prefix = prefixOf(key);
+    var usage = prefix.isEmpty() ? null : usages.get(prefix);
+    if (usage != null && length != NOT_STORED) {
+      usage.add(-1, -length);
+    }
+  }
+
+  /**
+   * Reset usage after all files of the prefix are deleted
+   *
+   * @param prefix process instance key prefix
+   */
+  public void reset(String prefix) {
+    usages.remove(prefix);
+    recordRepository.delete(Set.of(recordKeyOf(prefix)));
+  }
+
+  /**
+   * Apply usage change made by another node, usage that is not tracked is loaded on access
+   *
+   * @param prefix          process instance key prefix
+   * @param fileCountDelta  change of the file count
+   * @param totalBytesDelta change of the total size
+   */
+  public void onRemoteChange(String prefix, long fileCountDelta, long totalBytesDelta) {
+    var usage = usages.get(prefix);
+    if (usage != null) {
+      usage.fileCount.addAndGet(fileCountDelta);
+      usage.totalBytes.addAndGet(totalBytesDelta);
+    }
+  }
+
+  /**
+   * Forget usage of the prefix whose files were all deleted by another node
+   *
+   * @param prefix process instance key prefix
+   */
+  public void onRemoteReset(String prefix) {
+    var usage = new Usage();
+    usage.reconciledAt = System.currentTimeMillis();
+    usages.put(prefix, usage);
+  }
+
+  /**
+   * Recount usage of the prefix on the next access, e.g. after it was changed by another node
+   *
+   * @param prefix process instance key prefix
+   */
+  public void invalidate(String prefix) {
+    var usage = usages.get(prefix);
+    if (usage != null) {
+      usage.stale = true;
+    }
+  }
+
+  /**
+   * Store changed counters, recount outdated counters and evict least recently used counters
+   */
+  public void flush() {
+    var reconcileBefore = System.currentTimeMillis() - reconcileInterval.toMillis();
+    usages.forEach((prefix, usage) -> {
+      try {
+        if (usage.reconciledAt < reconcileBefore) {
+          reconcile(prefix, usage);
+        }
+        if (usage.dirty) {
+          store(prefix, usage);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Failed to store usage of prefix {}", prefix, e);
+      }
+    });
+    evict();
+  }
+
+  /**
+   * Stop periodic flushes and store changed counters
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  private Usage load(String prefix) {
+    var usage = usages.get(prefix);
+    if (usage != null && !usage.stale) {
+      usage.accessedAt = System.nanoTime();
+      return usage;
+    }
+    var loaded = new Usage();
+    if (usage == null) {
+      recordRepository.getMetadata(Set.of(recordKeyOf(prefix))).stream()
+          .findFirst()
+          .map(FileMetadataDto::getUserMetadata)
+          .ifPresentOrElse(loaded::set, () -> reconcile(prefix, loaded));
+    } else {
+      reconcile(prefix, loaded);
+    }
+    usages.put(prefix, loaded);
+    return loaded;
+  }
+
+  private void reconcile(String prefix, Usage usage) {
+    var files = repository.getMetadata(prefix);
+    var totalBytes = files.stream()
+        .map(FileMetadataDto::getContentLength)
+        .filter(Objects::nonNull)
+        .mapToLong(Long::longValue)
+        .sum();
+    usage.fileCount.set(files.size());
+    usage.totalBytes.set(totalBytes);
+    usage.reconciledAt = System.currentTimeMillis();
+    usage.stale = false;
+    usage.dirty = true;
+    log.debug("Usage of prefix {} was reconciled: {} files, {} bytes", prefix, files.size(),
+        totalBytes);
+  }
+
+  private void store(String prefix, Usage usage) {
+    usage.dirty = false;
+    var record = new HashMap<String, String>();
+    record.put(FILE_COUNT, Long.toString(usage.fileCount.get()));
+    record.put(TOTAL_BYTES, Long.toString(usage.totalBytes.get()));
+    record.put(RECONCILED_AT, Long.toString(usage.reconciledAt));
+    recordRepository.put(recordKeyOf(prefix), FileDataDto.builder()
+        .content(new ByteArrayInputStream(new byte[0]))
+        .metadata(new FileMetadataDto(0L, RECORD_CONTENT_TYPE, record))
+        .build());
+  }
+
+  private void evict() {
+    var excess = usages.size() - maxTrackedProcessInstances;
+    if (excess <= 0) {
+      return;
+    }
+    var entries = new ArrayList<>(usages.entrySet());
+    entries.sort(Comparator.comparingLong(entry -> entry.getValue().accessedAt));
+    for (var entry : entries) {
+      if (excess == 0) {
+        return;
+      }
+      if (!entry.getValue().dirty && usages.remove(entry.getKey(), entry.getValue())) {
+        excess--;
+      }
+    }
+  }
+
+  private long lengthOf(String key) {
+    return repository.getMetadata(Set.of(key)).stream()
+        .findFirst()
+        .map(FileMetadataDto::getContentLength)
+        .orElse(NOT_STORED);
+  }
+
+  private String recordKeyOf(String prefix) {
+    return recordPrefix + prefix.substring(0, prefix.length() - 1);
+  }
+
+  private static String prefixOf(String key) {
+    return key.substring(0, key.lastIndexOf('/') + 1);
+  }
+
+  private static class Usage {
+
+    private final AtomicLong fileCount = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private volatile long reconciledAt;
+    private volatile long accessedAt = System.nanoTime();
+    private volatile boolean stale;
+    private volatile boolean dirty;
+
+    void add(long files, long bytes) {
+      fileCount.addAndGet(files);
+      totalBytes.addAndGet(bytes);
+      dirty = true;
+    }
+
+    void set(Map<String, String> record) {
+      fileCount.set(Long.parseLong(record.getOrDefault(FILE_COUNT, "0")));
+      totalBytes.set(Long.parseLong(record.getOrDefault(TOTAL_BYTES, "0")));
+      reconciledAt = Long.parseLong(record.getOrDefault(RECONCILED_AT, "0"));
+    }
+
+    StorageUsageDto toDto() {
+      return StorageUsageDto.builder()
+          .fileCount(fileCount.get())
+          .totalBytes(totalBytes.get())
+          .reconciledAt(Instant.ofEpochMilli(reconciledAt))
+          .build();
+    }
+  }
+}
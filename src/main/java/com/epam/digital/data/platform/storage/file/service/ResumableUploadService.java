@@ -0,0 +1,336 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import com.epam.digital.data.platform.storage.file.dto.UploadPartDto;
+import com.epam.digital.data.platform.storage.file.dto.UploadSessionDto;
+import com.epam.digital.data.platform.storage.file.exception.UploadSessionNotFoundException;
+import com.epam.digital.data.platform.storage.file.repository.FileRepository;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The service for uploading large files in parts that can be resumed after a failure. Session state
+ * is kept in the user metadata of a session object, every part is stored as a separate object
+ * under the session prefix until the session is completed or aborted.
+ * <p>
+ * The ceph client has no multipart upload API, so completion streams the parts in order to the
+ * target object. Sessions older than {@code sessionTtl} are removed by a background task.
+ */
+@Slf4j
+public class ResumableUploadService implements AutoCloseable {
+
+  static final String SESSION_HEADER = "upload-session";
+  static final String KEY_HEADER = "upload-key";
+  static final String CONTENT_TYPE_HEADER = "upload-content-type";
+  static final String CREATED_AT_HEADER = "upload-created-at";
+  static final String PART_HEADER = "upload-part";
+  static final String TARGET_METADATA_PREFIX = "target-";
+  private static final String SESSION_OBJECT = "session";
+  private static final String PART_FORMAT = "part-%05d";
+  private static final String SESSION_CONTENT_TYPE = "text/plain";
+
+  private final FileRepository repository;
+  private final String sessionsPrefix;
+  private final Duration sessionTtl;
+  private final Duration cleanupInterval;
+  private final ScheduledExecutorService executor;
+
+  @Builder
+  public ResumableUploadService(FileRepository repository, String sessionsPrefix,
+      Duration sessionTtl, Duration cleanupInterval) {
+    this.repository = repository;
+    this.sessionsPrefix = sessionsPrefix;
+    this.sessionTtl = sessionTtl;
+    this.cleanupInterval = cleanupInterval;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      var thread = new Thread(runnable, "upload-session-cleanup");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Start a new upload session
+   *
+   * @param key          key of the file to upload
+   * @param contentType  content type of the file
+   * @param userMetadata user metadata of the file
+   * @return created session
+   */
+  public UploadSessionDto initiate(String key, String contentType,
+      Map<String, String> userMetadata) {
+    var sessionId = UUID.randomUUID().toString();
+    var createdAt = Instant.now();
+    var sessionMetadata = new LinkedHashMap<String, String>();
+    sessionMetadata.put(SESSION_HEADER, sessionId);
+    sessionMetadata.put(KEY_HEADER, key);
+    sessionMetadata.put(CREATED_AT_HEADER, String.valueOf(createdAt.toEpochMilli()));
+    if (contentType != null) {
+      sessionMetadata.put(CONTENT_TYPE_HEADER, contentType);
+    }
+    userMetadata.forEach((name, value) -> {
+      if (value != null) {
+        sessionMetadata.put(TARGET_METADATA_PREFIX + name, value);
+      }
+    });
+    repository.put(sessionKey(sessionId), FileObjectDto.builder()
+        .content(new ByteArrayInputStream(new byte[0]))
+        .metadata(new BaseFileMetadataDto(0, SESSION_CONTENT_TYPE, sessionMetadata))
+        .build());
+    log.info("Upload session {} was started for key {}", sessionId, key);
+    return UploadSessionDto.builder()
+        .sessionId(sessionId)
+        .key(key)
+        .createdAt(createdAt)
+        .build();
+  }
+
+  /**
+   * Upload a part of the file. Uploading the part with the same number again replaces it.
+   *
+   * @param sessionId     specified session id
+   * @param partNumber    part number starting from 1
+   * @param content       part content
+   * @param contentLength part size in bytes
+   * @return uploaded part
+   * @throws UploadSessionNotFoundException if session not found
+   */
+  public UploadPartDto uploadPart(String sessionId, int partNumber, InputStream content,
+      long contentLength) {
+    if (partNumber < 1) {
+      throw new IllegalArgumentException("Part number must be positive");
+    }
+    getSession(sessionId);
+    var partMetadata = new HashMap<String, String>();
+    partMetadata.put(PART_HEADER, String.valueOf(partNumber));
+    var result = repository.put(partKey(sessionId, partNumber), FileObjectDto.builder()
+        .content(content)
+        .metadata(new BaseFileMetadataDto(contentLength, SESSION_CONTENT_TYPE, partMetadata))
+        .build());
+    log.debug("Part {} of upload session {} was uploaded", partNumber, sessionId);
+    return UploadPartDto.builder()
+        .partNumber(partNumber)
+        .size(result.getContentLength())
+        .build();
+  }
+
+  /**
+   * Get parts uploaded in the session
+   *
+   * @param sessionId specified session id
+   * @return uploaded parts ordered by part number, objects that are not valid parts are skipped
+   */
+  public List<UploadPartDto> getUploadedParts(String sessionId) {
+    return repository.getMetadataByPrefix(sessionPrefix(sessionId)).stream()
+        .flatMap(metadata -> toPart(sessionId, metadata).stream())
+        .sorted(Comparator.comparingInt(UploadPartDto::getPartNumber))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Assemble uploaded parts to the target file and remove the session
+   *
+   * @param sessionId specified session id
+   * @return metadata of the uploaded file
+   * @throws UploadSessionNotFoundException if session not found
+   * @throws IllegalStateException          if no parts were uploaded or there are gaps in
+   *                                        uploaded part numbers
+   */
+  public BaseFileMetadataDto complete(String sessionId) {
+    var session = getSession(sessionId).getUserMetadata();
+    var parts = getUploadedParts(sessionId);
+    if (parts.isEmpty()) {
+      throw new IllegalStateException(
+          String.format("No parts were uploaded in upload session %s", sessionId));
+    }
+    for (var i = 0; i < parts.size(); i++) {
+      if (parts.get(i).getPartNumber() != i + 1) {
+        throw new IllegalStateException(
+            String.format("Part %d of upload session %s is missing", i + 1, sessionId));
+      }
+    }
+    var contentLength = parts.stream().mapToLong(UploadPartDto::getSize).sum();
+    var userMetadata = new LinkedHashMap<String, String>();
+    session.forEach((name, value) -> {
+      if (name.startsWith(TARGET_METADATA_PREFIX)) {
+        userMetadata.put(name.substring(TARGET_METADATA_PREFIX.length()), value);
+      }
+    });
+    var key = session.get(KEY_HEADER);
+    try (var content = new SequenceInputStream(openParts(sessionId, parts))) {
+      var result = repository.put(key, FileObjectDto.builder()
+          .content(content)
+          .metadata(new BaseFileMetadataDto(contentLength, session.get(CONTENT_TYPE_HEADER),
+              userMetadata))
+          .build());
+      removeSession(sessionId);
+      log.info("Upload session {} was completed, {} parts were stored to key {}", sessionId,
+          parts.size(), key);
+      return result;
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          String.format("Failed to complete upload session %s", sessionId), e);
+    }
+  }
+
+  /**
+   * Remove the session and all uploaded parts
+   *
+   * @param sessionId specified session id
+   */
+  public void abort(String sessionId) {
+    removeSession(sessionId);
+    log.info("Upload session {} was aborted", sessionId);
+  }
+
+  /**
+   * Remove sessions that were started earlier than {@code sessionTtl} ago. Session objects
+   * without a valid start time are skipped.
+   *
+   * @return number of removed sessions
+   */
+  public int removeStaleSessions() {
+    var expiredBefore = Instant.now().minus(sessionTtl).toEpochMilli();
+    var staleSessions = repository.getMetadataByPrefix(sessionsPrefix).stream()
+        .map(BaseFileMetadataDto::getUserMetadata)
+        .filter(metadata -> metadata != null && metadata.containsKey(SESSION_HEADER))
+        .filter(metadata -> createdAtOf(metadata).filter(createdAt -> createdAt < expiredBefore)
+            .isPresent())
+        .map(metadata -> metadata.get(SESSION_HEADER))
+        .collect(Collectors.toList());
+    staleSessions.forEach(this::removeSession);
+    if (!staleSessions.isEmpty()) {
+      log.info("Stale upload sessions were removed {}", staleSessions);
+    }
+    return staleSessions.size();
+  }
+
+  /**
+   * Start periodic removal of stale sessions
+   */
+  public void start() {
+    var delay = cleanupInterval.toMillis();
+    executor.scheduleWithFixedDelay(() -> {
+      try {
+        removeStaleSessions();
+      } catch (RuntimeException e) {
+        log.warn("Failed to remove stale upload sessions", e);
+      }
+    }, delay, delay, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private BaseFileMetadataDto getSession(String sessionId) {
+    return repository.getMetadata(sessionKey(sessionId))
+        .orElseThrow(() -> new UploadSessionNotFoundException(sessionId));
+  }
+
+  private Optional<UploadPartDto> toPart(String sessionId, BaseFileMetadataDto metadata) {
+    var userMetadata = metadata.getUserMetadata();
+    var partNumber = userMetadata == null ? null : userMetadata.get(PART_HEADER);
+    if (partNumber == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(UploadPartDto.builder()
+          .partNumber(Integer.parseInt(partNumber))
+          .size(metadata.getContentLength())
+          .build());
+    } catch (NumberFormatException e) {
+      log.warn("Skipped object with invalid part number {} in upload session {}", partNumber,
+          sessionId);
+      return Optional.empty();
+    }
+  }
+
+  private Optional<Long> createdAtOf(Map<String, String> sessionMetadata) {
+    var createdAt = sessionMetadata.get(CREATED_AT_HEADER);
+    try {
+      return Optional.of(Long.parseLong(createdAt));
+    } catch (NumberFormatException e) {
+      log.warn("Skipped upload session {} with invalid start time {}",
+          sessionMetadata.get(SESSION_HEADER), createdAt);
+      return Optional.empty();
+    }
+  }
+
+  private void removeSession(String sessionId) {
+    var keys = repository.getKeys(sessionPrefix(sessionId));
+    if (!keys.isEmpty()) {
+      repository.delete(keys);
+    }
+  }
+
+  private Enumeration<InputStream> openParts(String sessionId, List<UploadPartDto> parts) {
+    var iterator = parts.iterator();
+    return new Enumeration<>() {
+      @Override
+      public boolean hasMoreElements() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public InputStream nextElement() {
+        var partKey = partKey(sessionId, iterator.next().getPartNumber());
+        return repository.get(partKey)
+            .orElseThrow(() -> new IllegalStateException(
+                String.format("Upload part %s was removed", partKey)))
+            .getContent();
+      }
+    };
+  }
+
+  private String sessionPrefix(String sessionId) {
+    return sessionsPrefix + sessionId + "/";
+  }
+
+  private String sessionKey(String sessionId) {
+    return sessionPrefix(sessionId) + SESSION_OBJECT;
+  }
+
+  private String partKey(String sessionId, int partNumber) {
+    return sessionPrefix(sessionId) + String.format(PART_FORMAT, partNumber);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import com.epam.digital.data.platform.storage.file.dto.ConcurrencyLimitStatsDto;
+import com.epam.digital.data.platform.storage.file.exception.StorageOverloadedException;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import lombok.Builder;
+
+/**
+ * The limiter of concurrent calls with additive increase, multiplicative decrease of the limit.
+ * The limit grows by one per limit of calls that complete within {@code latencyTolerance} of the
+ * lowest observed latency while the limit is in use, and shrinks by {@code backoffRatio} after
+ * slower or failed calls. The lowest latency is re-measured every {@value #MIN_LATENCY_WINDOW}
+ * calls to follow changes of the storage.
+ * <p>
+ * Latency of calls that transfer file content or handle a batch of keys depends on the content
+ * size or the batch size, so such calls are made with {@link #callUnmeasured(Supplier)} and
+ * shrink the limit on failures only.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private static final int MIN_LATENCY_WINDOW = 1000;
+
+  private final String name;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+  private final long maxQueueTimeNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private double limit;
+  private int inFlight;
+  private long minLatencyNanos = Long.MAX_VALUE;
+  private long windowMinLatencyNanos = Long.MAX_VALUE;
+  private int windowSamples;
+
+  private final LongAdder completedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+
+  @Builder
+  public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+      double backoffRatio, double latencyTolerance, Duration maxQueueTime) {
+    this.name = name;
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.backoffRatio = backoffRatio;
+    this.latencyTolerance = latencyTolerance;
+    this.maxQueueTimeNanos = maxQueueTime == null ? 0 : maxQueueTime.toNanos();
+    this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+  }
+
+  /**
+   * Call the operation within the limit
+   *
+   * @throws StorageOverloadedException if the limit is not released within max queue time
+   */
+  public <T> T call(Supplier<T> operation) {
+    return call(operation, true);
+  }
+
+  public void run(Runnable operation) {
+    call(() -> {
+      operation.run();
+      return null;
+    });
+  }
+
+  /**
+   * Call the operation whose latency depends on its size within the limit, e.g. a content
+   * transfer or a batch, its latency is not compared with the lowest latency
+   *
+   * @throws StorageOverloadedException if the limit is not released within max queue time
+   */
+  public <T> T callUnmeasured(Supplier<T> operation) {
+    return call(operation, false);
+  }
+
+  public void runUnmeasured(Runnable operation) {
+    callUnmeasured(() -> {
+      operation.run();
+      return null;
+    });
+  }
+
+  private <T> T call(Supplier<T> operation, boolean measured) {
+    var saturated = acquire();
+    var startedAt = System.nanoTime();
+    var succeeded = false;
+    try {
+      var result = operation.get();
+      succeeded = true;
+      return result;
+    } finally {
+      release(System.nanoTime() - startedAt, succeeded, saturated, measured);
+    }
+  }
+
+  public ConcurrencyLimitStatsDto getStats() {
+    lock.lock();
+    try {
+      return ConcurrencyLimitStatsDto.builder()
+          .limit((int) limit)
+          .inFlight(inFlight)
+          .minLatency(minLatencyNanos == Long.MAX_VALUE ? null : Duration.ofNanos(minLatencyNanos))
+          .completedCount(completedCount.sum())
+          .failedCount(failedCount.sum())
+          .rejectedCount(rejectedCount.sum())
+          .build();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean acquire() {
+    lock.lock();
+    try {
+      var remainingNanos = maxQueueTimeNanos;
+      while (inFlight >= (int) limit) {
+        if (remainingNanos <= 0) {
+          rejectedCount.increment();
+          throw new StorageOverloadedException(name, (int) limit);
+        }
+        remainingNanos = released.awaitNanos(remainingNanos);
+      }
+      inFlight++;
+      return inFlight * 2 >= (int) limit;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejectedCount.increment();
+      throw new StorageOverloadedException(name, (int) limit);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release(long latencyNanos, boolean succeeded, boolean saturated,
+      boolean measured) {
+    lock.lock();
+    try {
+      inFlight--;
+      if (succeeded) {
+        completedCount.increment();
+      } else {
+        failedCount.increment();
+      }
+      if (succeeded && measured) {
+        updateMinLatency(latencyNanos);
+      }
+      if (!succeeded || measured && latencyNanos > minLatencyNanos * latencyTolerance) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+      } else if (saturated) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void updateMinLatency(long latencyNanos) {
+    minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+    windowMinLatencyNanos = Math.min(windowMinLatencyNanos, latencyNanos);
+    if (++windowSamples >= MIN_LATENCY_WINDOW) {
+      minLatencyNanos = windowMinLatencyNanos;
+      windowMinLatencyNanos = Long.MAX_VALUE;
+      windowSamples = 0;
+    }
+  }
+}
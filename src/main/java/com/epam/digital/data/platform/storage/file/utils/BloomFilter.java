@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+/**
+ * The Bloom filter of strings. Answers whether a value might have been added or definitely was
+ * not. The filter is sized for the expected number of insertions and false positive probability.
+ */
+public class BloomFilter {
+
+  private final long[] bits;
+  private final int bitCount;
+  private final int hashCount;
+  private final int capacity;
+  private int size;
+
+  public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+    var insertions = Math.max(1, expectedInsertions);
+    var optimalBits = Math.ceil(
+        -insertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+    this.bitCount = (int) Math.min(Integer.MAX_VALUE - Long.SIZE, Math.max(Long.SIZE, optimalBits));
+    this.bits = new long[(bitCount + Long.SIZE - 1) / Long.SIZE];
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / insertions * Math.log(2)));
+    this.capacity = insertions;
+  }
+
+  public synchronized void add(String value) {
+    var hash = hash(value);
+    var first = (int) hash;
+    var second = (int) (hash >>> 32);
+    for (var i = 0; i < hashCount; i++) {
+      var index = indexOf(first + i * second);
+      bits[index >>> 6] |= 1L << index;
+    }
+    size++;
+  }
+
+  public synchronized boolean mightContain(String value) {
+    var hash = hash(value);
+    var first = (int) hash;
+    var second = (int) (hash >>> 32);
+    for (var i = 0; i < hashCount; i++) {
+      var index = indexOf(first + i * second);
+      if ((bits[index >>> 6] & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return number of added values
+   */
+  public synchronized int getSize() {
+    return size;
+  }
+
+  /**
+   * @return number of insertions the filter was sized for
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getMemoryBytes() {
+    return (long) bits.length * Long.BYTES;
+  }
+
+  private int indexOf(int combinedHash) {
+    return (combinedHash < 0 ? ~combinedHash : combinedHash) % bitCount;
+  }
+
+  private static long hash(String value) {
+    var hash = 0xcbf29ce484222325L;
+    for (var i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import com.epam.digital.data.platform.storage.file.dto.BufferPoolStatsDto;
+import com.epam.digital.data.platform.storage.file.exception.BufferPoolExhaustedException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The pool of reusable heap byte buffers for copying file content through arrays. Buffers are
+ * allocated in size classes of powers of two from 4 KiB to 16 MiB, larger buffers are allocated
+ * on demand and are not pooled. Released buffers are kept up to {@code maxPooledBytes}, extra
+ * buffers are left to the garbage collector.
+ * <p>
+ * Buffers in use and pooled buffers together are limited by {@code maxMemoryBytes}. When the
+ * limit is reached, pooled buffers of other sizes are dropped first, then the caller waits up to
+ * {@code maxWait} for released buffers and fails with {@link BufferPoolExhaustedException}. Zero
+ * wait fails fast, non-positive limit means no limit.
+ * <p>
+ * Buffers in use are tracked, so a buffer released twice or not taken from the pool is rejected
+ * instead of breaking the memory accounting.
+ */
+public class BufferPool {
+
+  private static final int MIN_CLASS_SHIFT = 12;
+  private static final int MAX_CLASS_SHIFT = 24;
+  private static final int CLASS_COUNT = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private static final BufferPool DEFAULT = withLimits(256L * 1024 * 1024, 32L * 1024 * 1024,
+      Duration.ofSeconds(10));
+
+  private final int bufferSize;
+  private final long maxMemoryBytes;
+  private final long maxPooledBytes;
+  private final long maxWaitNanos;
+
+  private final List<Queue<ByteBuffer>> buffers = newQueues();
+  private final Set<ByteBuffer> inUse =
+      Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+  private final AtomicLong allocatedBytes = new AtomicLong();
+  private final AtomicLong pooledBytes = new AtomicLong();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  private final LongAdder acquireCount = new LongAdder();
+  private final LongAdder allocationCount = new LongAdder();
+  private final LongAdder waitCount = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder evictedCount = new LongAdder();
+
+  /**
+   * @param bufferSize     size of buffers taken by {@link #acquire()}
+   * @param maxMemoryBytes max size of buffers in use and pooled, no limit if not positive
+   * @param maxPooledBytes max size of pooled buffers
+   * @param maxWait        max time to wait for released buffers when the limit is reached
+   */
+  public BufferPool(int bufferSize, long maxMemoryBytes, long maxPooledBytes, Duration maxWait) {
+    this.bufferSize = bufferSize;
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.maxPooledBytes = maxPooledBytes;
+    this.maxWaitNanos = maxWait == null ? 0 : maxWait.toNanos();
+  }
+
+  /**
+   * Create a pool of default buffers with the specified memory limits
+   *
+   * @param maxMemoryBytes max size of buffers in use and pooled, no limit if not positive
+   * @param maxPooledBytes max size of pooled buffers
+   * @param maxWait        max time to wait for released buffers when the limit is reached
+   */
+  public static BufferPool withLimits(long maxMemoryBytes, long maxPooledBytes,
+      Duration maxWait) {
+    return new BufferPool(DEFAULT_BUFFER_SIZE, maxMemoryBytes, maxPooledBytes, maxWait);
+  }
+
+  /**
+   * @return pool shared by repositories and services that are not configured with own pool
+   */
+  public static BufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Take a cleared buffer of the pool buffer size
+   *
+   * @return buffer backed by an array that must be returned with {@link #release(ByteBuffer)}
+   * @throws BufferPoolExhaustedException if the memory limit is reached
+   */
+  public ByteBuffer acquire() {
+    return acquire(bufferSize);
+  }
+
+  /**
+   * Take a cleared buffer with at least the specified capacity
+   *
+   * @param size min capacity of the buffer
+   * @return buffer backed by an array that must be returned with {@link #release(ByteBuffer)}
+   * @throws BufferPoolExhaustedException if the memory limit is reached
+   */
+  public ByteBuffer acquire(int size) {
+    acquireCount.increment();
+    var capacity = capacityOf(size);
+    var sizeClass = sizeClassOf(capacity);
+    var buffer = sizeClass >= 0 ? poll(sizeClass) : null;
+    if (buffer == null) {
+      buffer = reserve(capacity) ? allocate(capacity) : acquireSlow(capacity, sizeClass);
+    }
+    inUse.add(buffer);
+    return buffer;
+  }
+
+  /**
+   * Return the buffer to the pool
+   *
+   * @param buffer buffer taken from this pool
+   * @throws IllegalArgumentException if the buffer is not in use, i.e. it is already released or
+   *                                  it was not taken from this pool
+   */
+  public void release(ByteBuffer buffer) {
+    if (!inUse.remove(buffer)) {
+      throw new IllegalArgumentException(
+          "Buffer is already released or was not taken from the pool");
+    }
+    var capacity = buffer.capacity();
+    var sizeClass = sizeClassOf(capacity);
+    if (sizeClass >= 0 && pooledBytes.addAndGet(capacity) <= maxPooledBytes) {
+      buffers.get(sizeClass).offer(buffer);
+    } else {
+      if (sizeClass >= 0) {
+        pooledBytes.addAndGet(-capacity);
+      }
+      allocatedBytes.addAndGet(-capacity);
+    }
+    if (waiters.get() > 0) {
+      lock.lock();
+      try {
+        released.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * @return memory and wait counters of the pool
+   */
+  public BufferPoolStatsDto getStats() {
+    var allocated = allocatedBytes.get();
+    var pooled = pooledBytes.get();
+    return BufferPoolStatsDto.builder()
+        .maxMemoryBytes(maxMemoryBytes)
+        .allocatedBytes(allocated)
+        .inUseBytes(allocated - pooled)
+        .pooledBytes(pooled)
+        .acquireCount(acquireCount.sum())
+        .allocationCount(allocationCount.sum())
+        .waitCount(waitCount.sum())
+        .waitTime(Duration.ofNanos(waitNanos.sum()))
+        .rejectedCount(rejectedCount.sum())
+        .evictedCount(evictedCount.sum())
+        .build();
+  }
+
+  private ByteBuffer acquireSlow(int capacity, int sizeClass) {
+    var startedAt = System.nanoTime();
+    var deadline = startedAt + maxWaitNanos;
+    var waited = false;
+    waiters.incrementAndGet();
+    lock.lock();
+    try {
+      while (true) {
+        var buffer = sizeClass >= 0 ? poll(sizeClass) : null;
+        if (buffer != null) {
+          return buffer;
+        }
+        evict(capacity);
+        if (reserve(capacity)) {
+          return allocate(capacity);
+        }
+        var remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          rejectedCount.increment();
+          throw new BufferPoolExhaustedException(capacity, maxMemoryBytes);
+        }
+        waited = true;
+        released.awaitNanos(remaining);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejectedCount.increment();
+      throw new BufferPoolExhaustedException(capacity, maxMemoryBytes);
+    } finally {
+      lock.unlock();
+      waiters.decrementAndGet();
+      if (waited) {
+        waitCount.increment();
+        waitNanos.add(System.nanoTime() - startedAt);
+      }
+    }
+  }
+
+  private ByteBuffer poll(int sizeClass) {
+    var buffer = buffers.get(sizeClass).poll();
+    if (buffer == null) {
+      return null;
+    }
+    pooledBytes.addAndGet(-buffer.capacity());
+    return buffer.clear();
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    allocationCount.increment();
+    return ByteBuffer.allocate(capacity);
+  }
+
+  private boolean reserve(int capacity) {
+    var limit = maxMemoryBytes;
+    if (limit <= 0) {
+      allocatedBytes.addAndGet(capacity);
+      return true;
+    }
+    var current = allocatedBytes.get();
+    while (current + capacity <= limit) {
+      if (allocatedBytes.compareAndSet(current, current + capacity)) {
+        return true;
+      }
+      current = allocatedBytes.get();
+    }
+    return false;
+  }
+
+  /**
+   * Drop pooled buffers until the requested capacity fits into the limits
+   */
+  private void evict(long capacity) {
+    for (var sizeClass = CLASS_COUNT - 1; sizeClass >= 0; sizeClass--) {
+      while (isOverLimit(capacity)) {
+        var buffer = buffers.get(sizeClass).poll();
+        if (buffer == null) {
+          break;
+        }
+        pooledBytes.addAndGet(-buffer.capacity());
+        allocatedBytes.addAndGet(-buffer.capacity());
+        evictedCount.increment();
+      }
+    }
+  }
+
+  private boolean isOverLimit(long capacity) {
+    var limit = maxMemoryBytes;
+    return limit > 0 && allocatedBytes.get() + capacity > limit
+        || pooledBytes.get() > maxPooledBytes;
+  }
+
+  private static int capacityOf(int size) {
+    if (size > 1 << MAX_CLASS_SHIFT) {
+      return size;
+    }
+    var capacity = Integer.highestOneBit(Math.max(size, 1));
+    capacity = capacity < size ? capacity << 1 : capacity;
+    return Math.max(capacity, 1 << MIN_CLASS_SHIFT);
+  }
+
+  private static int sizeClassOf(int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      return -1;
+    }
+    var sizeClass = Integer.numberOfTrailingZeros(capacity) - MIN_CLASS_SHIFT;
+    return sizeClass >= 0 && sizeClass < CLASS_COUNT ? sizeClass : -1;
+  }
+
+  private static List<Queue<ByteBuffer>> newQueues() {
+    var queues = new ArrayList<Queue<ByteBuffer>>(CLASS_COUNT);
+    for (var i = 0; i < CLASS_COUNT; i++) {
+      queues.add(new ConcurrentLinkedQueue<>());
+    }
+    return queues;
+  }
+
+}
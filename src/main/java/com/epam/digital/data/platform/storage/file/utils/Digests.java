@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for content checksums stored as lowercase hex digests
+ */
+public final class Digests {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private Digests() {
+  }
+
+  /**
+   * @throws IllegalArgumentException if the algorithm is not supported
+   */
+  public static MessageDigest newMessageDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException(
+          String.format("Unsupported digest algorithm %s", algorithm), e);
+    }
+  }
+
+  public static String toHex(byte[] digest) {
+    var hex = new char[digest.length * 2];
+    for (var i = 0; i < digest.length; i++) {
+      hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+      hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+    }
+    return new String(hex);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * The file content read to the end with its length and digest computed on the way. Content is
+ * kept in memory up to {@code memoryThreshold} bytes and in a temporary file otherwise, the file
+ * is deleted on {@link #close()}.
+ */
+public class SpooledContent implements Closeable {
+
+  private static final int CHUNK_SIZE = 8 * 1024;
+
+  private final byte[] bytes;
+  private final Path file;
+  private final long length;
+  private final String digest;
+
+  private SpooledContent(byte[] bytes, Path file, long length, String digest) {
+    this.bytes = bytes;
+    this.file = file;
+    this.length = length;
+    this.digest = digest;
+  }
+
+  /**
+   * Read the content to the end
+   *
+   * @param content         stream to read, it is not closed
+   * @param memoryThreshold max size of content kept in memory
+   * @param digestAlgorithm name of {@link MessageDigest} algorithm
+   * @param directory       directory of temporary files, default if null
+   * @return spooled content that must be closed
+   */
+  public static SpooledContent spool(InputStream content, int memoryThreshold,
+      String digestAlgorithm, Path directory) throws IOException {
+    return spool(content, memoryThreshold, digestAlgorithm, directory, BufferPool.getDefault());
+  }
+
+  /**
+   * Read the content to the end
+   *
+   * @param content         stream to read, it is not closed
+   * @param memoryThreshold max size of content kept in memory
+   * @param digestAlgorithm name of {@link MessageDigest} algorithm
+   * @param directory       directory of temporary files, default if null
+   * @param pool            pool of the read buffer
+   * @return spooled content that must be closed
+   */
+  public static SpooledContent spool(InputStream content, int memoryThreshold,
+      String digestAlgorithm, Path directory, BufferPool pool) throws IOException {
+    var messageDigest = Digests.newMessageDigest(digestAlgorithm);
+    var memory = new ByteArrayOutputStream();
+    OutputStream target = memory;
+    Path file = null;
+    var buffer = pool.acquire(CHUNK_SIZE);
+    var chunk = buffer.array();
+    var offset = buffer.arrayOffset();
+    var length = 0L;
+    try {
+      int count;
+      while ((count = content.read(chunk, offset, CHUNK_SIZE)) != -1) {
+        messageDigest.update(chunk, offset, count);
+        length += count;
+        if (file == null && length > memoryThreshold) {
+          file = directory == null ? Files.createTempFile("spooled-", ".tmp")
+              : Files.createTempFile(directory, "spooled-", ".tmp");
+          target = Files.newOutputStream(file);
+          memory.writeTo(target);
+          memory = null;
+        }
+        target.write(chunk, offset, count);
+      }
+      target.close();
+    } catch (IOException | RuntimeException e) {
+      target.close();
+      if (file != null) {
+        Files.deleteIfExists(file);
+      }
+      throw e;
+    } finally {
+      pool.release(buffer);
+    }
+    var bytes = file == null ? memory.toByteArray() : null;
+    return new SpooledContent(bytes, file, length, Digests.toHex(messageDigest.digest()));
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return lowercase hex digest of the content
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  public InputStream openStream() throws IOException {
+    return file == null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (file != null) {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The utility class for copying file content with pooled buffers. Neither source nor target are
+ * closed.
+ * <p>
+ * Plain streams are copied through arrays of pooled heap buffers, wrapping them into channels
+ * would copy every chunk once more through a channel's own array.
+ */
+public final class StreamTransfer {
+
+  private StreamTransfer() {
+  }
+
+  /**
+   * Copy the rest of the stream to the channel. File streams are copied with
+   * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}, the rest is
+   * copied through a buffer if it stops making progress, e.g. if the file changes.
+   *
+   * @return number of copied bytes
+   */
+  public static long transfer(InputStream source, WritableByteChannel target, BufferPool pool)
+      throws IOException {
+    if (!(source instanceof FileInputStream)) {
+      return copy(source, target, pool);
+    }
+    var channel = ((FileInputStream) source).getChannel();
+    var transferred = transferFile(channel, target);
+    if (channel.position() >= channel.size()) {
+      return transferred;
+    }
+    return transferred + copy(source, target, pool);
+  }
+
+  private static long copy(InputStream source, WritableByteChannel target, BufferPool pool)
+      throws IOException {
+    var buffer = pool.acquire();
+    try {
+      var array = buffer.array();
+      var offset = buffer.arrayOffset();
+      var transferred = 0L;
+      int read;
+      while ((read = source.read(array, offset, buffer.capacity())) >= 0) {
+        buffer.position(0).limit(read);
+        while (buffer.hasRemaining()) {
+          transferred += target.write(buffer);
+        }
+      }
+      return transferred;
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  /**
+   * Copy the rest of the input stream to the output stream
+   *
+   * @return number of copied bytes
+   */
+  public static long transfer(InputStream source, OutputStream target, BufferPool pool)
+      throws IOException {
+    if (target instanceof FileOutputStream) {
+      return transfer(source, ((FileOutputStream) target).getChannel(), pool);
+    }
+    var buffer = pool.acquire();
+    try {
+      var array = buffer.array();
+      var offset = buffer.arrayOffset();
+      var transferred = 0L;
+      int read;
+      while ((read = source.read(array, offset, buffer.capacity())) >= 0) {
+        target.write(array, offset, read);
+        transferred += read;
+      }
+      return transferred;
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  private static long transferFile(FileChannel channel, WritableByteChannel target)
+      throws IOException {
+    var position = channel.position();
+    var size = channel.size();
+    while (position < size) {
+      var transferred = channel.transferTo(position, size - position, target);
+      if (transferred <= 0) {
+        break;
+      }
+      position += transferred;
+    }
+    var transferred = position - channel.position();
+    channel.position(position);
+    return transferred;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * The input stream that takes a token from the bucket for every read byte
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+  private final TokenBucket bucket;
+  private final LongConsumer throttledNanosConsumer;
+
+  /**
+   * @param in                     stream to read from
+   * @param bucket                 bucket of bytes
+   * @param throttledNanosConsumer receives time spent waiting for tokens
+   */
+  public ThrottledInputStream(InputStream in, TokenBucket bucket,
+      LongConsumer throttledNanosConsumer) {
+    super(in);
+    this.bucket = bucket;
+    this.throttledNanosConsumer = throttledNanosConsumer;
+  }
+
+  @Override
+  public int read() throws IOException {
+    var result = super.read();
+    if (result >= 0) {
+      throttle(1);
+    }
+    return result;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    var count = super.read(b, off, len);
+    if (count > 0) {
+      throttle(count);
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    var skipped = super.skip(n);
+    if (skipped > 0) {
+      throttle(skipped);
+    }
+    return skipped;
+  }
+
+  private void throttle(long bytes) {
+    var throttledNanos = bucket.acquire(bytes);
+    if (throttledNanos > 0) {
+      throttledNanosConsumer.accept(throttledNanos);
+    }
+  }
+}
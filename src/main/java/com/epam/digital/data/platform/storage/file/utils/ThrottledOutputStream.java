@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * The output stream that takes a token from the bucket for every written byte
+ */
+public class ThrottledOutputStream extends FilterOutputStream {
+
+  private final TokenBucket bucket;
+  private final LongConsumer throttledNanosConsumer;
+
+  /**
+   * @param out                    stream to write to
+   * @param bucket                 bucket of bytes
+   * @param throttledNanosConsumer receives time spent waiting for tokens
+   */
+  public ThrottledOutputStream(OutputStream out, TokenBucket bucket,
+      LongConsumer throttledNanosConsumer) {
+    super(out);
+    this.bucket = bucket;
+    this.throttledNanosConsumer = throttledNanosConsumer;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    throttle(1);
+    out.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    throttle(len);
+    out.write(b, off, len);
+  }
+
+  private void throttle(long bytes) {
+    var throttledNanos = bucket.acquire(bytes);
+    if (throttledNanos > 0) {
+      throttledNanosConsumer.accept(throttledNanos);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The token bucket that refills at a fixed rate up to its capacity. Callers may take more tokens
+ * than available, the debt is paid by waiting, so a single large request is delayed rather than
+ * rejected.
+ */
+public class TokenBucket {
+
+  private final double tokensPerNano;
+  private final double capacity;
+  private double available;
+  private long updatedAt;
+
+  public TokenBucket(double tokensPerSecond, double capacity) {
+    this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.capacity = capacity;
+    this.available = capacity;
+    this.updatedAt = System.nanoTime();
+  }
+
+  /**
+   * Take tokens and wait until they are paid off
+   *
+   * @param tokens number of tokens to take
+   * @return nanoseconds spent waiting
+   */
+  public long acquire(long tokens) {
+    var waitNanos = reserve(tokens);
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return waitNanos;
+  }
+
+  /**
+   * Take tokens without waiting
+   *
+   * @param tokens number of tokens to take
+   * @return nanoseconds the caller has to wait before using the tokens
+   */
+  public synchronized long reserve(long tokens) {
+    var now = System.nanoTime();
+    available = Math.min(capacity, available + (now - updatedAt) * tokensPerNano);
+    updatedAt = now;
+    available -= tokens;
+    return available >= 0 ? 0 : (long) Math.ceil(-available / tokensPerNano);
+  }
+
+  /**
+   * Take tokens only if they are available now
+   *
+   * @param tokens number of tokens to take
+   * @return true if tokens are taken, false if none are taken
+   */
+  public synchronized boolean tryAcquire(long tokens) {
+    var now = System.nanoTime();
+    available = Math.min(capacity, available + (now - updatedAt) * tokensPerNano);
+    updatedAt = now;
+    if (available < tokens) {
+      return false;
+    }
+    available -= tokens;
+    return true;
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import com.epam.digital.data.platform.storage.file.exception.ChecksumMismatchException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * The input stream that computes the digest of read content and compares it with the expected
+ * checksum at the end of the stream. A mismatch is thrown as {@link ChecksumMismatchException}
+ * from the read that reaches the end. Skipped bytes are read and digested as well.
+ */
+public class VerifyingInputStream extends FilterInputStream {
+
+  private static final int SKIP_BUFFER_SIZE = 8 * 1024;
+
+  private final String key;
+  private final String expectedChecksum;
+  private final MessageDigest digest;
+  private final Listener listener;
+  private final BufferPool bufferPool;
+  private long length;
+  private long digestNanos;
+  private boolean verified;
+
+  public VerifyingInputStream(InputStream in, String key, String expectedChecksum,
+      MessageDigest digest, Listener listener) {
+    this(in, key, expectedChecksum, digest, listener, BufferPool.getDefault());
+  }
+
+  public VerifyingInputStream(InputStream in, String key, String expectedChecksum,
+      MessageDigest digest, Listener listener, BufferPool bufferPool) {
+    super(in);
+    this.key = key;
+    this.expectedChecksum = expectedChecksum;
+    this.digest = digest;
+    this.listener = listener;
+    this.bufferPool = bufferPool;
+  }
+
+  @Override
+  public int read() throws IOException {
+    var result = super.read();
+    if (result < 0) {
+      verify();
+    } else {
+      var startedAt = System.nanoTime();
+      digest.update((byte) result);
+      digestNanos += System.nanoTime() - startedAt;
+      length++;
+    }
+    return result;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    var count = super.read(b, off, len);
+    if (count < 0) {
+      verify();
+    } else if (count > 0) {
+      var startedAt = System.nanoTime();
+      digest.update(b, off, count);
+      digestNanos += System.nanoTime() - startedAt;
+      length += count;
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    var buffer = bufferPool.acquire((int) Math.min(n, SKIP_BUFFER_SIZE));
+    try {
+      var skipped = 0L;
+      while (skipped < n) {
+        var count = read(buffer.array(), buffer.arrayOffset(),
+            (int) Math.min(buffer.capacity(), n - skipped));
+        if (count < 0) {
+          break;
+        }
+        skipped += count;
+      }
+      return skipped;
+    } finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("Verifying stream does not support reset");
+  }
+
+  private void verify() throws ChecksumMismatchException {
+    if (verified) {
+      return;
+    }
+    verified = true;
+    var actualChecksum = Digests.toHex(digest.digest());
+    var matched = actualChecksum.equalsIgnoreCase(expectedChecksum);
+    listener.onVerified(matched, length, digestNanos);
+    if (!matched) {
+      throw new ChecksumMismatchException(key, expectedChecksum, actualChecksum);
+    }
+  }
+
+  /**
+   * Receives the result of verification when the end of the stream is reached
+   */
+  @FunctionalInterface
+  public interface Listener {
+
+    void onVerified(boolean matched, long length, long digestNanos);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.integration.ceph.service.CephService;
+import com.epam.digital.data.platform.storage.file.config.WarmUpProperties;
+import java.time.Duration;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CephServiceWarmUpTrackerTest {
+
+  private static final String BUCKET = "bucket";
+
+  @Mock
+  private CephService cephService;
+
+  @Test
+  void shouldBecomeReadyAfterFailedWarmUpIsRepeated() throws InterruptedException {
+    when(cephService.getKeys(BUCKET, CephServiceWarmUp.PROBE_PREFIX))
+        .thenThrow(new IllegalStateException("storage is down"))
+        .thenReturn(Set.of());
+    var properties = new WarmUpProperties();
+    properties.setEnabled(true);
+    properties.setConnections(1);
+    properties.setTimeout(Duration.ofSeconds(5));
+    properties.setRetryInterval(Duration.ofMillis(10));
+    var tracker = new CephServiceWarmUpTracker();
+
+    tracker.warmUp(cephService, BUCKET, properties);
+
+    for (var i = 0; i < 500 && !tracker.isReady(); i++) {
+      Thread.sleep(10);
+    }
+    assertThat(tracker.isReady()).isTrue();
+    assertThat(tracker.getResult()).hasValueSatisfying(
+        result -> assertThat(result.getOpenedConnections()).isEqualTo(1));
+  }
+
+  @Test
+  void shouldNotBeReadyUntilWarmUpCompletes() {
+    var tracker = new CephServiceWarmUpTracker();
+    assertThat(tracker.isReady()).isTrue();
+
+    var properties = new WarmUpProperties();
+    properties.setRetryInterval(Duration.ofSeconds(30));
+    lenient().when(cephService.getKeys(BUCKET, CephServiceWarmUp.PROBE_PREFIX)).thenAnswer(invocation -> {
+      Thread.sleep(200);
+      return Set.of();
+    });
+    tracker.warmUp(cephService, BUCKET, properties);
+
+    assertThat(tracker.isReady()).isFalse();
+  }
+}
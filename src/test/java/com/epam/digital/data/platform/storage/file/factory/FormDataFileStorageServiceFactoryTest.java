@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.integration.ceph.factory.CephS3Factory;
+import com.epam.digital.data.platform.integration.ceph.service.CephService;
+import com.epam.digital.data.platform.storage.file.config.FileDataCephStorageConfiguration;
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto;
+import com.epam.digital.data.platform.storage.file.service.FileChangeTransport;
+import com.epam.digital.data.platform.storage.file.service.InMemoryFileChangeTransport;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FormDataFileStorageServiceFactoryTest {
+
+  private FormDataFileStorageServiceFactory factory;
+  private FileDataCephStorageConfiguration config;
+  private CephService cephService;
+
+  @BeforeEach
+  void init() {
+    var cephFactory = mock(CephS3Factory.class);
+    cephService = mock(CephService.class);
+    when(cephFactory.createCephService(any(), any(), any())).thenReturn(cephService);
+    factory = new FormDataFileStorageServiceFactory(cephFactory);
+    config = new FileDataCephStorageConfiguration();
+    config.setHttpEndpoint("http://localhost");
+    config.setBucket("bucket");
+    config.getKeyFilter().setEnabled(true);
+  }
+
+  @Test
+  void shouldNotUseKeyFilterWithoutTransportToOtherNodes() {
+    var withoutTransport = factory.fromDataFileStorageService(config);
+    var withLocalTransport = factory.fromDataFileStorageService(config,
+        new InMemoryFileChangeTransport());
+
+    assertThat(withoutTransport.getKeyFilterStats()).isEmpty();
+    assertThat(withLocalTransport.getKeyFilterStats()).isEmpty();
+  }
+
+  @Test
+  void shouldUseKeyFilterWithTransportToOtherNodes() {
+    var service = factory.fromDataFileStorageService(config, new FileChangeTransport() {
+      @Override
+      public void send(FileChangeEventDto event) {
+      }
+
+      @Override
+      public void subscribe(Consumer<FileChangeEventDto> receiver) {
+      }
+    });
+
+    assertThat(service.getKeyFilterStats()).isPresent();
+  }
+
+  @Test
+  void shouldUseKeyFilterOnSingleNode() {
+    config.getKeyFilter().setSingleNode(true);
+
+    var service = factory.fromDataFileStorageService(config);
+
+    assertThat(service.getKeyFilterStats()).isPresent();
+  }
+
+  @Test
+  void shouldNotTrackUsageWithoutTransportToOtherNodes() {
+    config.getUsage().setEnabled(true);
+
+    factory.fromDataFileStorageService(config).getUsage("pid");
+
+    verify(cephService, never()).getMetadata(anyString(), anySet());
+  }
+
+  @Test
+  void shouldTrackUsageOnSingleNode() {
+    config.getUsage().setEnabled(true);
+    config.getUsage().setSingleNode(true);
+
+    factory.fromDataFileStorageService(config).getUsage("pid");
+
+    verify(cephService).getMetadata(anyString(), anySet());
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingFormDataFileRepositoryTest {
+
+  private final String key = "process/procInstId/fileId";
+
+  @Mock
+  private FormDataFileRepository delegate;
+  private CoalescingFormDataFileRepository repository;
+
+  @BeforeEach
+  void init() {
+    repository = CoalescingFormDataFileRepository.builder()
+        .delegate(delegate)
+        .maxBufferSize(16)
+        .build();
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldShareSingleLoadBetweenConcurrentReaders() {
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    when(delegate.get(key)).thenAnswer(invocation -> {
+      started.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return Optional.of(file("content"));
+    });
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      var leader = executor.submit(() -> repository.get(key));
+      started.await(5, TimeUnit.SECONDS);
+      var follower = Executors.newSingleThreadExecutor();
+      try {
+        var followerResult = follower.submit(() -> repository.get(key));
+        TimeUnit.MILLISECONDS.sleep(100);
+        release.countDown();
+
+        var first = leader.get(5, TimeUnit.SECONDS).orElseThrow();
+        var second = followerResult.get(5, TimeUnit.SECONDS).orElseThrow();
+        assertThat(new String(first.getContent().readAllBytes())).isEqualTo("content");
+        assertThat(new String(second.getContent().readAllBytes())).isEqualTo("content");
+        verify(delegate, times(1)).get(key);
+      } finally {
+        follower.shutdownNow();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldNotJoinReadStartedBeforeWrite() {
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    when(delegate.get(key))
+        .thenAnswer(invocation -> {
+          started.countDown();
+          release.await(5, TimeUnit.SECONDS);
+          return Optional.of(file("old"));
+        })
+        .thenReturn(Optional.of(file("new")));
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var before = executor.submit(() -> repository.get(key));
+      started.await(5, TimeUnit.SECONDS);
+      repository.put(key, file("new"));
+      var after = executor.submit(() -> repository.get(key));
+      TimeUnit.MILLISECONDS.sleep(100);
+      release.countDown();
+
+      var result = after.get(5, TimeUnit.SECONDS).orElseThrow();
+      assertThat(new String(result.getContent().readAllBytes())).isEqualTo("new");
+      assertThat(before.get(5, TimeUnit.SECONDS)).isPresent();
+      verify(delegate, times(2)).get(key);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldCloseContentWhenBufferingFails() {
+    var content = mock(InputStream.class);
+    when(content.readNBytes(anyInt())).thenThrow(new IOException("reset"));
+    when(delegate.get(key)).thenReturn(Optional.of(FileDataDto.builder()
+        .content(content)
+        .metadata(new FileMetadataDto("text/plain", Map.of("id", "fileId")))
+        .build()));
+
+    assertThatThrownBy(() -> repository.get(key)).isInstanceOf(UncheckedIOException.class);
+
+    verify(content).close();
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldStreamContentLargerThanBuffer() {
+    when(delegate.get(key)).thenReturn(Optional.of(file("content-larger-than-buffer")));
+
+    var result = repository.get(key).orElseThrow();
+
+    assertThat(new String(result.getContent().readAllBytes()))
+        .isEqualTo("content-larger-than-buffer");
+  }
+
+  private FileDataDto file(String content) {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(content.getBytes()))
+        .metadata(new FileMetadataDto("text/plain", Map.of("id", "fileId")))
+        .build();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.utils.AdaptiveConcurrencyLimiter;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimitingFormDataFileRepositoryTest {
+
+  private final String prefix = "process/procInstId/";
+
+  @Test
+  void shouldNotDecreaseReadLimitForSlowBatches() {
+    var storage = new InMemoryFormDataFileRepository();
+    storage.put(prefix + "first", file());
+    storage.put(prefix + "second", file());
+    var readLimiter = newLimiter("read");
+    var repository = ConcurrencyLimitingFormDataFileRepository.builder()
+        .delegate(new ForwardingFormDataFileRepository(storage) {
+          @Override
+          @SneakyThrows
+          public List<FileMetadataDto> getMetadata(Set<String> keys) {
+            if (keys.size() > 1) {
+              TimeUnit.MILLISECONDS.sleep(50);
+            }
+            return super.getMetadata(keys);
+          }
+        })
+        .readLimiter(readLimiter)
+        .writeLimiter(newLimiter("write"))
+        .listLimiter(newLimiter("list"))
+        .build();
+
+    for (var i = 0; i < 3; i++) {
+      repository.getMetadata(Set.of(prefix + "first"));
+      repository.getMetadata(Set.of(prefix + "first", prefix + "second"));
+    }
+
+    assertThat(readLimiter.getStats().getLimit()).isEqualTo(8);
+  }
+
+  private AdaptiveConcurrencyLimiter newLimiter(String name) {
+    return AdaptiveConcurrencyLimiter.builder()
+        .name(name)
+        .initialLimit(8)
+        .minLimit(1)
+        .maxLimit(8)
+        .backoffRatio(0.5)
+        .latencyTolerance(1000)
+        .maxQueueTime(Duration.ZERO)
+        .build();
+  }
+
+  private FileDataDto file() {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(new byte[1]))
+        .metadata(new FileMetadataDto(1L, "text/plain", Map.of()))
+        .build();
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.amazonaws.AmazonServiceException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EndpointRouterTest {
+
+  private final Set<String> failingEndpoints = ConcurrentHashMap.newKeySet();
+  private final Set<String> slowEndpoints = ConcurrentHashMap.newKeySet();
+  private EndpointRouter<String> router;
+
+  @BeforeEach
+  void init() {
+    var endpoints = new LinkedHashMap<String, String>();
+    endpoints.put("first", "first");
+    endpoints.put("second", "second");
+    router = EndpointRouter.<String>builder()
+        .endpoints(endpoints)
+        .maxFailures(2)
+        .probeInterval(Duration.ofMillis(10))
+        .latencyDecay(0.5)
+        .probe(this::call)
+        .build();
+  }
+
+  @AfterEach
+  void close() {
+    router.close();
+  }
+
+  @Test
+  void shouldRetryFailedReadOnAnotherEndpoint() {
+    failingEndpoints.add("first");
+
+    assertThat(router.read(this::call)).isEqualTo("second");
+  }
+
+  @Test
+  void shouldFailOverWritesAfterEjection() {
+    failingEndpoints.add("first");
+
+    assertThatThrownBy(() -> router.write(this::call, false))
+        .isInstanceOf(UncheckedIOException.class);
+    assertThatThrownBy(() -> router.write(this::call, false))
+        .isInstanceOf(UncheckedIOException.class);
+
+    assertThat(router.write(this::call, false)).isEqualTo("second");
+    assertThat(router.getStats().get(0).isHealthy()).isFalse();
+  }
+
+  @Test
+  void shouldReturnEndpointAfterSuccessfulProbe() throws InterruptedException {
+    failingEndpoints.add("first");
+    router.write(this::call, true);
+    router.write(this::call, true);
+    assertThat(router.getStats().get(0).isHealthy()).isFalse();
+
+    failingEndpoints.clear();
+    router.start();
+    for (var i = 0; i < 100 && !router.getStats().get(0).isHealthy(); i++) {
+      Thread.sleep(10);
+    }
+
+    assertThat(router.getStats().get(0).isHealthy()).isTrue();
+    assertThat(router.write(this::call, false)).isEqualTo("first");
+  }
+
+  @Test
+  void shouldReadEndpointWithStaleLatencyAgain() throws InterruptedException {
+    slowEndpoints.add("first");
+    assertThat(router.read(this::call)).isEqualTo("first");
+    assertThat(router.read(this::call)).isEqualTo("second");
+
+    slowEndpoints.clear();
+    var results = new ArrayList<String>();
+    for (var i = 0; i < 30; i++) {
+      results.add(router.read(this::call));
+      Thread.sleep(1);
+    }
+
+    assertThat(results).contains("first");
+    assertThat(results.stream().filter("second"::equals).count())
+        .isGreaterThan(results.size() / 2);
+  }
+
+  @Test
+  void shouldNotRetryOrCountRequestErrors() {
+    var called = new ArrayList<String>();
+
+    assertThatThrownBy(() -> router.read(endpoint -> {
+      called.add(endpoint);
+      throw serviceException(404);
+    })).isInstanceOf(AmazonServiceException.class);
+    assertThatThrownBy(() -> router.write(endpoint -> {
+      called.add(endpoint);
+      throw new IllegalArgumentException("Invalid key");
+    }, true)).isInstanceOf(IllegalArgumentException.class);
+
+    assertThat(called).containsExactly("first", "first");
+    assertThat(router.getStats().get(0).getFailureCount()).isZero();
+  }
+
+  @Test
+  void shouldRetryServerErrorsOnAnotherEndpoint() {
+    var result = router.read(endpoint -> {
+      if (endpoint.equals("first")) {
+        throw serviceException(503);
+      }
+      return endpoint;
+    });
+
+    assertThat(result).isEqualTo("second");
+    assertThat(router.getStats().get(0).getFailureCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotMeasureLatencyOfBatchReads() {
+    slowEndpoints.add("first");
+
+    assertThat(router.read(this::call, false)).isEqualTo("first");
+
+    assertThat(router.getStats().get(0).getLatency()).isZero();
+    assertThat(router.read(this::call)).isEqualTo("first");
+    assertThat(router.getStats().get(0).getLatency()).isPositive();
+  }
+
+  private static AmazonServiceException serviceException(int statusCode) {
+    var exception = new AmazonServiceException("Status " + statusCode);
+    exception.setStatusCode(statusCode);
+    return exception;
+  }
+
+  private String call(String endpoint) {
+    if (slowEndpoints.contains(endpoint)) {
+      sleep(20);
+    }
+    if (failingEndpoints.contains(endpoint)) {
+      throw new UncheckedIOException(new IOException(endpoint + " is down"));
+    }
+    return endpoint;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
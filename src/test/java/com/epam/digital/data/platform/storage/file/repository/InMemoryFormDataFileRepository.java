@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import lombok.SneakyThrows;
+
+/**
+ * Thread-safe in-memory {@link FormDataFileRepository} for tests
+ */
+public class InMemoryFormDataFileRepository implements FormDataFileRepository {
+
+  private final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+  private final Map<String, FileMetadataDto> metadata = new ConcurrentSkipListMap<>();
+
+  /**
+   * @return stored content by key
+   */
+  public Map<String, byte[]> getObjects() {
+    return objects;
+  }
+
+  @Override
+  public Optional<FileDataDto> get(String key) {
+    return Optional.ofNullable(objects.get(key)).map(bytes -> FileDataDto.builder()
+        .content(new ByteArrayInputStream(bytes))
+        .metadata(metadata.get(key))
+        .build());
+  }
+
+  @Override
+  @SneakyThrows
+  public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+    var bytes = fileDataDto.getContent().readAllBytes();
+    var result = new FileMetadataDto((long) bytes.length,
+        fileDataDto.getMetadata().getContentType(), fileDataDto.getMetadata().getUserMetadata());
+    metadata.put(key, result);
+    objects.put(key, bytes);
+    return result;
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(Set<String> keys) {
+    return keys.stream().map(metadata::get).filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(String prefix) {
+    return new ArrayList<>(getMetadata(getKeys(prefix)));
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    return objects.keySet().stream().filter(key -> key.startsWith(prefix))
+        .collect(Collectors.toSet());
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    keys.forEach(key -> {
+      objects.remove(key);
+      metadata.remove(key);
+    });
+  }
+
+  @Override
+  public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    return get(sourceKey).map(source -> put(targetKey, source));
+  }
+
+  @Override
+  public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    var result = copy(sourceKey, targetKey, userMetadata);
+    delete(Set.of(sourceKey));
+    return result;
+  }
+}
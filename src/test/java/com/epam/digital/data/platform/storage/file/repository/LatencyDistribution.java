@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The distribution of simulated storage call latency
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+  /**
+   * @return latency of the next call
+   */
+  Duration next();
+
+  /**
+   * @return distribution without latency
+   */
+  static LatencyDistribution none() {
+    return fixed(Duration.ZERO);
+  }
+
+  /**
+   * @param latency latency of every call
+   * @return distribution of constant latency
+   */
+  static LatencyDistribution fixed(Duration latency) {
+    return () -> latency;
+  }
+
+  /**
+   * @param min min latency
+   * @param max max latency
+   * @return uniform distribution between min and max
+   */
+  static LatencyDistribution uniform(Duration min, Duration max) {
+    return () -> Duration.ofNanos(
+        ThreadLocalRandom.current().nextLong(min.toNanos(), max.toNanos() + 1));
+  }
+
+  /**
+   * Log-normal distribution, a common shape of network storage latency with a long tail
+   *
+   * @param median median latency
+   * @param p99    99th percentile latency, must be greater than median
+   * @return log-normal distribution with given median and p99
+   */
+  static LatencyDistribution logNormal(Duration median, Duration p99) {
+    var mu = Math.log(median.toNanos());
+    var sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+    return () -> Duration.ofNanos(
+        (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+  }
+
+  /**
+   * @param probability probability of a spike
+   * @param spike       latency added on spike, e.g. a GC pause or a slow OSD
+   * @return this distribution with occasional spikes
+   */
+  default LatencyDistribution withSpikes(double probability, Duration spike) {
+    return () -> ThreadLocalRandom.current().nextDouble() < probability
+        ? next().plus(spike) : next();
+  }
+}
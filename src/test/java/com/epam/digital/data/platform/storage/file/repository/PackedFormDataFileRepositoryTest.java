@@ -0,0 +1,303 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PackedFormDataFileRepositoryTest {
+
+  private final String prefix = "process/procInstId/";
+
+  private InMemoryFormDataFileRepository storage;
+  private List<String> reads;
+  private List<Set<String>> deletes;
+  private PackedFormDataFileRepository repository;
+
+  @BeforeEach
+  void init() {
+    storage = new InMemoryFormDataFileRepository();
+    reads = new CopyOnWriteArrayList<>();
+    deletes = new CopyOnWriteArrayList<>();
+    var recording = new ForwardingFormDataFileRepository(storage) {
+      @Override
+      public Optional<FileDataDto> get(String key) {
+        reads.add(key);
+        return super.get(key);
+      }
+
+      @Override
+      public void delete(Set<String> keys) {
+        deletes.add(keys);
+        super.delete(keys);
+      }
+    };
+    repository = PackedFormDataFileRepository.builder()
+        .delegate(recording)
+        .maxFileSize(8)
+        .maxSegmentSize(16)
+        .maxCachedHeads(4)
+        .build();
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldPackSmallFilesAndReadThemBack() {
+    repository.put(prefix + "first", file("first"));
+    repository.put(prefix + "second", file("second"));
+
+    assertThat(storage.getObjects().keySet()).containsExactly(prefix + ".packed/head");
+    assertThat(repository.getKeys(prefix)).containsExactlyInAnyOrder(prefix + "first",
+        prefix + "second");
+    var result = repository.get(prefix + "second").orElseThrow();
+    assertThat(new String(result.getContent().readAllBytes())).isEqualTo("second");
+    assertThat(result.getMetadata().getContentLength()).isEqualTo(6L);
+    assertThat(result.getMetadata().getUserMetadata()).containsEntry("id", "second");
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldStoreLargeFilesAsSeparateObjects() {
+    var result = repository.put(prefix + "large", file("large-content"));
+
+    assertThat(result.getContentLength()).isEqualTo(13L);
+    assertThat(storage.getObjects().keySet()).containsExactly(prefix + "large");
+    var loaded = repository.get(prefix + "large").orElseThrow();
+    assertThat(new String(loaded.getContent().readAllBytes())).isEqualTo("large-content");
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldSealFullSegmentsAndCompactThemOnDelete() {
+    repository.put(prefix + "a", file("aaaaaaaa"));
+    repository.put(prefix + "b", file("bbbbbbbb"));
+    repository.put(prefix + "c", file("cccccccc"));
+
+    assertThat(storage.getObjects().keySet()).containsExactlyInAnyOrder(prefix + ".packed/head",
+        prefix + ".packed/segment-1");
+
+    repository.delete(Set.of(prefix + "a"));
+
+    assertThat(storage.getObjects().keySet()).containsExactlyInAnyOrder(prefix + ".packed/head",
+        prefix + ".packed/segment-2");
+    assertThat(storage.getObjects().get(prefix + ".packed/segment-2")).hasSize(8);
+    var loaded = repository.get(prefix + "b").orElseThrow();
+    assertThat(new String(loaded.getContent().readAllBytes())).isEqualTo("bbbbbbbb");
+    assertThat(repository.get(prefix + "a")).isEmpty();
+  }
+
+  @Test
+  void shouldRemovePackObjectsWhenAllFilesDeleted() {
+    repository.put(prefix + "a", file("aaaaaaaa"));
+    repository.put(prefix + "b", file("bbbbbbbb"));
+    repository.put(prefix + "c", file("cccccccc"));
+    repository.put(prefix + "large", file("large-content"));
+
+    repository.delete(repository.getKeys(prefix));
+
+    assertThat(storage.getObjects()).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldCopyPackedFile() {
+    repository.put(prefix + "small", file("small"));
+
+    repository.copy(prefix + "small", "process/target/small", null);
+
+    var loaded = repository.get("process/target/small").orElseThrow();
+    assertThat(new String(loaded.getContent().readAllBytes())).isEqualTo("small");
+    assertThat(storage.getObjects().keySet()).containsExactlyInAnyOrder(prefix + ".packed/head",
+        "process/target/.packed/head");
+  }
+
+  @Test
+  void shouldHidePackObjectsFromMetadataListing() {
+    repository.put(prefix + "small", file("small"));
+    repository.put(prefix + "large", file("large-content"));
+
+    var result = repository.getMetadata(prefix);
+
+    assertThat(result).extracting(FileMetadataDto::getId)
+        .containsExactlyInAnyOrder("small", "large-content");
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldNotRestoreLargeFileOverwrittenBySmallOneOnDelete() {
+    repository.put(prefix + "file", file("large-content"));
+    repository.put(prefix + "file", file("small"));
+
+    assertThat(storage.getObjects().keySet()).containsExactly(prefix + ".packed/head");
+    assertThat(repository.getMetadata(prefix)).hasSize(1);
+    var loaded = repository.get(prefix + "file").orElseThrow();
+    assertThat(new String(loaded.getContent().readAllBytes())).isEqualTo("small");
+
+    repository.delete(Set.of(prefix + "file"));
+
+    assertThat(repository.get(prefix + "file")).isEmpty();
+    assertThat(repository.getKeys(prefix)).isEmpty();
+    assertThat(storage.getObjects()).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldCompactSealedSegmentsOnOverwrite() {
+    repository.put(prefix + "a", file("aaaaaaaa"));
+    repository.put(prefix + "b", file("bbbbbbbb"));
+    repository.put(prefix + "c", file("cccccccc"));
+
+    repository.put(prefix + "a", file("x"));
+
+    assertThat(storage.getObjects().keySet()).containsExactlyInAnyOrder(prefix + ".packed/head",
+        prefix + ".packed/segment-2");
+    assertThat(storage.getObjects().get(prefix + ".packed/segment-2")).hasSize(8);
+
+    repository.put(prefix + "b", file("y"));
+
+    assertThat(storage.getObjects().keySet()).containsExactly(prefix + ".packed/head");
+    assertThat(new String(repository.get(prefix + "a").orElseThrow().getContent()
+        .readAllBytes())).isEqualTo("x");
+    assertThat(new String(repository.get(prefix + "b").orElseThrow().getContent()
+        .readAllBytes())).isEqualTo("y");
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldReadCachedHeadAndKnownSeparateObjectsWithoutLoadingHead() {
+    repository.put(prefix + "small", file("small"));
+    repository.put(prefix + "large", file("large-content"));
+    reads.clear();
+
+    var small = repository.get(prefix + "small").orElseThrow();
+    var large = repository.get(prefix + "large").orElseThrow();
+
+    assertThat(new String(small.getContent().readAllBytes())).isEqualTo("small");
+    assertThat(new String(large.getContent().readAllBytes())).isEqualTo("large-content");
+    assertThat(reads).containsExactly(prefix + "large");
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldReloadHeadChangedByAnotherWriter() {
+    repository.put(prefix + "small", file("small"));
+    var other = PackedFormDataFileRepository.builder()
+        .delegate(storage)
+        .maxFileSize(8)
+        .maxSegmentSize(16)
+        .build();
+    other.put(prefix + "small", file("changed"));
+
+    var loaded = repository.get(prefix + "small").orElseThrow();
+
+    assertThat(new String(loaded.getContent().readAllBytes())).isEqualTo("changed");
+  }
+
+  @Test
+  void shouldListMetadataPageInKeyOrderWithoutHeadReadPerKey() {
+    repository.put(prefix + "d", file("d-large-file"));
+    repository.put(prefix + "b", file("b"));
+    repository.put(prefix + "a", file("a-large-file"));
+    repository.put(prefix + "c", file("c"));
+    var cold = PackedFormDataFileRepository.builder()
+        .delegate(new ForwardingFormDataFileRepository(storage) {
+          @Override
+          public Optional<FileDataDto> get(String key) {
+            reads.add(key);
+            return super.get(key);
+          }
+        })
+        .maxFileSize(8)
+        .maxSegmentSize(16)
+        .build();
+    reads.clear();
+
+    var page = cold.getMetadataPage(prefix, 3, null, null);
+
+    assertThat(page.getItems()).extracting(FileMetadataDto::getId)
+        .containsExactly("a-large-file", "b", "c");
+    // one read for the key listing and one for metadata of the page
+    assertThat(reads).containsExactly(prefix + ".packed/head", prefix + ".packed/head");
+  }
+
+  @Test
+  void shouldNotDeleteSeparateObjectThatDoesNotExist() {
+    repository.put(prefix + "first", file("first"));
+    repository.put(prefix + "second", file("second"));
+
+    assertThat(deletes).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldDeleteSeparateObjectOverwrittenByPackedFileAfterHeadIsCreated() {
+    repository.put(prefix + "small", file("small"));
+    repository.put(prefix + "file", file("large-content"));
+    repository.put(prefix + "file", file("packed"));
+
+    assertThat(storage.getObjects().keySet()).containsExactly(prefix + ".packed/head");
+    var loaded = repository.get(prefix + "file").orElseThrow();
+    assertThat(new String(loaded.getContent().readAllBytes())).isEqualTo("packed");
+  }
+
+  @Test
+  void shouldFailReadOfTruncatedSegment() {
+    repository.put(prefix + "a", file("aaaaaaaa"));
+    repository.put(prefix + "b", file("bbbbbbbb"));
+    repository.put(prefix + "c", file("cccccccc"));
+    storage.put(prefix + ".packed/segment-1", FileDataDto.builder()
+        .content(new ByteArrayInputStream("aaaaaaaabb".getBytes(StandardCharsets.UTF_8)))
+        .metadata(new FileMetadataDto("application/octet-stream", Map.of()))
+        .build());
+
+    assertThatThrownBy(() -> repository.get(prefix + "b"))
+        .isInstanceOf(UncheckedIOException.class);
+  }
+
+  @Test
+  void shouldRejectSegmentsThatMakeHeadRewritesLarge() {
+    var builder = PackedFormDataFileRepository.builder()
+        .delegate(storage)
+        .maxFileSize(8)
+        .maxSegmentSize(PackedFormDataFileRepository.MAX_SEGMENT_SIZE + 1);
+
+    assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private FileDataDto file(String content) {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)))
+        .metadata(new FileMetadataDto("text/plain", Map.of("id", content)))
+        .build();
+  }
+}
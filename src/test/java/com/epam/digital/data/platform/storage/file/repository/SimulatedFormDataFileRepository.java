@@ -0,0 +1,224 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.utils.ThrottledInputStream;
+import com.epam.digital.data.platform.storage.file.utils.TokenBucket;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Builder;
+import lombok.SneakyThrows;
+
+/**
+ * The {@link FormDataFileRepository} stand-in of Ceph storage for load tests. Calls are
+ * forwarded to the in-memory repository with simulated latency, shared bandwidth, failed
+ * requests and partial failures: content streams that break in the middle and batch deletes
+ * applied only to a part of keys.
+ */
+public class SimulatedFormDataFileRepository extends ForwardingFormDataFileRepository {
+
+  private final LatencyDistribution latency;
+  private final TokenBucket bandwidth;
+  private final double errorRate;
+  private final double partialFailureRate;
+  private final LongAdder injectedErrorCount = new LongAdder();
+  private final LongAdder injectedPartialFailureCount = new LongAdder();
+
+  /**
+   * @param delegate                 repository that stores files, in-memory by default
+   * @param latency                  latency of every call, none by default
+   * @param bytesPerSecond           bandwidth shared by all content streams, unlimited if not
+   *                                 positive
+   * @param errorRate                probability of a call to fail before it is applied
+   * @param partialFailureRate       probability of a content transfer or a batch delete to fail
+   *                                 after it is partially applied
+   */
+  @Builder
+  public SimulatedFormDataFileRepository(FormDataFileRepository delegate,
+      LatencyDistribution latency, long bytesPerSecond, double errorRate,
+      double partialFailureRate) {
+    super(delegate != null ? delegate : new InMemoryFormDataFileRepository());
+    this.latency = latency != null ? latency : LatencyDistribution.none();
+    this.bandwidth = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond, bytesPerSecond) : null;
+    this.errorRate = errorRate;
+    this.partialFailureRate = partialFailureRate;
+  }
+
+  /**
+   * @return number of failed calls
+   */
+  public long getInjectedErrorCount() {
+    return injectedErrorCount.sum();
+  }
+
+  /**
+   * @return number of partially applied calls
+   */
+  public long getInjectedPartialFailureCount() {
+    return injectedPartialFailureCount.sum();
+  }
+
+  @Override
+  public Optional<FileDataDto> get(String key) {
+    simulateCall("get");
+    return super.get(key).map(file -> FileDataDto.builder()
+        .content(simulateTransfer(file.getContent(), file.getMetadata().getContentLength()))
+        .metadata(file.getMetadata())
+        .build());
+  }
+
+  @Override
+  public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+    simulateCall("put");
+    var length = fileDataDto.getMetadata() != null
+        ? fileDataDto.getMetadata().getContentLength() : null;
+    return super.put(key, FileDataDto.builder()
+        .content(simulateTransfer(fileDataDto.getContent(), length))
+        .metadata(fileDataDto.getMetadata())
+        .build());
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(Set<String> keys) {
+    simulateCall("getMetadata");
+    return super.getMetadata(keys);
+  }
+
+  @Override
+  public List<FileMetadataDto> getMetadata(String prefix) {
+    simulateCall("getMetadata");
+    return super.getMetadata(prefix);
+  }
+
+  @Override
+  public Set<String> getKeys(String prefix) {
+    simulateCall("getKeys");
+    return super.getKeys(prefix);
+  }
+
+  @Override
+  public void delete(Set<String> keys) {
+    simulateCall("delete");
+    if (keys.size() > 1 && isPartialFailure()) {
+      var applied = new ArrayList<>(keys).subList(0, keys.size() / 2);
+      super.delete(Set.copyOf(applied));
+      throw new SimulatedStorageException(
+          String.format("Simulated failure after deleting %d of %d keys", applied.size(),
+              keys.size()));
+    }
+    super.delete(keys);
+  }
+
+  @Override
+  public Optional<FileMetadataDto> copy(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    simulateCall("copy");
+    return super.copy(sourceKey, targetKey, userMetadata);
+  }
+
+  @Override
+  public Optional<FileMetadataDto> move(String sourceKey, String targetKey,
+      Map<String, String> userMetadata) {
+    simulateCall("move");
+    return super.move(sourceKey, targetKey, userMetadata);
+  }
+
+  @SneakyThrows
+  private void simulateCall(String operation) {
+    var delay = latency.next();
+    if (!delay.isZero()) {
+      Thread.sleep(delay.toMillis(), delay.toNanosPart() % 1_000_000);
+    }
+    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      injectedErrorCount.increment();
+      throw new SimulatedStorageException(
+          String.format("Simulated failure of storage %s operation", operation));
+    }
+  }
+
+  private InputStream simulateTransfer(InputStream content, Long length) {
+    var result = bandwidth != null ? new ThrottledInputStream(content, bandwidth, nanos -> {
+    }) : content;
+    if (isPartialFailure()) {
+      return new BreakingInputStream(result, length != null ? length / 2 : 0);
+    }
+    return result;
+  }
+
+  private boolean isPartialFailure() {
+    if (partialFailureRate > 0 && ThreadLocalRandom.current().nextDouble() < partialFailureRate) {
+      injectedPartialFailureCount.increment();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * The failure of the simulated storage
+   */
+  public static class SimulatedStorageException extends RuntimeException {
+
+    public SimulatedStorageException(String message) {
+      super(message);
+    }
+  }
+
+  private static class BreakingInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    BreakingInputStream(InputStream in, long breakAfter) {
+      super(in);
+      this.remaining = breakAfter;
+    }
+
+    @Override
+    public int read() throws IOException {
+      checkBroken();
+      var result = super.read();
+      remaining--;
+      return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      checkBroken();
+      var count = super.read(b, off, (int) Math.min(len, remaining));
+      remaining -= Math.max(count, 0);
+      return count;
+    }
+
+    private void checkBroken() throws IOException {
+      if (remaining <= 0) {
+        throw new IOException("Simulated connection reset");
+      }
+    }
+  }
+}
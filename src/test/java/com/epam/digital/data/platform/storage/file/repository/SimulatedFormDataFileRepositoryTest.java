@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.repository.SimulatedFormDataFileRepository.SimulatedStorageException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class SimulatedFormDataFileRepositoryTest {
+
+  private final InMemoryFormDataFileRepository storage = new InMemoryFormDataFileRepository();
+
+  @Test
+  void shouldFailCallsBeforeApplying() {
+    var repository = SimulatedFormDataFileRepository.builder()
+        .delegate(storage)
+        .errorRate(1)
+        .build();
+
+    assertThatThrownBy(() -> repository.put("key", file(10)))
+        .isInstanceOf(SimulatedStorageException.class);
+
+    assertThat(storage.getObjects()).isEmpty();
+    assertThat(repository.getInjectedErrorCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldBreakContentStreamInTheMiddle() {
+    storage.put("key", file(10));
+    var repository = SimulatedFormDataFileRepository.builder()
+        .delegate(storage)
+        .partialFailureRate(1)
+        .build();
+
+    var content = repository.get("key").orElseThrow().getContent();
+
+    assertThatThrownBy(content::readAllBytes).isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> repository.put("other", file(10))).isInstanceOf(IOException.class);
+    assertThat(storage.getObjects()).containsOnlyKeys("key");
+  }
+
+  @Test
+  void shouldApplyBatchDeletePartially() {
+    storage.put("first", file(1));
+    storage.put("second", file(1));
+    var repository = SimulatedFormDataFileRepository.builder()
+        .delegate(storage)
+        .partialFailureRate(1)
+        .build();
+
+    assertThatThrownBy(() -> repository.delete(Set.of("first", "second")))
+        .isInstanceOf(SimulatedStorageException.class);
+
+    assertThat(storage.getObjects()).hasSize(1);
+    assertThat(repository.getInjectedPartialFailureCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldLimitSharedBandwidth() throws IOException {
+    storage.put("key", file(3000));
+    var repository = SimulatedFormDataFileRepository.builder()
+        .delegate(storage)
+        .latency(LatencyDistribution.fixed(Duration.ofMillis(20)))
+        .bytesPerSecond(10000)
+        .build();
+
+    var startedAt = System.nanoTime();
+    assertThat(repository.get("key").orElseThrow().getContent().readAllBytes()).hasSize(3000);
+
+    assertThat(Duration.ofNanos(System.nanoTime() - startedAt))
+        .isGreaterThan(Duration.ofMillis(20));
+  }
+
+  private FileDataDto file(int size) {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(new byte[size]))
+        .metadata(new FileMetadataDto((long) size, "application/octet-stream", Map.of()))
+        .build();
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import java.time.Duration;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class DeferredFileCleanupServiceTest {
+
+  private final String queuePrefix = "queue/";
+
+  @Mock
+  private FormDataFileRepository repository;
+  @Mock
+  private FormDataFileRepository queueRepository;
+  private FormDataFileKeyProvider keyProvider;
+  private DeferredFileCleanupService cleanupService;
+
+  @BeforeEach
+  void init() {
+    keyProvider = new FormDataFileKeyProviderImpl();
+    cleanupService = DeferredFileCleanupService.builder()
+        .repository(repository)
+        .queueRepository(queueRepository)
+        .keyProvider(keyProvider)
+        .queuePrefix(queuePrefix)
+        .interval(Duration.ofMinutes(1))
+        .batchSize(2)
+        .maxDeletesPerSecond(0)
+        .build();
+  }
+
+  @Test
+  void shouldStoreQueueMarkerOnRegister() {
+    cleanupService.register("procInstId");
+
+    verify(queueRepository).put(eq(queuePrefix + "procInstId"), any(FileDataDto.class));
+    assertThat(cleanupService.getStats().getRegisteredCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldDeleteFilesInBatchesAndRemoveMarker() {
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId("procInstId");
+    when(queueRepository.getKeys(queuePrefix)).thenReturn(Set.of(queuePrefix + "procInstId"));
+    when(repository.getKeys(prefix)).thenReturn(
+        Set.of(prefix + "1", prefix + "2", prefix + "3"));
+
+    cleanupService.drain();
+
+    verify(repository, times(2)).delete(any());
+    verify(queueRepository).delete(Set.of(queuePrefix + "procInstId"));
+    var stats = cleanupService.getStats();
+    assertThat(stats.getDeletedFilesCount()).isEqualTo(3);
+    assertThat(stats.getCompletedCount()).isEqualTo(1);
+    assertThat(stats.getPendingCount()).isZero();
+  }
+
+  @Test
+  void shouldKeepMarkerWhenDeletionFailed() {
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId("procInstId");
+    when(queueRepository.getKeys(queuePrefix)).thenReturn(Set.of(queuePrefix + "procInstId"));
+    when(repository.getKeys(prefix)).thenThrow(new IllegalStateException("unavailable"));
+
+    cleanupService.drain();
+
+    verify(queueRepository, never()).delete(any());
+    assertThat(cleanupService.getStats().getFailedCount()).isEqualTo(1);
+    assertThat(cleanupService.getStats().getPendingCount()).isEqualTo(1);
+  }
+}
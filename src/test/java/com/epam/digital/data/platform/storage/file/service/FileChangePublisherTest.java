@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto;
+import com.epam.digital.data.platform.storage.file.dto.FileChangeEventDto.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class FileChangePublisherTest {
+
+  private final InMemoryFileChangeTransport transport = new InMemoryFileChangeTransport();
+
+  @Test
+  void shouldDeliverEventsOnlyToOtherNodes() {
+    var first = FileChangePublisher.builder().nodeId("first").transport(transport).build();
+    var second = FileChangePublisher.builder().nodeId("second").transport(transport).build();
+    List<FileChangeEventDto> firstEvents = new ArrayList<>();
+    List<FileChangeEventDto> secondEvents = new ArrayList<>();
+    first.subscribe(firstEvents::add);
+    second.subscribe(secondEvents::add);
+
+    first.publish(Type.DELETED, Set.of("process/pid/id"), "process/pid/");
+
+    assertThat(firstEvents).isEmpty();
+    assertThat(secondEvents).hasSize(1);
+    var event = secondEvents.get(0);
+    assertThat(event.getType()).isEqualTo(Type.DELETED);
+    assertThat(event.getKeys()).containsExactly("process/pid/id");
+    assertThat(event.getPrefix()).isEqualTo("process/pid/");
+    assertThat(event.getOrigin()).isEqualTo("first");
+  }
+
+  @Test
+  void shouldNotFailPublishingWhenListenerFails() {
+    var first = FileChangePublisher.builder().nodeId("first").transport(transport).build();
+    var second = FileChangePublisher.builder().nodeId("second").transport(transport).build();
+    List<FileChangeEventDto> events = new ArrayList<>();
+    second.subscribe(event -> {
+      throw new IllegalStateException("failed");
+    });
+    second.subscribe(events::add);
+
+    first.publish(Type.STORED, Set.of("key"));
+
+    assertThat(events).hasSize(1);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.exception.ChecksumMismatchException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+
+class FileContentVerifierTest {
+
+  private static final String HELLO_SHA256 =
+      "185f8db32271fe25f561a6fc938b2e264306ec304eda518007d1764826381969";
+
+  private final FileContentVerifier verifier = FileContentVerifier.builder()
+      .digestAlgorithm("SHA-256")
+      .maxContentLength(1024)
+      .build();
+
+  @Test
+  void shouldPassContentWithMatchingChecksum() throws IOException {
+    var file = verifier.verify("key", file("Hello", HELLO_SHA256));
+
+    assertThat(new String(file.getContent().readAllBytes(), StandardCharsets.UTF_8))
+        .isEqualTo("Hello");
+    var stats = verifier.getStats();
+    assertThat(stats.getVerifiedCount()).isEqualTo(1);
+    assertThat(stats.getVerifiedBytes()).isEqualTo(5);
+    assertThat(stats.getMismatchCount()).isZero();
+  }
+
+  @Test
+  void shouldSignalMismatchAtEndOfContent() {
+    var file = verifier.verify("key", file("Hellp", HELLO_SHA256));
+
+    assertThatThrownBy(() -> file.getContent().readAllBytes())
+        .isInstanceOf(ChecksumMismatchException.class);
+    assertThat(verifier.getStats().getMismatchCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldSkipFileWithoutChecksum() {
+    var file = file("Hello", null);
+
+    assertThat(verifier.verify("key", file)).isSameAs(file);
+    assertThat(verifier.getStats().getSkippedCount()).isEqualTo(1);
+  }
+
+  private FileDataDto file(String content, String checksum) {
+    var userMetadata = new HashMap<String, String>();
+    if (checksum != null) {
+      userMetadata.put("checksum", checksum);
+    }
+    var bytes = content.getBytes(StandardCharsets.UTF_8);
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(bytes))
+        .metadata(new FileMetadataDto((long) bytes.length, "text/plain", userMetadata))
+        .build();
+  }
+}
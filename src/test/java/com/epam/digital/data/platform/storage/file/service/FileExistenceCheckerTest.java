@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FileExistenceCheckerTest {
+
+  @Mock
+  private FormDataFileRepository repository;
+  private FileExistenceChecker checker;
+
+  @BeforeEach
+  void init() {
+    checker = FileExistenceChecker.builder()
+        .repository(repository)
+        .parallelism(2)
+        .negativeCacheTtl(Duration.ofMinutes(1))
+        .maxCachedMisses(10)
+        .build();
+  }
+
+  @AfterEach
+  void close() {
+    checker.close();
+  }
+
+  @Test
+  void shouldReturnMissingKeys() {
+    when(repository.exists("first")).thenReturn(true);
+    when(repository.exists("second")).thenReturn(false);
+
+    var result = checker.findMissing(List.of("first", "second"));
+
+    assertThat(result).containsExactly("second");
+  }
+
+  @Test
+  void shouldAnswerRepeatedMissFromCacheUntilInvalidated() {
+    when(repository.exists("missing")).thenReturn(false);
+
+    assertThat(checker.exists("missing")).isFalse();
+    assertThat(checker.findMissing(List.of("missing"))).containsExactly("missing");
+    verify(repository, times(1)).exists("missing");
+
+    checker.invalidate("missing");
+    when(repository.exists("missing")).thenReturn(true);
+
+    assertThat(checker.exists("missing")).isTrue();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.repository.InMemoryFormDataFileRepository;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FileMigrationServiceTest {
+
+  private static final String HELLO_SHA256 =
+      "185f8db32271fe25f561a6fc938b2e264306ec304eda518007d1764826381969";
+
+  private final Set<String> failingKeys = ConcurrentHashMap.newKeySet();
+  private InMemoryFormDataFileRepository source;
+  private InMemoryFormDataFileRepository target;
+  private FileMigrationService migrationService;
+
+  @BeforeEach
+  void init() {
+    source = new InMemoryFormDataFileRepository();
+    target = new InMemoryFormDataFileRepository() {
+      @Override
+      public FileMetadataDto put(String key, FileDataDto fileDataDto) {
+        if (failingKeys.contains(key)) {
+          throw new IllegalStateException("Storage is not available");
+        }
+        return super.put(key, fileDataDto);
+      }
+    };
+    migrationService = FileMigrationService.builder()
+        .source(source)
+        .target(target)
+        .parallelism(4)
+        .verify(true)
+        .digestAlgorithm("SHA-256")
+        .checkpointPrefix("migration-checkpoints/")
+        .checkpointInterval(2)
+        .build();
+    for (var i = 0; i < 10; i++) {
+      source.put("process/pid/file-" + i, file());
+    }
+  }
+
+  @Test
+  void shouldCopyAndVerifyAllFiles() {
+    var result = migrationService.migrate("migration", "process/");
+
+    assertThat(result.isCompleted()).isTrue();
+    assertThat(result.getCopiedCount()).isEqualTo(10);
+    assertThat(result.getCopiedBytes()).isEqualTo(50);
+    assertThat(target.getObjects().keySet()).containsAll(source.getObjects().keySet());
+  }
+
+  @Test
+  void shouldResumeFromCheckpoint() {
+    failingKeys.add("process/pid/file-5");
+
+    var first = migrationService.migrate("migration", "process/");
+    failingKeys.clear();
+    var second = migrationService.migrate("migration", "process/");
+
+    assertThat(first.getFailedCount()).isEqualTo(1);
+    assertThat(first.getFailedKeys()).containsExactly("process/pid/file-5");
+    assertThat(second.isCompleted()).isTrue();
+    assertThat(second.getResumedCount()).isEqualTo(5);
+    assertThat(second.getCopiedCount()).isEqualTo(5);
+    assertThat(target.getObjects()).containsKey("process/pid/file-5");
+  }
+
+  private FileDataDto file() {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream("Hello".getBytes(StandardCharsets.UTF_8)))
+        .metadata(new FileMetadataDto(5L, "text/plain", Map.of("checksum", HELLO_SHA256)))
+        .build();
+  }
+}
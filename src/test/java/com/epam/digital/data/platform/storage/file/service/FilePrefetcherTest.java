@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.repository.ForwardingFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.InMemoryFormDataFileRepository;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FilePrefetcherTest {
+
+  private final AtomicInteger getCount = new AtomicInteger();
+  private FilePrefetcher prefetcher;
+  private FormDataFileStorageService storageService;
+
+  @BeforeEach
+  void init() {
+    var repository = new ForwardingFormDataFileRepository(new InMemoryFormDataFileRepository()) {
+      @Override
+      public Optional<FileDataDto> get(String key) {
+        getCount.incrementAndGet();
+        return super.get(key);
+      }
+    };
+    prefetcher = FilePrefetcher.builder()
+        .repository(repository)
+        .smallestFirst(true)
+        .maxFilesPerListing(10)
+        .maxFileSize(100)
+        .maxCacheBytes(25)
+        .ttl(Duration.ofMinutes(1))
+        .parallelism(1)
+        .queueCapacity(10)
+        .build();
+    storageService = FormDataFileStorageService.builder()
+        .repository(repository)
+        .keyProvider(new FormDataFileKeyProviderImpl())
+        .prefetcher(prefetcher)
+        .build();
+    storageService.save("pid", "first", file("first", "01234"));
+    storageService.save("pid", "second", file("second", "abcdefgh"));
+    storageService.save("pid", "third", file("third", "ABCDEFGHIJKLMNOPQRST"));
+  }
+
+  @AfterEach
+  void close() {
+    prefetcher.close();
+  }
+
+  @Test
+  void shouldServeListedFilesFromCacheUntilCacheIsFull() throws IOException {
+    storageService.getMetadata("pid");
+    await(() -> prefetcher.getStats().getCancelledCount() == 1);
+    var fetched = getCount.get();
+
+    var first = storageService.loadByProcessInstanceIdAndId("pid", "first");
+    var second = storageService.loadByProcessInstanceIdAndId("pid", "second");
+    storageService.loadByProcessInstanceIdAndId("pid", "third");
+
+    assertThat(new String(first.getContent().readAllBytes())).isEqualTo("01234");
+    assertThat(new String(second.getContent().readAllBytes())).isEqualTo("abcdefgh");
+    assertThat(getCount.get()).isEqualTo(fetched + 1);
+    var stats = prefetcher.getStats();
+    assertThat(stats.getPrefetchedCount()).isEqualTo(2);
+    assertThat(stats.getHitCount()).isEqualTo(2);
+    assertThat(stats.getCachedBytes()).isZero();
+  }
+
+  @Test
+  void shouldDropPrefetchedFileWhenItIsChanged() throws IOException {
+    storageService.getMetadata("pid");
+    await(() -> prefetcher.getStats().getPrefetchedCount() == 2);
+
+    storageService.save("pid", "first", file("first", "changed"));
+
+    var first = storageService.loadByProcessInstanceIdAndId("pid", "first");
+    assertThat(new String(first.getContent().readAllBytes())).isEqualTo("changed");
+    assertThat(prefetcher.getStats().getInvalidatedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotSpendBandwidthOnCancelledFetch() {
+    var repository = new InMemoryFormDataFileRepository();
+    try (var limited = FilePrefetcher.builder()
+        .repository(repository)
+        .smallestFirst(true)
+        .maxFilesPerListing(10)
+        .maxFileSize(100)
+        .maxCacheBytes(100)
+        .maxBytesPerSecond(10)
+        .ttl(Duration.ofMinutes(1))
+        .parallelism(1)
+        .queueCapacity(10)
+        .build()) {
+      var service = FormDataFileStorageService.builder()
+          .repository(repository)
+          .keyProvider(new FormDataFileKeyProviderImpl())
+          .prefetcher(limited)
+          .build();
+      service.save("pid", "first", file("first", "01234"));
+      service.save("pid", "second", file("second", "abcdefgh"));
+      service.save("other", "small", file("small", "wxyz"));
+
+      service.getMetadata("pid");
+      await(() -> limited.getStats().getCancelledCount() == 1);
+      service.getMetadata("other");
+      await(() -> limited.getStats().getPrefetchedCount() == 2);
+
+      assertThat(limited.getStats().getCancelledCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void shouldSkipFilesOverBandwidthLimitWithoutCancellingListing() {
+    var repository = new InMemoryFormDataFileRepository();
+    try (var limited = FilePrefetcher.builder()
+        .repository(repository)
+        .smallestFirst(false)
+        .maxFilesPerListing(10)
+        .maxFileSize(100)
+        .maxCacheBytes(100)
+        .maxBytesPerSecond(10)
+        .ttl(Duration.ofMinutes(1))
+        .parallelism(1)
+        .queueCapacity(10)
+        .build()) {
+      var service = FormDataFileStorageService.builder()
+          .repository(repository)
+          .keyProvider(new FormDataFileKeyProviderImpl())
+          .prefetcher(limited)
+          .build();
+      service.save("pid", "large", file("large", "ABCDEFGHIJKLMNOPQRST"));
+      service.save("pid", "first", file("first", "012"));
+      service.save("pid", "second", file("second", "abcd"));
+
+      service.getMetadata("pid");
+      await(() -> limited.getStats().getPrefetchedCount() == 2);
+
+      assertThat(limited.getStats().getCancelledCount()).isZero();
+    }
+  }
+
+  private FileDataDto file(String id, String content) {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(content.getBytes()))
+        .metadata(FileMetadataDto.builder()
+            .contentLength((long) content.length())
+            .contentType("text/plain")
+            .id(id)
+            .build())
+        .build();
+  }
+
+  private static void await(BooleanSupplier condition) {
+    var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      assertThat(System.nanoTime()).isLessThan(deadline);
+      Thread.onSpinWait();
+    }
+  }
+}
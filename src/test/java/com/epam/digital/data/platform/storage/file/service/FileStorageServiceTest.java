@@ -20,6 +20,8 @@ package com.epam.digital.data.platform.storage.file.service;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.epam.digital.data.platform.integration.ceph.model.CephObjectMetadata;
@@ -27,11 +29,15 @@ import com.epam.digital.data.platform.integration.ceph.service.CephService;
 import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
 import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto.BaseUserMetadataHeaders;
 import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import com.epam.digital.data.platform.storage.file.dto.UserMetadataUpdateResultDto.Status;
 import com.epam.digital.data.platform.storage.file.repository.FileRepositoryImpl;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -130,6 +136,46 @@ class FileStorageServiceTest {
     assertThat(result.getId()).isEqualTo(generatedKey);
   }
 
+  @Test
+  void shouldSkipUnchangedMetadataInBatchUpdate() {
+    var newMetadata = Map.of("checksum", "sha512");
+    when(cephService.getMetadata(bucket, Set.of("unchanged"))).thenReturn(List.of(metadata));
+    when(cephService.getMetadata(bucket, Set.of("changed"))).thenReturn(List.of(metadata));
+    when(cephService.getMetadata(bucket, Set.of("missing"))).thenReturn(List.of());
+    when(cephService.setUserMetadata(bucket, "changed", newMetadata)).thenReturn(metadata);
+
+    var updates = new LinkedHashMap<String, Map<String, String>>();
+    updates.put("unchanged", userMetadata);
+    updates.put("changed", newMetadata);
+    updates.put("missing", newMetadata);
+    var result = instance.setUserMetadata(updates);
+
+    assertThat(result.get("unchanged").getStatus()).isEqualTo(Status.UNCHANGED);
+    assertThat(result.get("changed").getStatus()).isEqualTo(Status.UPDATED);
+    assertThat(result.get("missing").getStatus()).isEqualTo(Status.NOT_FOUND);
+    verify(cephService, never()).setUserMetadata(bucket, "unchanged", userMetadata);
+  }
+
+  @Test
+  void shouldSaveDerivedMetadataWithSinglePut() {
+    var checksum = "185f8db32271fe25f561a6fc938b2e264306ec304eda518007d1764826381969";
+    var expectedMetadata = new HashMap<>(userMetadata);
+    expectedMetadata.put("checksum", checksum);
+    expectedMetadata.put("signed", "true");
+    when(cephService.put(eq(bucket), eq(key), eq(contentType), eq(contentLength),
+        eq(expectedMetadata), any(InputStream.class))).thenReturn(metadata);
+
+    instance.save(key, content(), derived -> {
+      var result = new HashMap<>(derived.getUserMetadata());
+      result.put("signed", "true");
+      return result;
+    });
+
+    verify(cephService).put(eq(bucket), eq(key), eq(contentType), eq(contentLength),
+        eq(expectedMetadata), any(InputStream.class));
+    verify(cephService, never()).setUserMetadata(any(), any(), any());
+  }
+
   private FileObjectDto content() {
     var metadata = new BaseFileMetadataDto(contentLength, contentType, userMetadata);
     var content = new ByteArrayInputStream(new byte[]{'H', 'e', 'l', 'l', 'o'});
@@ -138,4 +184,4 @@ class FileStorageServiceTest {
         .metadata(metadata)
         .build();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class FileThrottlerTest {
+
+  private final FileThrottler throttler = FileThrottler.builder()
+      .requestsPerSecond(10)
+      .requestBurst(1)
+      .bytesPerSecond(1000)
+      .byteBurst(100)
+      .maxTrackedKeys(10)
+      .build();
+
+  @Test
+  void shouldDelayReadingOverByteBurst() throws IOException {
+    var content = throttler.throttle("process/pid/", new ByteArrayInputStream(new byte[200]));
+
+    var startedAt = System.nanoTime();
+    assertThat(content.readAllBytes()).hasSize(200);
+
+    assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isGreaterThan(Duration.ofMillis(50));
+    assertThat(throttler.getStats().getByteThrottledTime()).isGreaterThan(Duration.ofMillis(50));
+  }
+
+  @Test
+  void shouldThrottleRequestsOfEachKeySeparately() {
+    throttler.acquireRequest("first");
+    throttler.acquireRequest("second");
+    assertThat(throttler.getStats().getThrottledRequestCount()).isZero();
+
+    throttler.acquireRequest("first");
+
+    var stats = throttler.getStats();
+    assertThat(stats.getRequestCount()).isEqualTo(3);
+    assertThat(stats.getThrottledRequestCount()).isEqualTo(1);
+    assertThat(stats.getTrackedKeyCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldResolveTenantOfCall() {
+    var key = throttler.callAs("tenant", () -> throttler.resolveKey("process/pid/"));
+
+    assertThat(key).isEqualTo("tenant");
+    assertThat(throttler.resolveKey("process/pid/")).isEqualTo("process/pid/");
+  }
+}
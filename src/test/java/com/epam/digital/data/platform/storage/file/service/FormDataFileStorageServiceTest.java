@@ -20,6 +20,10 @@ package com.epam.digital.data.platform.storage.file.service;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,14 +32,18 @@ import com.epam.digital.data.platform.integration.ceph.model.CephObjectMetadata;
 import com.epam.digital.data.platform.integration.ceph.service.CephService;
 import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
 import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataPageDto;
 import com.epam.digital.data.platform.storage.file.exception.FileNotFoundException;
 import com.epam.digital.data.platform.storage.file.repository.CephFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -66,6 +74,31 @@ class FormDataFileStorageServiceTest {
         .build();
   }
 
+  @Test
+  void shouldCloseComponentsAndRepository() {
+    var repository = mock(FormDataFileRepository.class);
+    var cleanupService = mock(DeferredFileCleanupService.class);
+    var existenceChecker = mock(FileExistenceChecker.class);
+    var usageTracker = mock(ProcessInstanceUsageTracker.class);
+    var prefetcher = mock(FilePrefetcher.class);
+    var service = FormDataFileStorageService.builder()
+        .keyProvider(keyProvider)
+        .repository(repository)
+        .cleanupService(cleanupService)
+        .existenceChecker(existenceChecker)
+        .usageTracker(usageTracker)
+        .prefetcher(prefetcher)
+        .build();
+
+    service.close();
+
+    verify(cleanupService).close();
+    verify(existenceChecker).close();
+    verify(usageTracker).close();
+    verify(prefetcher).close();
+    verify(repository).close();
+  }
+
   @Test
   @SneakyThrows
   void testGetByFileIdAndProcessInstanceId() {
@@ -136,6 +169,56 @@ class FormDataFileStorageServiceTest {
     assertThat(result.getUserMetadata()).isEqualTo(userMetadata);
   }
 
+  @Test
+  void shouldNotUploadFileWithSameChecksumAgain() {
+    var key = keyProvider.generateKey("procInstId", "fileId");
+    var userMetadata = Map.of("checksum", "sha256");
+    var fileData = FileDataDto.builder()
+        .content(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)))
+        .metadata(new FileMetadataDto(7L, "text/plain", userMetadata))
+        .build();
+    var stored = CephObjectMetadata.builder()
+        .contentLength(7L)
+        .contentType("text/plain")
+        .userMetadata(userMetadata)
+        .build();
+    when(cephService.getMetadata(bucketName, Set.of(key))).thenReturn(List.of(stored));
+
+    var result = fileStorageService.saveIdempotent("procInstId", "fileId", fileData);
+
+    assertThat(result.getChecksum()).isEqualTo("sha256");
+    verify(cephService, never()).put(any(), any(), any(), any(), any());
+    verify(cephService, never()).put(any(), any(), any(), anyLong(), any(), any());
+  }
+
+  @Test
+  void shouldListMetadataByPages() {
+    var prefix = keyProvider.getKeyPrefixByProcessInstanceId("procInstId");
+    when(cephService.getKeys(bucketName, prefix)).thenReturn(
+        Set.of(prefix + "c", prefix + "a", prefix + "b"));
+    when(cephService.getMetadata(bucketName, Set.of(prefix + "a", prefix + "b"))).thenReturn(
+        List.of(cephMetadata("a"), cephMetadata("b")));
+    when(cephService.getMetadata(bucketName, Set.of(prefix + "c")))
+        .thenReturn(List.of(cephMetadata("c")));
+    when(cephService.getMetadata(bucketName, Set.of(prefix + "b")))
+        .thenReturn(List.of(cephMetadata("b")));
+
+    var first = fileStorageService.getMetadataPage("procInstId", 2, null, null);
+    var second = fileStorageService.getMetadataPage("procInstId", 2,
+        first.getContinuationToken(), null);
+    var afterA = fileStorageService.getMetadataPage("procInstId", 1, null, "a");
+
+    assertThat(ids(first)).isEqualTo(List.of("a", "b"));
+    assertThat(first.getContinuationToken()).isNotNull();
+    assertThat(ids(second)).isEqualTo(List.of("c"));
+    assertThat(second.getContinuationToken()).isNull();
+    assertThat(ids(afterA)).isEqualTo(List.of("b"));
+  }
+
+  private CephObjectMetadata cephMetadata(String id) {
+    return CephObjectMetadata.builder().userMetadata(Map.of("id", id)).build();
+  }
+
   @Test
   void testGetMetadata() {
     var processInstId = "processInstId";
@@ -212,4 +295,80 @@ class FormDataFileStorageServiceTest {
 
     verify(cephService).delete(bucketName, Set.of(key));
   }
-}
\ No newline at end of file
+
+  @Test
+  void testCopyByProcInstIdAndIdPreservesMetadata() {
+    var fileId = "fileId";
+    var sourceKey = keyProvider.generateKey("source", fileId);
+    var targetKey = keyProvider.generateKey("target", fileId);
+    var content = new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8));
+    var userMetadata = Map.of("id", fileId);
+    var metadata = CephObjectMetadata.builder()
+        .contentLength(7L)
+        .contentType("text/plain")
+        .userMetadata(userMetadata)
+        .build();
+    when(cephService.get(bucketName, sourceKey)).thenReturn(
+        Optional.of(CephObject.builder().content(content).metadata(metadata).build()));
+    when(cephService.put(bucketName, targetKey, "text/plain", 7L, userMetadata, content))
+        .thenReturn(metadata);
+
+    var result = fileStorageService.copyByProcessInstanceIdAndId("source", fileId, "target");
+
+    assertThat(result.getId()).isEqualTo(fileId);
+    verify(cephService, never()).delete(any(), any());
+  }
+
+  @Test
+  void testMoveDeletesSourceFile() {
+    var content = new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8));
+    var metadata = CephObjectMetadata.builder()
+        .contentLength(7L)
+        .contentType("text/plain")
+        .userMetadata(Map.of("id", "source"))
+        .build();
+    var newMetadata = Map.of("id", "target");
+    when(cephService.get(bucketName, "source")).thenReturn(
+        Optional.of(CephObject.builder().content(content).metadata(metadata).build()));
+    when(cephService.put(bucketName, "target", "text/plain", 7L, newMetadata, content))
+        .thenReturn(metadata);
+
+    fileStorageService.move("source", "target", newMetadata);
+
+    verify(cephService).delete(bucketName, Set.of("source"));
+  }
+
+  @Test
+  void testCopyThrowsFileNotFoundWhenSourceMissing() {
+    when(cephService.get(bucketName, "source")).thenReturn(Optional.empty());
+
+    var exception = assertThrows(FileNotFoundException.class,
+        () -> fileStorageService.copy("source", "target", null));
+
+    assertThat(exception.getIds().iterator().next()).isEqualTo("source");
+  }
+
+  @Test
+  void testTransferToOutputStream() {
+    var key = "key";
+    var content = "content";
+    var cephObject = CephObject.builder()
+        .content(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)))
+        .metadata(CephObjectMetadata.builder()
+            .contentLength(7L)
+            .contentType("text/plain")
+            .build())
+        .build();
+    when(cephService.get(bucketName, key)).thenReturn(Optional.of(cephObject));
+    var target = new ByteArrayOutputStream();
+
+    var result = fileStorageService.transferTo(key, target);
+
+    assertThat(result.getContentType()).isEqualTo("text/plain");
+    assertThat(target.toString(StandardCharsets.UTF_8)).isEqualTo(content);
+  }
+
+  private List<String> ids(FileMetadataPageDto page) {
+    return page.getItems().stream().map(FileMetadataDto::getId).collect(Collectors.toList());
+  }
+}
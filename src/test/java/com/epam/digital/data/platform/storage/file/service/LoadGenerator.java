@@ -0,0 +1,320 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.exception.FileNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The harness that drives {@link FormDataFileStorageService} with a mixed workload from several
+ * threads for a fixed time and reports throughput and latency percentiles of each operation.
+ * Files of all process instances are saved before the measurement starts, failed saves are
+ * retried.
+ */
+public class LoadGenerator {
+
+  private static final int MAX_PRELOAD_ATTEMPTS = 10;
+
+  private final FormDataFileStorageService service;
+  private final int threads;
+  private final Duration duration;
+  private final int processInstanceCount;
+  private final int filesPerProcessInstance;
+  private final int fileSize;
+  private final int[] weights;
+
+  /**
+   * @param service                 service under load
+   * @param threads                 number of concurrent clients
+   * @param duration                time of the measurement
+   * @param processInstanceCount    number of process instances
+   * @param filesPerProcessInstance number of files of each process instance
+   * @param fileSize                size of each file in bytes
+   * @param readWeight              relative share of file loads
+   * @param writeWeight             relative share of file saves
+   * @param listWeight              relative share of metadata listings by process instance
+   * @param deleteWeight            relative share of file deletes, deleted files are reported as
+   *                                misses by later loads
+   */
+  @Builder
+  public LoadGenerator(FormDataFileStorageService service, int threads, Duration duration,
+      int processInstanceCount, int filesPerProcessInstance, int fileSize, int readWeight,
+      int writeWeight, int listWeight, int deleteWeight) {
+    this.service = service;
+    this.threads = Math.max(1, threads);
+    this.duration = duration != null ? duration : Duration.ofSeconds(10);
+    this.processInstanceCount = Math.max(1, processInstanceCount);
+    this.filesPerProcessInstance = Math.max(1, filesPerProcessInstance);
+    this.fileSize = fileSize;
+    this.weights = new int[]{readWeight, writeWeight, listWeight, deleteWeight};
+    if (Arrays.stream(weights).sum() <= 0) {
+      throw new IllegalArgumentException("At least one operation weight must be positive");
+    }
+  }
+
+  /**
+   * Run the workload
+   *
+   * @return throughput and latency of each operation
+   */
+  public LoadReport run() {
+    for (var i = 0; i < processInstanceCount; i++) {
+      for (var j = 0; j < filesPerProcessInstance; j++) {
+        preload(processInstanceId(i), fileId(j));
+      }
+    }
+    var executor = Executors.newFixedThreadPool(threads);
+    try {
+      var startedAt = System.nanoTime();
+      var deadline = startedAt + duration.toNanos();
+      var workers = new ArrayList<Future<Recorder>>();
+      for (var i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> work(deadline)));
+      }
+      var total = new Recorder();
+      for (var worker : workers) {
+        total.addAll(worker.get());
+      }
+      return total.report(Duration.ofNanos(System.nanoTime() - startedAt));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Load generation was interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Load generation failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void preload(String processInstanceId, String fileId) {
+    for (var attempt = 1; ; attempt++) {
+      try {
+        service.save(processInstanceId, fileId, file());
+        return;
+      } catch (RuntimeException e) {
+        if (attempt == MAX_PRELOAD_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private Recorder work(long deadline) {
+    var recorder = new Recorder();
+    var random = ThreadLocalRandom.current();
+    while (System.nanoTime() < deadline) {
+      var operation = nextOperation(random);
+      var processInstanceId = processInstanceId(random.nextInt(processInstanceCount));
+      var fileId = fileId(random.nextInt(filesPerProcessInstance));
+      var startedAt = System.nanoTime();
+      var outcome = Outcome.SUCCESS;
+      try {
+        execute(operation, processInstanceId, fileId);
+      } catch (FileNotFoundException e) {
+        outcome = Outcome.MISS;
+      } catch (RuntimeException e) {
+        outcome = Outcome.ERROR;
+      }
+      recorder.record(operation, outcome, System.nanoTime() - startedAt);
+    }
+    return recorder;
+  }
+
+  private void execute(Operation operation, String processInstanceId, String fileId) {
+    switch (operation) {
+      case READ:
+        try (var content = service.loadByProcessInstanceIdAndId(processInstanceId, fileId)
+            .getContent()) {
+          content.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        break;
+      case WRITE:
+        service.save(processInstanceId, fileId, file());
+        break;
+      case LIST:
+        service.getMetadata(processInstanceId);
+        break;
+      case DELETE:
+        service.deleteByProcessInstanceIdAndId(processInstanceId, fileId);
+        break;
+      default:
+        throw new IllegalStateException("Unknown operation " + operation);
+    }
+  }
+
+  private Operation nextOperation(ThreadLocalRandom random) {
+    var value = random.nextInt(Arrays.stream(weights).sum());
+    for (var operation : Operation.values()) {
+      value -= weights[operation.ordinal()];
+      if (value < 0) {
+        return operation;
+      }
+    }
+    throw new IllegalStateException("Operation weights are inconsistent");
+  }
+
+  private FileDataDto file() {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(new byte[fileSize]))
+        .metadata(new FileMetadataDto((long) fileSize, "application/octet-stream", Map.of()))
+        .build();
+  }
+
+  private static String processInstanceId(int index) {
+    return "load-" + index;
+  }
+
+  private static String fileId(int index) {
+    return "file-" + index;
+  }
+
+  public enum Operation {
+    READ, WRITE, LIST, DELETE
+  }
+
+  private enum Outcome {
+    SUCCESS, MISS, ERROR
+  }
+
+  /**
+   * Throughput and latency of each operation, latency includes failed calls
+   */
+  @Value
+  public static class LoadReport {
+
+    Duration elapsed;
+    Map<Operation, OperationReport> operations;
+
+    /**
+     * @return operations per second of all operations
+     */
+    public double getThroughput() {
+      return operations.values().stream().mapToDouble(OperationReport::getThroughput).sum();
+    }
+
+    /**
+     * @return report as a table
+     */
+    public String format() {
+      var result = new StringBuilder(String.format(
+          "%-8s %10s %8s %8s %10s %10s %10s %10s%n", "op", "count", "errors", "misses", "ops/s",
+          "p50 ms", "p99 ms", "p999 ms"));
+      operations.forEach((operation, report) -> result.append(String.format(
+          "%-8s %10d %8d %8d %10.1f %10.3f %10.3f %10.3f%n", operation, report.getCount(),
+          report.getErrorCount(), report.getMissCount(), report.getThroughput(),
+          report.getP50().toNanos() / 1e6, report.getP99().toNanos() / 1e6,
+          report.getP999().toNanos() / 1e6)));
+      return result.toString();
+    }
+  }
+
+  @Value
+  @Builder
+  public static class OperationReport {
+
+    long count;
+    long errorCount;
+    long missCount;
+    double throughput;
+    Duration p50;
+    Duration p99;
+    Duration p999;
+  }
+
+  private static class Recorder {
+
+    private final Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+    private final long[][] outcomes = new long[Operation.values().length][Outcome.values().length];
+
+    void record(Operation operation, Outcome outcome, long nanos) {
+      append(operation, nanos);
+      outcomes[operation.ordinal()][outcome.ordinal()]++;
+    }
+
+    void addAll(Recorder other) {
+      other.counts.forEach((operation, count) -> {
+        var values = other.latencies.get(operation);
+        for (var i = 0; i < count; i++) {
+          append(operation, values[i]);
+        }
+      });
+      for (var i = 0; i < outcomes.length; i++) {
+        for (var j = 0; j < outcomes[i].length; j++) {
+          outcomes[i][j] += other.outcomes[i][j];
+        }
+      }
+    }
+
+    private void append(Operation operation, long nanos) {
+      var count = counts.getOrDefault(operation, 0);
+      var values = latencies.computeIfAbsent(operation, op -> new long[1024]);
+      if (count == values.length) {
+        values = Arrays.copyOf(values, count * 2);
+        latencies.put(operation, values);
+      }
+      values[count] = nanos;
+      counts.put(operation, count + 1);
+    }
+
+    LoadReport report(Duration elapsed) {
+      var seconds = elapsed.toNanos() / 1e9;
+      var operations = new EnumMap<Operation, OperationReport>(Operation.class);
+      counts.forEach((operation, count) -> {
+        var values = Arrays.copyOf(latencies.get(operation), count);
+        Arrays.sort(values);
+        var operationOutcomes = outcomes[operation.ordinal()];
+        operations.put(operation, OperationReport.builder()
+            .count(count)
+            .errorCount(operationOutcomes[Outcome.ERROR.ordinal()])
+            .missCount(operationOutcomes[Outcome.MISS.ordinal()])
+            .throughput(count / seconds)
+            .p50(percentile(values, 0.5))
+            .p99(percentile(values, 0.99))
+            .p999(percentile(values, 0.999))
+            .build());
+      });
+      return new LoadReport(elapsed, operations);
+    }
+
+    private static Duration percentile(long[] sorted, double percentile) {
+      var index = (int) Math.ceil(percentile * sorted.length) - 1;
+      return Duration.ofNanos(sorted[Math.max(0, index)]);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.epam.digital.data.platform.storage.file.repository.LatencyDistribution;
+import com.epam.digital.data.platform.storage.file.repository.SimulatedFormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.service.LoadGenerator.Operation;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class LoadGeneratorTest {
+
+  @Test
+  void shouldReportLatencyPercentilesOfMixedWorkload() {
+    var repository = SimulatedFormDataFileRepository.builder()
+        .latency(LatencyDistribution.fixed(Duration.ofMillis(1))
+            .withSpikes(0.01, Duration.ofMillis(10)))
+        .errorRate(0.05)
+        .build();
+    var service = FormDataFileStorageService.builder()
+        .repository(repository)
+        .keyProvider(new FormDataFileKeyProviderImpl())
+        .build();
+    var loadGenerator = LoadGenerator.builder()
+        .service(service)
+        .threads(4)
+        .duration(Duration.ofMillis(500))
+        .processInstanceCount(5)
+        .filesPerProcessInstance(5)
+        .fileSize(1024)
+        .readWeight(70)
+        .writeWeight(20)
+        .listWeight(10)
+        .build();
+
+    var report = loadGenerator.run();
+
+    assertThat(report.getOperations()).containsKeys(Operation.READ, Operation.WRITE,
+        Operation.LIST);
+    assertThat(report.getThroughput()).isPositive();
+    var reads = report.getOperations().get(Operation.READ);
+    assertThat(reads.getP50()).isGreaterThanOrEqualTo(Duration.ofMillis(1));
+    assertThat(reads.getP99()).isGreaterThanOrEqualTo(reads.getP50());
+    assertThat(reads.getP999()).isGreaterThanOrEqualTo(reads.getP99());
+    var errorCount = report.getOperations().values().stream()
+        .mapToLong(LoadGenerator.OperationReport::getErrorCount).sum();
+    assertThat(errorCount).isPositive()
+        .isLessThanOrEqualTo(repository.getInjectedErrorCount());
+  }
+}
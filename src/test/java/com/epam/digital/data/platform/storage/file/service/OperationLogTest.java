@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class OperationLogTest {
+
+  @Test
+  void shouldAlwaysLogFailedAndSlowOperations() {
+    var operationLog = OperationLog.builder()
+        .sampleRate(0)
+        .slowThreshold(Duration.ofMillis(50))
+        .queueCapacity(10)
+        .build();
+
+    assertThat(operationLog.call("load", List.of("key"), () -> "content")).isEqualTo("content");
+    assertThatThrownBy(() -> operationLog.run("delete", Set.of("key"), () -> {
+      throw new IllegalStateException("Storage is not available");
+    })).isInstanceOf(IllegalStateException.class);
+    operationLog.run("list", List.of("prefix"), () -> sleep(60));
+    operationLog.close();
+
+    var stats = operationLog.getStats();
+    assertThat(stats.getOperationCount()).isEqualTo(3);
+    assertThat(stats.getErrorCount()).isEqualTo(1);
+    assertThat(stats.getSlowCount()).isEqualTo(1);
+    assertThat(stats.getLoggedCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldLogSampledOperationsInBackground() {
+    var operationLog = OperationLog.builder()
+        .sampleRate(1)
+        .maxLoggedKeys(2)
+        .queueCapacity(1000)
+        .batchSize(10)
+        .build();
+
+    for (var i = 0; i < 100; i++) {
+      operationLog.run("delete", Set.of("first", "second", "third"), () -> {
+      });
+    }
+    operationLog.close();
+
+    var stats = operationLog.getStats();
+    assertThat(stats.getOperationCount()).isEqualTo(100);
+    assertThat(stats.getLoggedCount()).isEqualTo(100);
+    assertThat(stats.getDroppedCount()).isZero();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
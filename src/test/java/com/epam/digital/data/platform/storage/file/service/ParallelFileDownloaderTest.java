@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.exception.FileNotFoundException;
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import com.epam.digital.data.platform.storage.file.utils.BufferPool;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ParallelFileDownloaderTest {
+
+  private final String key = "process/procInstId/fileId";
+  private final byte[] content = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes();
+
+  @Mock
+  private FormDataFileRepository repository;
+  private AtomicInteger rangeRequests;
+  private ParallelFileDownloader downloader;
+
+  @BeforeEach
+  void init() {
+    rangeRequests = new AtomicInteger();
+    downloader = ParallelFileDownloader.builder()
+        .repository(repository)
+        .rangeReader((fileKey, offset, length) -> {
+          rangeRequests.incrementAndGet();
+          return new ByteArrayInputStream(content, (int) offset, (int) length);
+        })
+        .threshold(8)
+        .partSize(5)
+        .concurrency(3)
+        .build();
+  }
+
+  @AfterEach
+  void close() {
+    downloader.close();
+  }
+
+  @Test
+  void shouldReassembleRangesInOrderToStream() {
+    when(repository.getMetadata(Set.of(key))).thenReturn(List.of(metadata(content.length)));
+    var target = new ByteArrayOutputStream();
+
+    downloader.download(key, target);
+
+    assertThat(target.toByteArray()).isEqualTo(content);
+    assertThat(rangeRequests.get()).isEqualTo(8);
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldWriteRangesToFile() {
+    when(repository.getMetadata(Set.of(key))).thenReturn(List.of(metadata(content.length)));
+    var target = Files.createTempFile("download", ".bin");
+    try {
+      downloader.download(key, target);
+
+      assertThat(Files.readAllBytes(target)).isEqualTo(content);
+    } finally {
+      Files.delete(target);
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldKeepExistingFileWhenKeyIsMissing() {
+    var directory = Files.createTempDirectory("download");
+    var target = directory.resolve("file.bin");
+    Files.write(target, content);
+    try {
+      assertThatThrownBy(() -> downloader.download(key, target))
+          .isInstanceOf(FileNotFoundException.class);
+
+      assertThat(Files.readAllBytes(target)).isEqualTo(content);
+      try (var files = Files.list(directory)) {
+        assertThat(files).containsExactly(target);
+      }
+    } finally {
+      Files.delete(target);
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  void shouldUseSingleRequestForSmallFiles() {
+    when(repository.getMetadata(Set.of(key))).thenReturn(List.of(metadata(8)));
+    when(repository.transferTo(anyString(), any(OutputStream.class), any(BufferPool.class)))
+        .thenReturn(Optional.of(metadata(8)));
+
+    downloader.download(key, new ByteArrayOutputStream());
+
+    assertThat(rangeRequests.get()).isZero();
+    verify(repository).transferTo(anyString(), any(OutputStream.class), any(BufferPool.class));
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldFailDownloadOfTruncatedRange() {
+    when(repository.getMetadata(Set.of(key))).thenReturn(List.of(metadata(content.length)));
+    var truncating = ParallelFileDownloader.builder()
+        .repository(repository)
+        .rangeReader((fileKey, offset, length) -> new ByteArrayInputStream(content, (int) offset,
+            offset == 10 ? (int) length - 2 : (int) length))
+        .threshold(8)
+        .partSize(5)
+        .concurrency(3)
+        .build();
+    var target = Files.createTempFile("download", ".bin");
+    try {
+      assertThatThrownBy(() -> truncating.download(key, new ByteArrayOutputStream()))
+          .isInstanceOf(UncheckedIOException.class)
+          .hasMessageContaining("truncated");
+      assertThatThrownBy(() -> truncating.download(key, target))
+          .isInstanceOf(UncheckedIOException.class)
+          .hasMessageContaining("truncated");
+    } finally {
+      truncating.close();
+      Files.delete(target);
+    }
+  }
+
+  private FileMetadataDto metadata(long length) {
+    return new FileMetadataDto(length, "application/octet-stream", Map.of());
+  }
+}
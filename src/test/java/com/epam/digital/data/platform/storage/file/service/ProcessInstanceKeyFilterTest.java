@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.storage.file.repository.FormDataFileRepository;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessInstanceKeyFilterTest {
+
+  private static final String PREFIX = "process/pid/";
+
+  @Mock
+  private FormDataFileRepository repository;
+  private ProcessInstanceKeyFilter keyFilter;
+
+  @BeforeEach
+  void init() {
+    keyFilter = ProcessInstanceKeyFilter.builder()
+        .repository(repository)
+        .maxProcessInstances(10)
+        .expectedKeysPerProcessInstance(16)
+        .maxKeysPerProcessInstance(100)
+        .falsePositiveProbability(0.01)
+        .ttl(Duration.ofMinutes(1))
+        .build();
+  }
+
+  @Test
+  void shouldRejectKeysThatWereNeverStored() {
+    when(repository.getKeys(PREFIX)).thenReturn(Set.of(PREFIX + "first"));
+
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "first")).isTrue();
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "missing")).isFalse();
+    verify(repository, times(1)).getKeys(PREFIX);
+
+    var stats = keyFilter.getStats();
+    assertThat(stats.getFilterCount()).isEqualTo(1);
+    assertThat(stats.getCheckCount()).isEqualTo(2);
+    assertThat(stats.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldAcceptStoredKeyAfterFilterWasBuilt() {
+    when(repository.getKeys(PREFIX)).thenReturn(Set.of());
+
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "new")).isFalse();
+    keyFilter.onStored(PREFIX + "new");
+
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "new")).isTrue();
+  }
+
+  @Test
+  void shouldAcceptKeyStoredWhileFilterWasBuilt() {
+    when(repository.getKeys(PREFIX)).thenAnswer(invocation -> {
+      keyFilter.onStored(PREFIX + "concurrent");
+      keyFilter.onStored("process/other/concurrent");
+      return Set.of();
+    });
+
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "concurrent")).isTrue();
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "missing")).isFalse();
+  }
+
+  @Test
+  void shouldNotAddStoredKeyToFilterOfAnotherProcessInstance() {
+    when(repository.getKeys(PREFIX)).thenReturn(Set.of());
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "new")).isFalse();
+
+    keyFilter.onStored("process/other/new");
+
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "new")).isFalse();
+  }
+
+  @Test
+  void shouldRebuildFilterAfterInvalidation() {
+    when(repository.getKeys(PREFIX)).thenReturn(Set.of());
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "other-node")).isFalse();
+
+    keyFilter.invalidate(PREFIX);
+    when(repository.getKeys(PREFIX)).thenReturn(Set.of(PREFIX + "other-node"));
+
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "other-node")).isTrue();
+  }
+
+  @Test
+  void shouldNotFilterProcessInstanceWithTooManyKeys() {
+    var keys = new HashSet<String>();
+    for (var i = 0; i <= 100; i++) {
+      keys.add(PREFIX + i);
+    }
+    when(repository.getKeys(PREFIX)).thenReturn(keys);
+
+    assertThat(keyFilter.mightContain(PREFIX, PREFIX + "missing")).isTrue();
+    assertThat(keyFilter.getStats().getFilterCount()).isZero();
+  }
+}
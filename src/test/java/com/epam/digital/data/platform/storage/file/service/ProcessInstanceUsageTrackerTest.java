@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.epam.digital.data.platform.storage.file.dto.FileDataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileMetadataDto;
+import com.epam.digital.data.platform.storage.file.exception.StorageQuotaExceededException;
+import com.epam.digital.data.platform.storage.file.repository.InMemoryFormDataFileRepository;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProcessInstanceUsageTrackerTest {
+
+  private InMemoryFormDataFileRepository storage;
+  private ProcessInstanceUsageTracker usageTracker;
+  private FormDataFileStorageService storageService;
+
+  @BeforeEach
+  void init() {
+    storage = new InMemoryFormDataFileRepository();
+    usageTracker = newUsageTracker();
+    storageService = FormDataFileStorageService.builder()
+        .repository(storage)
+        .keyProvider(new FormDataFileKeyProviderImpl())
+        .usageTracker(usageTracker)
+        .build();
+  }
+
+  @Test
+  void shouldCountSavedAndDeletedFiles() {
+    storageService.save("pid", "first", file(10));
+    storageService.save("pid", "second", file(20));
+    storageService.save("pid", "second", file(5));
+    storageService.save("other", "first", file(100));
+    storageService.deleteByProcessInstanceIdAndId("pid", "first");
+
+    var usage = storageService.getUsage("pid");
+
+    assertThat(usage.getFileCount()).isEqualTo(1);
+    assertThat(usage.getTotalBytes()).isEqualTo(5);
+    assertThat(storageService.getUsage("other").getTotalBytes()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldRejectFileOverQuota() {
+    storageService.save("pid", "first", file(60));
+
+    assertThatThrownBy(() -> storageService.save("pid", "second", file(50)))
+        .isInstanceOf(StorageQuotaExceededException.class);
+
+    storageService.save("pid", "first", file(100));
+    assertThat(storageService.getUsage("pid").getTotalBytes()).isEqualTo(100);
+    assertThat(storage.getObjects()).containsOnlyKeys("process/pid/first");
+  }
+
+  @Test
+  void shouldLoadStoredUsageWithoutListing() {
+    storageService.save("pid", "first", file(10));
+    usageTracker.flush();
+    storage.put("process/pid/unknown", file(30));
+
+    var usage = newUsageTracker().getUsage("process/pid/");
+
+    assertThat(usage.getFileCount()).isEqualTo(1);
+    assertThat(usage.getTotalBytes()).isEqualTo(10);
+  }
+
+  @Test
+  void shouldReconcileInvalidatedUsage() {
+    storageService.save("pid", "first", file(10));
+    storage.put("process/pid/second", file(30));
+
+    usageTracker.invalidate("process/pid/");
+
+    var usage = usageTracker.getUsage("process/pid/");
+    assertThat(usage.getFileCount()).isEqualTo(2);
+    assertThat(usage.getTotalBytes()).isEqualTo(40);
+  }
+
+  @Test
+  void shouldStoreChangedUsageOnClose() {
+    storageService.save("pid", "first", file(10));
+
+    usageTracker.close();
+
+    var usage = newUsageTracker().getUsage("process/pid/");
+    assertThat(usage.getFileCount()).isEqualTo(1);
+    assertThat(usage.getTotalBytes()).isEqualTo(10);
+  }
+
+  @Test
+  void shouldApplyUsageChangesOfOtherNodesWithoutListing() {
+    var transport = new InMemoryFileChangeTransport();
+    var local = newTrackedService(transport);
+    var remote = newTrackedService(transport);
+    local.save("pid", "first", file(10));
+    remote.getUsage("pid");
+    storage.put("process/pid/unknown", file(30));
+
+    local.save("pid", "second", file(20));
+    local.save("pid", "first", file(5));
+    local.deleteByProcessInstanceIdAndId("pid", "second");
+
+    var usage = remote.getUsage("pid");
+    assertThat(usage.getFileCount()).isEqualTo(1);
+    assertThat(usage.getTotalBytes()).isEqualTo(5);
+  }
+
+  private FormDataFileStorageService newTrackedService(FileChangeTransport transport) {
+    var changePublisher = FileChangePublisher.builder().transport(transport).build();
+    var service = FormDataFileStorageService.builder()
+        .repository(storage)
+        .keyProvider(new FormDataFileKeyProviderImpl())
+        .usageTracker(newUsageTracker())
+        .changePublisher(changePublisher)
+        .build();
+    changePublisher.subscribe(service);
+    return service;
+  }
+
+  private ProcessInstanceUsageTracker newUsageTracker() {
+    return ProcessInstanceUsageTracker.builder()
+        .repository(storage)
+        .recordRepository(storage)
+        .recordPrefix("file-usage/")
+        .flushInterval(Duration.ofSeconds(10))
+        .reconcileInterval(Duration.ofHours(1))
+        .maxTrackedProcessInstances(100)
+        .maxBytesPerProcessInstance(100)
+        .build();
+  }
+
+  private FileDataDto file(int size) {
+    return FileDataDto.builder()
+        .content(new ByteArrayInputStream(new byte[size]))
+        .metadata(new FileMetadataDto((long) size, "application/octet-stream", Map.of()))
+        .build();
+  }
+}
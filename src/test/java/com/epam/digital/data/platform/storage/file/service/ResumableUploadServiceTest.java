@@ -0,0 +1,185 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.epam.digital.data.platform.storage.file.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.epam.digital.data.platform.storage.file.dto.BaseFileMetadataDto;
+import com.epam.digital.data.platform.storage.file.dto.FileObjectDto;
+import com.epam.digital.data.platform.storage.file.exception.UploadSessionNotFoundException;
+import com.epam.digital.data.platform.storage.file.repository.FileRepository;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResumableUploadServiceTest {
+
+  private final String sessionPrefix = "sessions/id/";
+
+  @Mock
+  private FileRepository repository;
+  private ResumableUploadService uploadService;
+
+  @BeforeEach
+  void init() {
+    uploadService = ResumableUploadService.builder()
+        .repository(repository)
+        .sessionsPrefix("sessions/")
+        .sessionTtl(Duration.ofHours(1))
+        .cleanupInterval(Duration.ofHours(1))
+        .build();
+  }
+
+  @Test
+  void shouldFailToUploadPartOfUnknownSession() {
+    when(repository.getMetadata(sessionPrefix + "session")).thenReturn(Optional.empty());
+
+    var exception = assertThrows(UploadSessionNotFoundException.class,
+        () -> uploadService.uploadPart("id", 1, new ByteArrayInputStream(new byte[0]), 0));
+
+    assertThat(exception.getSessionId()).isEqualTo("id");
+  }
+
+  @Test
+  @SneakyThrows
+  void shouldAssemblePartsInOrderOnComplete() {
+    when(repository.getMetadata(sessionPrefix + "session")).thenReturn(Optional.of(
+        new BaseFileMetadataDto(0, "text/plain", Map.of(
+            ResumableUploadService.SESSION_HEADER, "id",
+            ResumableUploadService.KEY_HEADER, "target",
+            ResumableUploadService.CONTENT_TYPE_HEADER, "application/pdf",
+            ResumableUploadService.TARGET_METADATA_PREFIX + "checksum", "sha"))));
+    when(repository.getMetadataByPrefix(sessionPrefix)).thenReturn(List.of(
+        part(2, 3), part(1, 5)));
+    when(repository.get(sessionPrefix + "part-00001")).thenReturn(Optional.of(content("Hello")));
+    when(repository.get(sessionPrefix + "part-00002")).thenReturn(Optional.of(content("!!!")));
+    when(repository.put(eq("target"), any(FileObjectDto.class))).thenAnswer(invocation -> {
+      var file = invocation.getArgument(1, FileObjectDto.class);
+      assertThat(new String(file.getContent().readAllBytes())).isEqualTo("Hello!!!");
+      return file.getMetadata();
+    });
+    when(repository.getKeys(sessionPrefix)).thenReturn(Set.of(sessionPrefix + "session"));
+
+    var result = uploadService.complete("id");
+
+    assertThat(result.getContentLength()).isEqualTo(8);
+    assertThat(result.getContentType()).isEqualTo("application/pdf");
+    assertThat(result.getUserMetadata()).containsExactly(Map.entry("checksum", "sha"));
+    verify(repository).delete(Set.of(sessionPrefix + "session"));
+  }
+
+  @Test
+  void shouldRejectCompletionWithMissingParts() {
+    when(repository.getMetadata(sessionPrefix + "session")).thenReturn(Optional.of(
+        new BaseFileMetadataDto(0, "text/plain", Map.of(ResumableUploadService.KEY_HEADER, "t"))));
+    when(repository.getMetadataByPrefix(sessionPrefix)).thenReturn(List.of(part(2, 3)));
+
+    assertThrows(IllegalStateException.class, () -> uploadService.complete("id"));
+  }
+
+  @Test
+  void shouldRejectCompletionWithoutParts() {
+    when(repository.getMetadata(sessionPrefix + "session")).thenReturn(Optional.of(
+        new BaseFileMetadataDto(0, "text/plain", Map.of(ResumableUploadService.KEY_HEADER, "t"))));
+    when(repository.getMetadataByPrefix(sessionPrefix)).thenReturn(List.of());
+
+    assertThrows(IllegalStateException.class, () -> uploadService.complete("id"));
+
+    verify(repository, never()).put(any(), any(FileObjectDto.class));
+    verify(repository, never()).delete(any());
+  }
+
+  @Test
+  void shouldSkipInvalidPartsOnListing() {
+    when(repository.getMetadataByPrefix(sessionPrefix)).thenReturn(List.of(
+        part(1, 5),
+        new BaseFileMetadataDto(1, "text/plain", null),
+        new BaseFileMetadataDto(1, "text/plain",
+            Map.of(ResumableUploadService.PART_HEADER, "first"))));
+
+    var parts = uploadService.getUploadedParts("id");
+
+    assertThat(parts).hasSize(1);
+    assertThat(parts.get(0).getPartNumber()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldSkipInvalidSessionsOnCleanup() {
+    var staleCreatedAt = String.valueOf(System.currentTimeMillis() - Duration.ofHours(2).toMillis());
+    when(repository.getMetadataByPrefix("sessions/")).thenReturn(List.of(
+        new BaseFileMetadataDto(0, "text/plain", null),
+        new BaseFileMetadataDto(0, "text/plain",
+            Map.of(ResumableUploadService.SESSION_HEADER, "broken")),
+        new BaseFileMetadataDto(0, "text/plain", Map.of(
+            ResumableUploadService.SESSION_HEADER, "other",
+            ResumableUploadService.CREATED_AT_HEADER, "yesterday")),
+        new BaseFileMetadataDto(0, "text/plain", Map.of(
+            ResumableUploadService.SESSION_HEADER, "id",
+            ResumableUploadService.CREATED_AT_HEADER, staleCreatedAt))));
+    when(repository.getKeys(sessionPrefix)).thenReturn(Set.of(sessionPrefix + "session"));
+
+    var removed = uploadService.removeStaleSessions();
+
+    assertThat(removed).isEqualTo(1);
+    verify(repository).delete(Set.of(sessionPrefix + "session"));
+  }
+
+  @Test
+  void shouldRemoveStaleSessions() {
+    var staleCreatedAt = String.valueOf(System.currentTimeMillis() - Duration.ofHours(2).toMillis());
+    when(repository.getMetadataByPrefix("sessions/")).thenReturn(List.of(
+        new BaseFileMetadataDto(0, "text/plain", Map.of(
+            ResumableUploadService.SESSION_HEADER, "id",
+            ResumableUploadService.CREATED_AT_HEADER, staleCreatedAt)),
+        part(1, 5)));
+    when(repository.getKeys(sessionPrefix)).thenReturn(Set.of(sessionPrefix + "part-00001"));
+
+    var removed = uploadService.removeStaleSessions();
+
+    assertThat(removed).isEqualTo(1);
+    verify(repository).delete(any());
+  }
+
+  private BaseFileMetadataDto part(int number, long size) {
+    return new BaseFileMetadataDto(size, "text/plain",
+        Map.of(ResumableUploadService.PART_HEADER, String.valueOf(number)));
+  }
+
+  private FileObjectDto content(String content) {
+    return FileObjectDto.builder()
+        .content(new ByteArrayInputStream(content.getBytes()))
+        .build();
+  }
+}
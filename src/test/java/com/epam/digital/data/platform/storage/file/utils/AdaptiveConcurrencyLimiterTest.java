@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.epam.digital.data.platform.storage.file.exception.StorageOverloadedException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  @Test
+  void shouldRejectCallOverLimit() throws Exception {
+    var limiter = newLimiter(1);
+    var started = new CountDownLatch(1);
+    var finish = new CountDownLatch(1);
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      var running = executor.submit(() -> limiter.run(() -> {
+        started.countDown();
+        await(finish);
+      }));
+      started.await();
+
+      assertThatThrownBy(() -> limiter.call(() -> "second"))
+          .isInstanceOf(StorageOverloadedException.class);
+
+      finish.countDown();
+      running.get();
+      assertThat(limiter.call(() -> "third")).isEqualTo("third");
+      assertThat(limiter.getStats().getRejectedCount()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldDecreaseLimitAfterFailure() {
+    var limiter = newLimiter(10);
+
+    assertThatThrownBy(() -> limiter.run(() -> {
+      throw new IllegalStateException("failed");
+    })).isInstanceOf(IllegalStateException.class);
+
+    var stats = limiter.getStats();
+    assertThat(stats.getLimit()).isEqualTo(5);
+    assertThat(stats.getFailedCount()).isEqualTo(1);
+    assertThat(stats.getInFlight()).isZero();
+  }
+
+  @Test
+  void shouldIncreaseSaturatedLimitWhileLatencyIsLow() {
+    var limiter = newLimiter(1);
+
+    for (var i = 0; i < 3; i++) {
+      limiter.call(() -> "fast");
+    }
+
+    assertThat(limiter.getStats().getLimit()).isGreaterThan(1);
+  }
+
+  @Test
+  void shouldNotDecreaseLimitForSlowTransfersOfLargeFiles() {
+    var limiter = AdaptiveConcurrencyLimiter.builder()
+        .name("write")
+        .initialLimit(8)
+        .minLimit(1)
+        .maxLimit(8)
+        .backoffRatio(0.5)
+        .latencyTolerance(1000)
+        .maxQueueTime(Duration.ZERO)
+        .build();
+
+    for (var size : new int[]{1, 4096, 1, 4096, 1, 4096}) {
+      limiter.call(() -> "metadata");
+      limiter.callUnmeasured(() -> transfer(size));
+    }
+
+    assertThat(limiter.getStats().getLimit()).isEqualTo(8);
+
+    limiter.call(() -> transfer(4096));
+
+    assertThat(limiter.getStats().getLimit()).isEqualTo(4);
+  }
+
+  private AdaptiveConcurrencyLimiter newLimiter(int initialLimit) {
+    return AdaptiveConcurrencyLimiter.builder()
+        .name("read")
+        .initialLimit(initialLimit)
+        .minLimit(1)
+        .maxLimit(100)
+        .backoffRatio(0.5)
+        .latencyTolerance(1000)
+        .maxQueueTime(Duration.ZERO)
+        .build();
+  }
+
+  private static int transfer(int size) {
+    try {
+      Thread.sleep(size / 128);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return size;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
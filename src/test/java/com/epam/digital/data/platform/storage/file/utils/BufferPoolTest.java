@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.epam.digital.data.platform.storage.file.exception.BufferPoolExhaustedException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BufferPoolTest {
+
+  private static final int KB = 1024;
+
+  @Test
+  void shouldReuseReleasedBufferOfSameSizeClass() {
+    var pool = new BufferPool(8 * KB, 0, 64 * KB, Duration.ZERO);
+
+    var first = pool.acquire(5 * KB);
+    assertThat(first.capacity()).isEqualTo(8 * KB);
+    first.put((byte) 1);
+    pool.release(first);
+    var second = pool.acquire(7 * KB);
+
+    assertThat(second).isSameAs(first);
+    assertThat(second.position()).isZero();
+    var stats = pool.getStats();
+    assertThat(stats.getAcquireCount()).isEqualTo(2);
+    assertThat(stats.getAllocationCount()).isEqualTo(1);
+    assertThat(stats.getInUseBytes()).isEqualTo(8 * KB);
+    assertThat(stats.getPooledBytes()).isZero();
+  }
+
+  @Test
+  void shouldFailFastWhenMemoryLimitIsReached() {
+    var pool = new BufferPool(8 * KB, 16 * KB, 16 * KB, Duration.ZERO);
+    pool.acquire();
+    pool.acquire();
+
+    assertThatThrownBy(pool::acquire).isInstanceOf(BufferPoolExhaustedException.class);
+    assertThat(pool.getStats().getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldDropPooledBuffersOfOtherSizeWhenMemoryLimitIsReached() {
+    var pool = new BufferPool(8 * KB, 16 * KB, 16 * KB, Duration.ZERO);
+    pool.release(pool.acquire(16 * KB));
+
+    var buffer = pool.acquire();
+
+    assertThat(buffer.capacity()).isEqualTo(8 * KB);
+    var stats = pool.getStats();
+    assertThat(stats.getEvictedCount()).isEqualTo(1);
+    assertThat(stats.getAllocatedBytes()).isEqualTo(8 * KB);
+  }
+
+  @Test
+  void shouldWaitForReleasedBufferWhenMemoryLimitIsReached() throws Exception {
+    var pool = new BufferPool(8 * KB, 8 * KB, 8 * KB, Duration.ofSeconds(10));
+    var held = pool.acquire();
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      var waiting = executor.submit(() -> pool.acquire());
+      Thread.sleep(100);
+      pool.release(held);
+
+      assertThat(waiting.get(10, TimeUnit.SECONDS)).isSameAs(held);
+      assertThat(pool.getStats().getRejectedCount()).isZero();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldNotPoolBuffersOverPooledLimit() {
+    var pool = new BufferPool(8 * KB, 0, 8 * KB, Duration.ZERO);
+    var first = pool.acquire();
+    var second = pool.acquire();
+
+    pool.release(first);
+    pool.release(second);
+
+    var stats = pool.getStats();
+    assertThat(stats.getPooledBytes()).isEqualTo(8 * KB);
+    assertThat(stats.getAllocatedBytes()).isEqualTo(8 * KB);
+    assertThat(stats.getInUseBytes()).isZero();
+  }
+
+  @Test
+  void shouldRejectRepeatedRelease() {
+    var pool = new BufferPool(8 * KB, 0, 64 * KB, Duration.ZERO);
+    var buffer = pool.acquire();
+    pool.release(buffer);
+
+    assertThatThrownBy(() -> pool.release(buffer)).isInstanceOf(IllegalArgumentException.class);
+    var stats = pool.getStats();
+    assertThat(stats.getPooledBytes()).isEqualTo(8 * KB);
+    assertThat(stats.getAllocatedBytes()).isEqualTo(8 * KB);
+  }
+
+  @Test
+  void shouldRejectBufferNotTakenFromPool() {
+    var pool = new BufferPool(8 * KB, 0, 64 * KB, Duration.ZERO);
+
+    assertThatThrownBy(() -> pool.release(ByteBuffer.allocate(8 * KB)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(pool.getStats().getPooledBytes()).isZero();
+    assertThat(pool.acquire().capacity()).isEqualTo(8 * KB);
+    assertThat(pool.getStats().getAllocationCount()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 EPAM Systems.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.epam.digital.data.platform.storage.file.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class StreamTransferTest {
+
+  @Test
+  @SneakyThrows
+  void shouldStopTransferOfFileThatShrinks() {
+    var file = Files.createTempFile("transfer", ".bin");
+    Files.write(file, new byte[64 * 1024]);
+    var received = new ByteArrayOutputStream();
+    try (var source = new FileInputStream(file.toFile())) {
+      var target = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+          if (received.size() == 0) {
+            try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+              channel.truncate(1024);
+            }
+          }
+          var length = src.remaining();
+          var bytes = new byte[length];
+          src.get(bytes);
+          received.write(bytes);
+          return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+          return true;
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+
+      var transferred = assertTimeoutPreemptively(Duration.ofSeconds(5),
+          () -> StreamTransfer.transfer(source, target, BufferPool.getDefault()));
+
+      assertThat(transferred).isEqualTo(received.size()).isPositive();
+    } finally {
+      Files.delete(file);
+    }
+  }
+}